@@ -0,0 +1,109 @@
+"""Loader for the binary .gtc chunk exports written by /grabChunkData (see BinaryExporter.java).
+
+Stored sections are memory-mapped rather than read, so a directory of exports can be scanned
+without parsing strings. Elided sections (every column constant) are filled from the section table.
+
+    import gtc
+    chunk = gtc.load("chunks/plains_0_0.gtc")
+    chunk.block_names[chunk.columns["Block_ID"]]   # (16, 384, 16) array of block names, indexed [x, y, z]
+    frame = chunk.to_frame()                       # same columns as the CSV export
+
+    for chunk in gtc.load_harvest("chunks/plains.manifest.csv"):   # region harvests
+        ...
+"""
+
+import struct
+
+import numpy as np
+
+MAGIC = b"GTC1"
+HEADER = struct.Struct("<4sHBBiihHHHHHIIII")
+ENTRY = struct.Struct("<i8H2BH")
+SECTION_HEIGHT = 16
+INDEXED = ["Block_ID", "Biome", "Block_to_Left", "Block_to_Right", "Block_Below", "Block_Above", "Block_in_Front", "Block_Behind"]
+BYTES = ["Is_Surface", "Light_Level"]
+
+
+class Chunk:
+    def __init__(self, world, chunk_x, chunk_z, min_y, chunk_biome, block_names, biome_names, columns):
+        self.world = world
+        self.chunk_x = chunk_x
+        self.chunk_z = chunk_z
+        self.min_y = min_y
+        self.chunk_biome = chunk_biome
+        self.block_names = block_names
+        self.biome_names = biome_names
+        self.columns = columns
+
+    def to_frame(self):
+        """Decodes to a pandas DataFrame with the CSV export's columns and row order."""
+        import pandas as pd
+
+        width, height, depth = self.columns["Block_ID"].shape
+        x, y, z = np.meshgrid(np.arange(width), np.arange(height) + self.min_y, np.arange(depth), indexing="ij")
+        frame = {"x": x.ravel(), "y": y.ravel(), "z": z.ravel(), "ChunkBiome": self.chunk_biome}
+        frame["Biome"] = self.biome_names[self.columns["Biome"].ravel()]
+        frame["Block_ID"] = self.block_names[self.columns["Block_ID"].ravel()]
+        frame["Is_Surface"] = self.columns["Is_Surface"].ravel().astype(bool)
+        frame["Light_Level"] = self.columns["Light_Level"].ravel().astype(np.float64)
+        for name in INDEXED[2:]:
+            frame[name] = self.block_names[self.columns[name].ravel()]
+        return pd.DataFrame(frame)
+
+
+def load(path):
+    """Loads a single .gtc export; stored sections are read through a memmap."""
+    return _parse(np.memmap(path, dtype=np.uint8, mode="r"), path)
+
+
+def load_harvest(manifest_path):
+    """Yields every chunk of a harvest (/grabChunkData radius|area) from its manifest and .gtc.gz shards."""
+    import csv
+    import os
+    import zlib
+
+    folder = os.path.dirname(manifest_path)
+    with open(manifest_path, newline="") as f:
+        for entry in csv.DictReader(f):
+            with open(os.path.join(folder, entry["shard"]), "rb") as shard:
+                shard.seek(int(entry["offset"]))
+                member = shard.read(int(entry["length"]))
+            # Each chunk is a complete gzip member, so it decompresses on its own
+            data = zlib.decompress(member, 16 + zlib.MAX_WBITS)
+            yield _parse(np.frombuffer(data, dtype=np.uint8), entry["shard"])
+
+
+def _parse(data, source):
+    (magic, version, index_width, sections, chunk_x, chunk_z, min_y, height,
+     block_count, biome_count, chunk_biome, _, palette_len, table_offset, data_offset, section_bytes) = HEADER.unpack_from(data, 0)
+    if magic != MAGIC or version != 1:
+        raise ValueError(f"{source} is not a version 1 .gtc file")
+
+    lines = bytes(data[64:64 + palette_len]).decode("utf-8").split("\n")[:-1]
+    table = [ENTRY.unpack_from(data, table_offset + i * ENTRY.size) for i in range(sections)]
+
+    world = lines[0]
+    block_names = np.array(lines[1:1 + block_count])
+    biome_names = np.array(lines[1 + block_count:1 + block_count + biome_count])
+    index_type = np.uint8 if index_width == 1 else np.dtype("<u2")
+
+    columns = {name: np.empty((16, height, 16), dtype=np.uint16) for name in INDEXED}
+    columns.update({name: np.empty((16, height, 16), dtype=np.uint8) for name in BYTES})
+
+    indexed_bytes = len(INDEXED) * 4096 * index_width
+    for section, entry in enumerate(table):
+        offset, constants = entry[0], entry[1:11]
+        rows = slice(section * SECTION_HEIGHT, (section + 1) * SECTION_HEIGHT)
+        if offset < 0:
+            for name, value in zip(INDEXED + BYTES, constants):
+                columns[name][:, rows, :] = value
+            continue
+
+        stored = data[offset:offset + indexed_bytes].view(index_type).reshape(len(INDEXED), 16, SECTION_HEIGHT, 16)
+        for i, name in enumerate(INDEXED):
+            columns[name][:, rows, :] = stored[i]
+        stored = data[offset + indexed_bytes:offset + section_bytes].reshape(len(BYTES), 16, SECTION_HEIGHT, 16)
+        for i, name in enumerate(BYTES):
+            columns[name][:, rows, :] = stored[i]
+
+    return Chunk(world, chunk_x, chunk_z, min_y, biome_names[chunk_biome], block_names, biome_names, columns)
@@ -0,0 +1,34 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public final class BenchmarkRunner
+{
+    /*
+    - Entry point of benchmarks.jar: java -jar benchmarks.jar [include regex] [result file].
+    - Results are always written as JSON (default jmh-result.json) so runs can be compared over time, e.g. with jmh.morethan.io.
+    - Use org.openjdk.jmh.Main from the same jar for the full JMH command line.
+    */
+
+    private BenchmarkRunner()
+    {
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        String include = args.length > 0 ? args[0] : "com.ghosteau.generativeterrain.benchmarks.*";
+        String resultFile = args.length > 1 ? args[1] : "jmh-result.json";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+
+        new Runner(options).run();
+    }
+}
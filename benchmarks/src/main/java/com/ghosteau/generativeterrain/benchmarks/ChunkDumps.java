@@ -0,0 +1,113 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public final class ChunkDumps
+{
+    /*
+    - Finds and reads /grabChunkData exports for the headless runner: a single .csv or .gtc file, a harvest manifest
+      (<name>.manifest.csv, whose entries point at gzip members inside the shards), or a folder holding any of these.
+    - Stops after limit chunks, so pointing it at a large harvest doesn't load the whole region into memory.
+    */
+
+    private static final String MANIFEST_SUFFIX = ".manifest.csv";
+
+    private ChunkDumps()
+    {
+    }
+
+    public static List<OfflineChunk> load(File path, ModelMappings mappings, int limit) throws IOException
+    {
+        List<OfflineChunk> chunks = new ArrayList<>();
+        collect(path, mappings, limit, chunks);
+        if (chunks.isEmpty()) throw new IOException("No chunk exports found at " + path);
+        return chunks;
+    }
+
+    private static void collect(File path, ModelMappings mappings, int limit, List<OfflineChunk> chunks) throws IOException
+    {
+        if (chunks.size() >= limit) return;
+
+        String name = path.getName().toLowerCase();
+        if (path.isDirectory())
+        {
+            File[] files = path.listFiles();
+            if (files == null) return;
+
+            // Harvests are read through their manifests; their shards would otherwise be picked up as plain files
+            Arrays.sort(files);
+            for (File file : files)
+            {
+                if (!file.getName().toLowerCase().endsWith(".gz")) collect(file, mappings, limit, chunks);
+            }
+        }
+        else if (name.endsWith(MANIFEST_SUFFIX))
+        {
+            readHarvest(path, mappings, limit, chunks);
+        }
+        else if (name.endsWith(".gtc"))
+        {
+            chunks.add(OfflineChunk.readGtc(ByteBuffer.wrap(Files.readAllBytes(path.toPath())), path.getName(), mappings));
+        }
+        else if (name.endsWith(".csv"))
+        {
+            try (BufferedReader reader = Files.newBufferedReader(path.toPath(), StandardCharsets.UTF_8))
+            {
+                chunks.add(OfflineChunk.readCsv(reader, path.getName(), mappings));
+            }
+        }
+    }
+
+    private static void readHarvest(File manifest, ModelMappings mappings, int limit, List<OfflineChunk> chunks) throws IOException
+    {
+        // Manifest columns: shard, chunk_x, chunk_z, offset, length
+        File folder = manifest.getAbsoluteFile().getParentFile();
+        try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8))
+        {
+            reader.readLine();
+            String line;
+            while (chunks.size() < limit && (line = reader.readLine()) != null)
+            {
+                if (line.isEmpty()) continue;
+
+                String[] cols = line.split(",");
+                String label = cols[0] + " (" + cols[1] + ", " + cols[2] + ")";
+                byte[] member = new byte[Integer.parseInt(cols[4])];
+                try (RandomAccessFile shard = new RandomAccessFile(new File(folder, cols[0]), "r"))
+                {
+                    shard.seek(Long.parseLong(cols[3]));
+                    shard.readFully(member);
+                }
+
+                // Every chunk is a complete gzip member, so it decompresses on its own
+                byte[] data;
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(member)))
+                {
+                    data = in.readAllBytes();
+                }
+
+                if (cols[0].toLowerCase().endsWith(".gtc.gz"))
+                {
+                    chunks.add(OfflineChunk.readGtc(ByteBuffer.wrap(data), label, mappings));
+                }
+                else
+                {
+                    chunks.add(OfflineChunk.readCsv(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8)),
+                            label, mappings));
+                }
+            }
+        }
+    }
+}
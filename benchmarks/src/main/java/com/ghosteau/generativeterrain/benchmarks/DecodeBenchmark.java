@@ -0,0 +1,55 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import com.ghosteau.generativeterrain.generation.BlockVolume;
+import com.ghosteau.generativeterrain.generation.SlabLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark
+{
+    // Argmax decoding of model logits into a class-id volume, for the single centred slab and the blended full column
+
+    @Param({"32"})
+    public int modelHeight;
+
+    // A reduced block set and the full shipped mapping (block_id_mapping.json)
+    @Param({"54", "182"})
+    public int numClasses;
+
+    @Param({"centred", "column"})
+    public String layoutName;
+
+    private SlabLayout layout;
+    private FloatBuffer logits;
+
+    @Setup
+    public void setUp()
+    {
+        layout = layoutName.equals("column") ? SlabLayout.fullColumn(modelHeight, 384, 8) : SlabLayout.centred(modelHeight, 384);
+
+        Random random = new Random(42);
+        int floats = layout.slabCount() * numClasses * 16 * modelHeight * 16;
+        logits = FloatBuffer.allocate(floats);
+        for (int i = 0; i < floats; i++)
+        {
+            logits.put(i, (float) random.nextGaussian());
+        }
+    }
+
+    @Benchmark
+    public BlockVolume decode()
+    {
+        BlockVolume volume = new BlockVolume(16, 384, 16);
+        volume.decode(logits, 0, numClasses, layout);
+        return volume;
+    }
+}
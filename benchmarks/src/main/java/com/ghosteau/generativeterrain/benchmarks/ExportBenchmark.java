@@ -0,0 +1,75 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import com.ghosteau.generativeterrain.dataset.BinaryExporter;
+import com.ghosteau.generativeterrain.dataset.ChunkSample;
+import com.ghosteau.generativeterrain.dataset.CsvExporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark
+{
+    // The /grabChunkData path after capture: assembling the feature columns, then the CSV and binary encoders into discarding sinks
+
+    private SyntheticChunk chunk;
+    private ChunkSample sample;
+    private final WritableByteChannel discard = new WritableByteChannel()
+    {
+        @Override
+        public int write(ByteBuffer source)
+        {
+            int bytes = source.remaining();
+            source.position(source.limit());
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    };
+
+    @Setup
+    public void setUp()
+    {
+        chunk = new SyntheticChunk(42);
+        sample = ChunkSample.assemble(chunk, "world", 0, 0, "PLAINS");
+    }
+
+    @Benchmark
+    public ChunkSample assemble()
+    {
+        return ChunkSample.assemble(chunk, "world", 0, 0, "PLAINS");
+    }
+
+    @Benchmark
+    public Writer exportCsv() throws IOException
+    {
+        Writer writer = Writer.nullWriter();
+        CsvExporter.writeRows(sample, writer);
+        return writer;
+    }
+
+    @Benchmark
+    public WritableByteChannel exportBinary() throws IOException
+    {
+        BinaryExporter.write(sample, discard);
+        return discard;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import com.ghosteau.generativeterrain.generation.BlockPalette;
+import com.ghosteau.generativeterrain.generation.FeatureEncoder;
+import com.ghosteau.generativeterrain.generation.VoxelSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureEncodingBenchmark
+{
+    // Builds the 10-channel model input for one chunk, as every generation request and the world generator do
+
+    @Param({"32", "256"})
+    public int modelHeight;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private FeatureEncoder encoder;
+    private VoxelSource chunk;
+    private FloatBuffer input;
+
+    @Setup
+    public void setUp()
+    {
+        // Through the palette adapter, the same path live generation takes
+        encoder = new FeatureEncoder(parallelism);
+        chunk = BlockPalette.of(SyntheticChunk.PALETTE).voxels(new SyntheticChunk(42));
+        input = ByteBuffer.allocateDirect(FeatureEncoder.tensorSize(1, modelHeight) * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        encoder.shutdown();
+    }
+
+    @Benchmark
+    public FloatBuffer encodeCentredSlab()
+    {
+        // Same base Y as the centred layout
+        encoder.encode(input, 0, chunk, 0.0f, modelHeight, -64 + (384 - modelHeight) / 2);
+        return input;
+    }
+}
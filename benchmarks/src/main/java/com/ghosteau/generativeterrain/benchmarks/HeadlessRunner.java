@@ -0,0 +1,309 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.ghosteau.generativeterrain.generation.BlockVolume;
+import com.ghosteau.generativeterrain.generation.ChangeList;
+import com.ghosteau.generativeterrain.generation.FeatureEncoder;
+import com.ghosteau.generativeterrain.generation.LatencyHistogram;
+import com.ghosteau.generativeterrain.generation.PipelineMetrics;
+import com.ghosteau.generativeterrain.generation.SessionSettings;
+import com.ghosteau.generativeterrain.generation.SlabLayout;
+import com.ghosteau.generativeterrain.generation.TerrainModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class HeadlessRunner
+{
+    /*
+    - Load test for the generation pipeline without a Minecraft server: encode -> infer -> decode -> diff over thousands of chunks.
+    - Chunks come from /grabChunkData exports (a .csv/.gtc file, a harvest manifest or a folder of them) or are synthetic;
+      a limited set of distinct chunks is loaded and cycled through, so memory use reflects the pipeline rather than the input.
+    - Several concurrent jobs each encode a batch into their own tensor and run it, like the plugin's inference workers.
+    - Reports sustained chunks/s, per-chunk and per-stage latency percentiles and the peak heap seen while running.
+    - The diff stage is an approximation: it runs ChangeList.diff over the offline chunk's model ids, not the plugin's
+      diff against a ChunkSnapshot, so it leaves out the Material decode and the snapshot's block lookups.
+
+        java -cp target/benchmarks.jar com.ghosteau.generativeterrain.benchmarks.HeadlessRunner \
+            --input ../plugins/GenerativeTerrain/chunks/plains.manifest.csv --chunks 5000 --jobs 4 --batch 8
+    */
+
+    private static final int MIN_Y = -64;
+    private static final int COLUMN_HEIGHT = 384;
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+    private static final PipelineMetrics.Stage[] STAGES = {
+            PipelineMetrics.Stage.ENCODE, PipelineMetrics.Stage.INFERENCE, PipelineMetrics.Stage.DECODE, PipelineMetrics.Stage.DIFF
+    };
+
+    private final TerrainModel model;
+    private final SlabLayout layout;
+    private final FeatureEncoder encoder;
+    private final List<OfflineChunk> chunks;
+    private final int batch;
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final LatencyHistogram chunkLatency = new LatencyHistogram();
+    private final LongAdder changedBlocks = new LongAdder();
+
+    private HeadlessRunner(TerrainModel model, SlabLayout layout, FeatureEncoder encoder, List<OfflineChunk> chunks, int batch)
+    {
+        this.model = model;
+        this.layout = layout;
+        this.encoder = encoder;
+        this.chunks = chunks;
+        this.batch = batch;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = parseArgs(args);
+        if (options == null)
+        {
+            System.err.println("Usage: HeadlessRunner [--input <export|manifest|folder|synthetic>] [--chunks <n>] [--jobs <n>] [--batch <n>]");
+            System.err.println("       [--models <folder>] [--model <file.onnx>] [--column [--overlap <n>]] [--distinct <n>] [--warmup <n>]");
+            System.err.println("       [--encode-threads <n>] [--intra-op-threads <n>]");
+            System.exit(1);
+            return;
+        }
+
+        File models = new File(options.getOrDefault("models", "../plugins_server"));
+        String modelFile = options.getOrDefault("model", "terrain_transformer_model.onnx");
+        String input = options.getOrDefault("input", "synthetic");
+        int total = Integer.parseInt(options.getOrDefault("chunks", "1000"));
+        int jobs = Math.max(1, Integer.parseInt(options.getOrDefault("jobs", "2")));
+        int batch = Math.max(1, Integer.parseInt(options.getOrDefault("batch", "4")));
+        int distinct = Math.max(1, Integer.parseInt(options.getOrDefault("distinct", "64")));
+        int warmup = Math.max(0, Integer.parseInt(options.getOrDefault("warmup", String.valueOf(jobs * batch * 2))));
+        int encodeThreads = Integer.parseInt(options.getOrDefault("encode-threads", String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+        int intraOpThreads = Integer.parseInt(options.getOrDefault("intra-op-threads", "2"));
+
+        ModelMappings mappings = ModelMappings.load(new File(models, "block_id_mapping.json"), new File(models, "biome_id_mapping.json"));
+        List<OfflineChunk> chunks = loadChunks(input, mappings, distinct);
+
+        // Same session setup as the plugin's /generateTerrain benchmark: own thread pools, nothing written to disk
+        SessionSettings settings = new SessionSettings(intraOpThreads, 1, OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL,
+                OrtSession.SessionOptions.OptLevel.ALL_OPT, true, true, false, false);
+        File file = new File(models, modelFile);
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        OrtSession session;
+        try (OrtSession.SessionOptions sessionOptions = settings.createSessionOptions(file, file, true))
+        {
+            session = env.createSession(file.getAbsolutePath(), sessionOptions);
+        }
+
+        TerrainModel model = new TerrainModel(modelFile, env, session);
+        SlabLayout layout = options.containsKey("column")
+                ? SlabLayout.fullColumn(model.getModelHeight(), COLUMN_HEIGHT, Integer.parseInt(options.getOrDefault("overlap", "8")))
+                : SlabLayout.centred(model.getModelHeight(), COLUMN_HEIGHT);
+        FeatureEncoder encoder = new FeatureEncoder(encodeThreads);
+
+        System.out.println("Model " + modelFile + " (height " + model.getModelHeight() + ", " + layout.slabCount() + " slab(s) per chunk, "
+                + mappings.classCount() + " classes)");
+        System.out.println("Input " + input + ": " + chunks.size() + " distinct chunk(s), cycled for " + total + " chunks");
+        System.out.println(jobs + " concurrent job(s), batch " + batch + ", " + encodeThreads + " encode thread(s), "
+                + intraOpThreads + " intra-op thread(s)");
+
+        try
+        {
+            new HeadlessRunner(model, layout, encoder, chunks, batch).run(total, jobs, warmup);
+        }
+        finally
+        {
+            encoder.shutdown();
+            session.close();
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (!args[i].startsWith("--")) return null;
+
+            String key = args[i].substring(2);
+            if (key.equals("help")) return null;
+
+            // Flags without a value (--column) are followed by another option or nothing
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+            options.put(key, hasValue ? args[++i] : "true");
+        }
+        return options;
+    }
+
+    private static List<OfflineChunk> loadChunks(String input, ModelMappings mappings, int distinct) throws IOException
+    {
+        if (!input.equalsIgnoreCase("synthetic"))
+        {
+            return ChunkDumps.load(new File(input), mappings, distinct);
+        }
+
+        List<OfflineChunk> chunks = new ArrayList<>(distinct);
+        for (int i = 0; i < distinct; i++)
+        {
+            chunks.add(OfflineChunk.synthetic(i, mappings));
+        }
+        return chunks;
+    }
+
+    private void run(int total, int jobs, int warmup) throws Exception
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ExecutorService workers = Executors.newFixedThreadPool(jobs, r ->
+        {
+            Thread thread = new Thread(r, "GenerativeTerrain-Headless");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r ->
+        {
+            Thread thread = new Thread(r, "GenerativeTerrain-Headless-Sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try
+        {
+            // Warm-up batches compile the hot paths and let ORT size its arena; none of it is reported
+            if (warmup > 0)
+            {
+                runJobs(workers, jobs, warmup);
+                metrics.reset();
+                chunkLatency.reset();
+                changedBlocks.reset();
+            }
+
+            System.gc();
+            AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+            sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                    0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            runJobs(workers, jobs, total);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            sampler.shutdownNow();
+
+            report(total, seconds, peakHeap.get(), memory.getHeapMemoryUsage().getCommitted());
+        }
+        finally
+        {
+            workers.shutdownNow();
+            sampler.shutdownNow();
+        }
+    }
+
+    private void runJobs(ExecutorService workers, int jobs, int total) throws Exception
+    {
+        // Jobs take batches from a shared counter until the total is reached, so they all finish at about the same time
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> running = new ArrayList<>(jobs);
+        for (int j = 0; j < jobs; j++)
+        {
+            running.add(workers.submit(() ->
+            {
+                runJob(next, total);
+                return null;
+            }));
+        }
+        for (Future<?> job : running)
+        {
+            job.get();
+        }
+    }
+
+    private void runJob(AtomicInteger next, int total) throws OrtException
+    {
+        final int slabs = layout.slabCount();
+        final int modelHeight = model.getModelHeight();
+        FloatBuffer input = ByteBuffer.allocateDirect(FeatureEncoder.tensorSize(batch * slabs, modelHeight) * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        int first;
+        while ((first = next.getAndAdd(batch)) < total)
+        {
+            int count = Math.min(batch, total - first);
+            long startNanos = System.nanoTime();
+
+            PipelineMetrics.Span encode = metrics.start(PipelineMetrics.Stage.ENCODE);
+            for (int i = 0; i < count; i++)
+            {
+                OfflineChunk chunk = chunks.get((first + i) % chunks.size());
+                for (int slab = 0; slab < slabs; slab++)
+                {
+                    encoder.encode(input, i * slabs + slab, chunk, chunk.getChunkBiome(), modelHeight, MIN_Y + layout.slabStart(slab));
+                }
+            }
+            encode.end(count);
+
+            BlockVolume[] predicted = model.infer(input, count, layout, metrics);
+
+            for (int i = 0; i < count; i++)
+            {
+                PipelineMetrics.Span diff = metrics.start(PipelineMetrics.Stage.DIFF);
+                ChangeList changes = ChangeList.diff(predicted[i], chunks.get((first + i) % chunks.size()));
+                diff.end(1);
+                changedBlocks.add(changes.size());
+            }
+
+            // Every chunk in a batch waits for the whole batch, so each one is recorded with the batch's latency
+            long micros = (System.nanoTime() - startNanos) / 1000;
+            for (int i = 0; i < count; i++)
+            {
+                chunkLatency.record(micros);
+            }
+        }
+    }
+
+    private void report(int total, double seconds, long peakHeap, long committedHeap)
+    {
+        System.out.println();
+        System.out.printf("Sustained: %.1f chunks/s (%d chunks in %.2f s), %.0f changed blocks per chunk%n",
+                total / seconds, total, seconds, (double) changedBlocks.sum() / Math.max(1, total));
+        System.out.println("Latency (ms)        mean      p50      p95      p99      max");
+        printRow("chunk end-to-end", chunkLatency);
+        for (PipelineMetrics.Stage stage : STAGES)
+        {
+            printRow(stage == PipelineMetrics.Stage.DIFF ? stage.getLabel() + " (approx.)" : stage.getLabel(),
+                    metrics.getHistogram(stage));
+        }
+        System.out.println("  (approx.) diffs model ids against the offline chunk; the plugin decodes each class to a Material");
+        System.out.println("  and reads it from a ChunkSnapshot, which can't be reproduced without a server");
+
+        long direct = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+        {
+            if (pool.getName().equals("direct")) direct = pool.getMemoryUsed();
+        }
+        System.out.printf("Peak heap: %.1f MB used (sampled every %d ms), %.1f MB committed, %.1f MB direct buffers%n",
+                peakHeap / 1048576.0, HEAP_SAMPLE_MILLIS, committedHeap / 1048576.0, direct / 1048576.0);
+    }
+
+    private static void printRow(String label, LatencyHistogram histogram)
+    {
+        System.out.printf("%-17s %8.2f %8.2f %8.2f %8.2f %8.2f%n", label,
+                histogram.getMeanMicros() / 1000.0,
+                histogram.percentileMicros(50) / 1000.0,
+                histogram.percentileMicros(95) / 1000.0,
+                histogram.percentileMicros(99) / 1000.0,
+                histogram.getMaxMicros() / 1000.0);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.ghosteau.generativeterrain.generation.BlockPalette;
+import com.ghosteau.generativeterrain.generation.BlockVolume;
+import com.ghosteau.generativeterrain.generation.FeatureEncoder;
+import com.ghosteau.generativeterrain.generation.SlabLayout;
+import com.ghosteau.generativeterrain.generation.TerrainModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InferenceBenchmark
+{
+    /*
+    - TerrainModel.infer on the bundled models: input tensor wrapping, session.run, copying/stitching the logits and decoding every chunk.
+    - Model files are read from the folder in the gt.models system property (default ../plugins_server, the repo's copy).
+    - Fixed-batch models (the CNN) show the cost of splitting a batch into several session.run calls.
+    */
+
+    @Param({"terrain_transformer_model.onnx", "terrain_model.onnx"})
+    public String modelFile;
+
+    @Param({"1", "4", "8"})
+    public int batchSize;
+
+    private OrtEnvironment env;
+    private OrtSession session;
+    private TerrainModel model;
+    private SlabLayout layout;
+    private FloatBuffer input;
+
+    @Setup
+    public void setUp() throws OrtException
+    {
+        File file = new File(System.getProperty("gt.models", "../plugins_server"), modelFile);
+        env = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions())
+        {
+            session = env.createSession(file.getAbsolutePath(), options);
+        }
+        model = new TerrainModel(modelFile, env, session);
+        layout = SlabLayout.centred(model.getModelHeight(), 384);
+
+        // Real features rather than zeros, so the run isn't helped by trivially sparse input
+        BlockPalette palette = BlockPalette.of(SyntheticChunk.PALETTE);
+        FeatureEncoder encoder = new FeatureEncoder(1);
+        input = ByteBuffer.allocateDirect(FeatureEncoder.tensorSize(batchSize, model.getModelHeight()) * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < batchSize; i++)
+        {
+            encoder.encode(input, i, palette.voxels(new SyntheticChunk(i)), 0.0f, model.getModelHeight(), -64 + layout.slabStart(0));
+        }
+        encoder.shutdown();
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException
+    {
+        session.close();
+    }
+
+    @Benchmark
+    public BlockVolume[] infer() throws OrtException
+    {
+        return model.infer(input, batchSize, layout);
+    }
+}
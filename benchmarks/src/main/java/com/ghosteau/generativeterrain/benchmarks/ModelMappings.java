@@ -0,0 +1,74 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class ModelMappings
+{
+    /*
+    - The block and biome id mappings the model was trained with, keyed by the names the exports use.
+    - Read straight from the JSON files without Material or Biome lookups, so no server registries are needed.
+    - Names the mapping doesn't know map to 0, the same id the plugin's encoder gives unmapped blocks and biomes.
+    */
+
+    private final Map<String, Integer> blockIds = new HashMap<>();
+    private final Map<String, Integer> biomeIds = new HashMap<>();
+    private int classCount;
+
+    private ModelMappings()
+    {
+    }
+
+    public static ModelMappings load(File blockMappingFile, File biomeMappingFile) throws IOException
+    {
+        ModelMappings mappings = new ModelMappings();
+
+        // Block mapping is class id -> name, biome mapping is name -> id
+        for (Map.Entry<String, JsonElement> entry : readJson(blockMappingFile).entrySet())
+        {
+            int id = Integer.parseInt(entry.getKey());
+            mappings.blockIds.put(entry.getValue().getAsString(), id);
+            mappings.classCount = Math.max(mappings.classCount, id + 1);
+        }
+        for (Map.Entry<String, JsonElement> entry : readJson(biomeMappingFile).entrySet())
+        {
+            mappings.biomeIds.put(entry.getKey(), entry.getValue().getAsInt());
+        }
+
+        return mappings;
+    }
+
+    private static JsonObject readJson(File jsonFile) throws IOException
+    {
+        return JsonParser.parseString(new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    public int blockId(String name)
+    {
+        return blockIds.getOrDefault(name, 0);
+    }
+
+    public int biomeId(String name)
+    {
+        return biomeIds.getOrDefault(name, 0);
+    }
+
+    public int airId()
+    {
+        // -1 when the mapping has no AIR, so nothing reads as air rather than every unmapped block
+        return blockIds.getOrDefault("AIR", -1);
+    }
+
+    public int classCount()
+    {
+        return classCount;
+    }
+}
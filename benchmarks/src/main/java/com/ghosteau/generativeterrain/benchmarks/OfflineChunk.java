@@ -0,0 +1,240 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import com.ghosteau.generativeterrain.generation.VoxelSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public final class OfflineChunk implements VoxelSource
+{
+    /*
+    - A chunk held as model ids for the headless runner: blocks for x and z from -1 to 16, biome and light for the chunk itself.
+    - Built from /grabChunkData exports (CSV rows or .gtc files, standalone or harvest shard members) or generated synthetically.
+    - The one-block border comes from the exports' neighbour columns (left, right, front, behind) on the chunk's edge rows;
+      the corner columns aren't exported and are never read by the encoder.
+    */
+
+    private static final int CHUNK_SIZE = 16;
+    private static final int BORDERED = CHUNK_SIZE + 2;
+    private static final int MIN_Y = -64;
+    private static final int HEIGHT = 384;
+    private static final int SEA_LEVEL = 62;
+    private static final int SECTION_HEIGHT = 16;
+    private static final int SECTION_ROWS = CHUNK_SIZE * SECTION_HEIGHT * CHUNK_SIZE;
+    private static final int GTC_MAGIC = 0x31435447;
+
+    private final String label;
+    private final int chunkBiome;
+    private final int airId;
+    private final short[] blocks = new short[BORDERED * HEIGHT * BORDERED];
+    private final short[] biomes = new short[CHUNK_SIZE * HEIGHT * CHUNK_SIZE];
+    private final byte[] light = new byte[CHUNK_SIZE * HEIGHT * CHUNK_SIZE];
+
+    private OfflineChunk(String label, int chunkBiome, int airId)
+    {
+        this.label = label;
+        this.chunkBiome = chunkBiome;
+        this.airId = airId;
+    }
+
+    public static OfflineChunk synthetic(long seed, ModelMappings mappings)
+    {
+        // Same rolling layered terrain as SyntheticChunk, expressed in the model's ids
+        int air = mappings.blockId("AIR");
+        int bedrock = mappings.blockId("BEDROCK");
+        int deepslate = mappings.blockId("DEEPSLATE");
+        int stone = mappings.blockId("STONE");
+        int coal = mappings.blockId("COAL_ORE");
+        int dirt = mappings.blockId("DIRT");
+        int grass = mappings.blockId("GRASS_BLOCK");
+        int sand = mappings.blockId("SAND");
+        int water = mappings.blockId("WATER");
+        int plains = mappings.biomeId("PLAINS");
+
+        OfflineChunk chunk = new OfflineChunk("synthetic " + seed, plains, mappings.airId());
+        Random random = new Random(seed);
+        double phaseX = random.nextDouble() * Math.PI * 2;
+        double phaseZ = random.nextDouble() * Math.PI * 2;
+
+        for (int x = -1; x <= CHUNK_SIZE; x++)
+        {
+            for (int z = -1; z <= CHUNK_SIZE; z++)
+            {
+                int surface = 64 + (int) (12 * Math.sin(phaseX + x * 0.2) + 8 * Math.cos(phaseZ + z * 0.15));
+                for (int y = MIN_Y; y < MIN_Y + HEIGHT; y++)
+                {
+                    int id;
+                    if (y == MIN_Y) id = bedrock;
+                    else if (y < 0) id = deepslate;
+                    else if (y < surface - 4) id = random.nextInt(100) == 0 ? coal : stone;
+                    else if (y < surface) id = dirt;
+                    else if (y == surface) id = surface < SEA_LEVEL ? sand : grass;
+                    else if (y <= SEA_LEVEL) id = water;
+                    else id = air;
+                    chunk.blocks[bordered(x, y, z)] = (short) id;
+
+                    if (x >= 0 && x < CHUNK_SIZE && z >= 0 && z < CHUNK_SIZE)
+                    {
+                        chunk.biomes[inner(x, y, z)] = (short) plains;
+                        chunk.light[inner(x, y, z)] = (byte) (id == air ? 15 : id == water ? 12 : 0);
+                    }
+                }
+            }
+        }
+
+        return chunk;
+    }
+
+    public static OfflineChunk readCsv(BufferedReader reader, String label, ModelMappings mappings) throws IOException
+    {
+        // Columns are in CsvExporter.HEADER order; harvest shard members carry rows only, standalone files start with the header
+        OfflineChunk chunk = null;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            if (line.isEmpty() || line.startsWith("x,")) continue;
+
+            String[] cols = line.split(",");
+            if (chunk == null)
+            {
+                chunk = new OfflineChunk(label, mappings.biomeId(cols[3]), mappings.airId());
+            }
+
+            chunk.set(Integer.parseInt(cols[0]), Integer.parseInt(cols[1]), Integer.parseInt(cols[2]),
+                    mappings.blockId(cols[5]), mappings.biomeId(cols[4]), (int) Double.parseDouble(cols[7]),
+                    mappings.blockId(cols[8]), mappings.blockId(cols[9]), mappings.blockId(cols[12]), mappings.blockId(cols[13]));
+        }
+
+        if (chunk == null) throw new IOException(label + " has no rows");
+        return chunk;
+    }
+
+    public static OfflineChunk readGtc(ByteBuffer data, String label, ModelMappings mappings) throws IOException
+    {
+        // Layout as written by BinaryExporter
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (in.getInt(0) != GTC_MAGIC || in.getShort(4) != 1)
+        {
+            throw new IOException(label + " is not a version 1 .gtc file");
+        }
+
+        int indexWidth = in.get(6);
+        int sections = in.get(7) & 0xFF;
+        int blockCount = in.getShort(20) & 0xFFFF;
+        int biomeCount = in.getShort(22) & 0xFFFF;
+        int chunkBiomeIndex = in.getShort(24) & 0xFFFF;
+        int paletteLength = in.getInt(28);
+        int tableOffset = in.getInt(32);
+
+        byte[] paletteBytes = new byte[paletteLength];
+        in.position(64);
+        in.get(paletteBytes);
+        String[] lines = new String(paletteBytes, StandardCharsets.UTF_8).split("\n");
+
+        // Translate the file's own palettes to model ids once, then every column lookup is an array index
+        int[] blockIds = new int[blockCount];
+        int[] biomeIds = new int[biomeCount];
+        for (int i = 0; i < blockCount; i++) blockIds[i] = mappings.blockId(lines[1 + i]);
+        for (int i = 0; i < biomeCount; i++) biomeIds[i] = mappings.biomeId(lines[1 + blockCount + i]);
+
+        // The chunk biome is stored as 0xFFFF when no block in the chunk has it
+        int chunkBiome = chunkBiomeIndex < biomeCount ? biomeIds[chunkBiomeIndex] : 0;
+        OfflineChunk chunk = new OfflineChunk(label, chunkBiome, mappings.airId());
+        int[] values = new int[10];
+
+        for (int section = 0; section < sections; section++)
+        {
+            int entry = tableOffset + section * 24;
+            int offset = in.getInt(entry);
+            if (offset < 0)
+            {
+                // Elided section: every column is the constant stored in the table entry
+                for (int c = 0; c < 8; c++) values[c] = in.getShort(entry + 4 + c * 2) & 0xFFFF;
+                values[8] = in.get(entry + 20) & 0xFF;
+                values[9] = in.get(entry + 21) & 0xFF;
+            }
+
+            for (int row = 0; row < SECTION_ROWS; row++)
+            {
+                if (offset >= 0)
+                {
+                    for (int c = 0; c < 8; c++)
+                    {
+                        int at = offset + (c * SECTION_ROWS + row) * indexWidth;
+                        values[c] = indexWidth == 1 ? in.get(at) & 0xFF : in.getShort(at) & 0xFFFF;
+                    }
+                    values[9] = in.get(offset + (8 * indexWidth + 1) * SECTION_ROWS + row) & 0xFF;
+                }
+
+                int x = row / (SECTION_HEIGHT * CHUNK_SIZE);
+                int y = MIN_Y + section * SECTION_HEIGHT + (row / CHUNK_SIZE) % SECTION_HEIGHT;
+                int z = row % CHUNK_SIZE;
+                chunk.set(x, y, z, blockIds[values[0]], biomeIds[values[1]], values[9],
+                        blockIds[values[2]], blockIds[values[3]], blockIds[values[6]], blockIds[values[7]]);
+            }
+        }
+
+        return chunk;
+    }
+
+    private void set(int x, int y, int z, int block, int biome, int lightLevel, int left, int right, int front, int behind)
+    {
+        blocks[bordered(x, y, z)] = (short) block;
+        biomes[inner(x, y, z)] = (short) biome;
+        light[inner(x, y, z)] = (byte) lightLevel;
+
+        // Edge rows carry the neighbouring chunk's blocks; front is -z and behind is +z in the exports
+        if (x == 0) blocks[bordered(-1, y, z)] = (short) left;
+        if (x == CHUNK_SIZE - 1) blocks[bordered(CHUNK_SIZE, y, z)] = (short) right;
+        if (z == 0) blocks[bordered(x, y, -1)] = (short) front;
+        if (z == CHUNK_SIZE - 1) blocks[bordered(x, y, CHUNK_SIZE)] = (short) behind;
+    }
+
+    private static int bordered(int x, int y, int z)
+    {
+        return ((x + 1) * HEIGHT + (y - MIN_Y)) * BORDERED + z + 1;
+    }
+
+    private static int inner(int x, int y, int z)
+    {
+        return (x * HEIGHT + (y - MIN_Y)) * CHUNK_SIZE + z;
+    }
+
+    public String getLabel()
+    {
+        return label;
+    }
+
+    public int getChunkBiome()
+    {
+        return chunkBiome;
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z)
+    {
+        return blocks[bordered(x, y, z)];
+    }
+
+    @Override
+    public boolean isAir(int x, int y, int z)
+    {
+        return blocks[bordered(x, y, z)] == airId;
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        return light[inner(x, y, z)];
+    }
+
+    @Override
+    public int getBiomeId(int x, int y, int z)
+    {
+        return biomes[inner(x, y, z)];
+    }
+}
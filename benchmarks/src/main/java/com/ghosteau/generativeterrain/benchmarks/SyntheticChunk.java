@@ -0,0 +1,74 @@
+package com.ghosteau.generativeterrain.benchmarks;
+
+import com.ghosteau.generativeterrain.generation.BlockSource;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+import java.util.Random;
+
+public final class SyntheticChunk implements BlockSource
+{
+    /*
+    - Stand-in for a captured chunk neighbourhood: rolling layered terrain (bedrock, stone with ores, dirt, grass) and water up to sea level.
+    - Covers x and z from -1 to 16 like a real neighbourhood, so edge reads cost the same as in-chunk reads.
+    - Biomes are null, which encodes as 0; Biome constants need a running server's registries.
+    */
+
+    public static final Material[] PALETTE = {
+            Material.AIR, Material.BEDROCK, Material.STONE, Material.DEEPSLATE, Material.DIRT, Material.GRASS_BLOCK,
+            Material.WATER, Material.SAND, Material.GRAVEL, Material.COAL_ORE, Material.IRON_ORE, Material.CAVE_AIR
+    };
+
+    private static final int MIN_Y = -64;
+    private static final int HEIGHT = 384;
+    private static final int SEA_LEVEL = 62;
+
+    private final Material[][][] blocks = new Material[18][HEIGHT][18];
+
+    public SyntheticChunk(long seed)
+    {
+        Random random = new Random(seed);
+        double phaseX = random.nextDouble() * Math.PI * 2;
+        double phaseZ = random.nextDouble() * Math.PI * 2;
+
+        for (int x = 0; x < 18; x++)
+        {
+            for (int z = 0; z < 18; z++)
+            {
+                int surface = 64 + (int) (12 * Math.sin(phaseX + x * 0.2) + 8 * Math.cos(phaseZ + z * 0.15));
+                for (int row = 0; row < HEIGHT; row++)
+                {
+                    int y = row + MIN_Y;
+                    Material type;
+                    if (y == MIN_Y) type = Material.BEDROCK;
+                    else if (y < 0) type = random.nextInt(200) == 0 ? Material.CAVE_AIR : Material.DEEPSLATE;
+                    else if (y < surface - 4) type = random.nextInt(100) == 0 ? Material.COAL_ORE : random.nextInt(150) == 0 ? Material.IRON_ORE : Material.STONE;
+                    else if (y < surface) type = Material.DIRT;
+                    else if (y == surface) type = surface < SEA_LEVEL ? Material.SAND : Material.GRASS_BLOCK;
+                    else if (y <= SEA_LEVEL) type = Material.WATER;
+                    else type = Material.AIR;
+                    blocks[x][row][z] = type;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Material getType(int x, int y, int z)
+    {
+        return blocks[x + 1][y - MIN_Y][z + 1];
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        Material type = getType(x, y, z);
+        return type == Material.AIR ? 15 : type == Material.WATER ? 12 : 0;
+    }
+
+    @Override
+    public Biome getBiome(int x, int y, int z)
+    {
+        return null;
+    }
+}
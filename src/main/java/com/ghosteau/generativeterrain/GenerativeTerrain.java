@@ -3,24 +3,35 @@ package com.ghosteau.generativeterrain;
 import com.ghosteau.generativeterrain.commands.grabChunkData;
 import com.ghosteau.generativeterrain.commands.modelGenerateTerrain;
 import com.ghosteau.generativeterrain.commands.setDataPath;
+import com.ghosteau.generativeterrain.generation.TicketRegistry;
 
 import org.bukkit.ChatColor;
+import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class GenerativeTerrain extends JavaPlugin
 {
     private modelGenerateTerrain terrainGenerator;
+    private grabChunkData chunkDataCollector;
 
     @Override
     public void onEnable()
     {
+        // Write the default config on first run so the generation settings are there to edit
+        saveDefaultConfig();
+
+        // Chunk tickets are counted plugin-wide, since exports and generations may hold the same chunks
+        TicketRegistry tickets = new TicketRegistry(this);
+
         // Register commands
-        this.getCommand("grabChunkData").setExecutor(new grabChunkData());
+        chunkDataCollector = new grabChunkData(this, tickets);
+        this.getCommand("grabChunkData").setExecutor(chunkDataCollector);
         this.getCommand("setDataPath").setExecutor(new setDataPath());
 
         // Initialize and register the terrain generator command
-        terrainGenerator = new modelGenerateTerrain(this);
+        terrainGenerator = new modelGenerateTerrain(this, tickets);
         this.getCommand("generateTerrain").setExecutor(terrainGenerator);
+        getServer().getPluginManager().registerEvents(terrainGenerator, this);
 
         // Create data folder if it doesn't exist
         if (!getDataFolder().exists())
@@ -33,6 +44,18 @@ public class GenerativeTerrain extends JavaPlugin
         getServer().getConsoleSender().sendMessage(ChatColor.DARK_AQUA + "[GenerativeTerrain]: Loading ML model...");
     }
 
+    @Override
+    public ChunkGenerator getDefaultWorldGenerator(String worldName, String id)
+    {
+        // Lets bukkit.yml (or a world creator) use "GenerativeTerrain[:model]" as the generator for a world
+        if (terrainGenerator == null)
+        {
+            return null;
+        }
+
+        return terrainGenerator.createChunkGenerator(worldName, id);
+    }
+
     @Override
     public void onDisable()
     {
@@ -42,6 +65,11 @@ public class GenerativeTerrain extends JavaPlugin
             terrainGenerator.cleanup();
         }
 
+        if (chunkDataCollector != null)
+        {
+            chunkDataCollector.shutdown();
+        }
+
         // Just a message to let server know plugin is disabled
         getServer().getConsoleSender().sendMessage(ChatColor.DARK_AQUA + "[GenerativeTerrain]: Plugin disabled.");
     }
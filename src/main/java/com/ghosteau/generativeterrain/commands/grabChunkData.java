@@ -1,38 +1,89 @@
 package com.ghosteau.generativeterrain.commands;
 
+import com.ghosteau.generativeterrain.dataset.BinaryExporter;
+import com.ghosteau.generativeterrain.dataset.ChunkSample;
+import com.ghosteau.generativeterrain.dataset.CsvExporter;
+import com.ghosteau.generativeterrain.dataset.ShardWriter;
+import com.ghosteau.generativeterrain.generation.ChunkNeighbourhood;
+import com.ghosteau.generativeterrain.generation.ChunkTickets;
+import com.ghosteau.generativeterrain.generation.TicketRegistry;
+import com.ghosteau.generativeterrain.generation.HilbertWalk;
 import org.bukkit.*;
-import org.bukkit.block.BlockFace;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 public class grabChunkData implements CommandExecutor
 {
-    // Height limit and minimum Y-value as of 1.21.4.
-    final private int maxY = 319;
-    final private int minY = -64;
-
-    // Single biome label for the whole chunk.
-    private String ChunkBiome = "UNKNOWN";
-
-    // ArrayLists that store chunk data.
-    private ArrayList<Integer> ListX = new ArrayList<>();
-    private ArrayList<Integer> ListY = new ArrayList<>();
-    private ArrayList<Integer> ListZ = new ArrayList<>();
-    private ArrayList<String> Biome = new ArrayList<>();
-    private ArrayList<String> Block_ID = new ArrayList<>();
-    private ArrayList<Boolean> Is_Surface = new ArrayList<>();
-    private ArrayList<Double> Light_Level = new ArrayList<>();
-    private ArrayList<String> Block_to_Left = new ArrayList<>();
-    private ArrayList<String> Block_to_Right = new ArrayList<>();
-    private ArrayList<String> Block_Below = new ArrayList<>();
-    private ArrayList<String> Block_Above = new ArrayList<>();
-    private ArrayList<String> Block_in_Front = new ArrayList<>();
-    private ArrayList<String> Block_Behind = new ArrayList<>();
+    /*
+    - Captures the player's chunk and its four neighbours as snapshots in one tick; that is the only work done on the main thread.
+    - Feature assembly into primitive columns and the export run on a plugin-owned worker, so several collectors can run the command at once.
+    - "radius <r>" and "area <x1> <z1> <x2> <z2>" harvest a whole region into compressed shard files (refer to ShardWriter):
+      chunks are loaded asynchronously ahead of a Hilbert walk, snapshotted a few per tick, encoded in parallel and appended by one writer thread.
+    */
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    private final JavaPlugin plugin;
+    private final TicketRegistry ticketRegistry;
+    private final ExecutorService exporter = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread thread = new Thread(r, "GenerativeTerrain-Export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService encoders;
+    private final ConcurrentHashMap<UUID, HarvestJob> harvests = new ConcurrentHashMap<>();
+
+    private final int snapshotsPerTick;
+    private final int loadsAhead;
+    private final int maxEncoding;
+    private final long maxShardBytes;
+    private final long maxHarvestChunks;
+    private final long reportMillis;
+
+    public grabChunkData(JavaPlugin plugin, TicketRegistry ticketRegistry)
+    {
+        this.plugin = plugin;
+        this.ticketRegistry = ticketRegistry;
+
+        int workers = Math.max(1, plugin.getConfig().getInt("dataset.workers", 2));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.encoders = Executors.newFixedThreadPool(workers, r ->
+        {
+            Thread thread = new Thread(r, "GenerativeTerrain-Harvest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.snapshotsPerTick = Math.max(1, plugin.getConfig().getInt("dataset.snapshots-per-tick", 8));
+        this.loadsAhead = Math.max(1, plugin.getConfig().getInt("dataset.loads-ahead", 32));
+        this.maxEncoding = workers * 4;
+        this.maxShardBytes = plugin.getConfig().getLong("dataset.shard-mb", 256) * 1024 * 1024;
+        this.maxHarvestChunks = plugin.getConfig().getLong("dataset.max-chunks", 65536);
+        this.reportMillis = plugin.getConfig().getLong("dataset.report-seconds", 10) * 1000;
+    }
 
     @Override
     public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args)
@@ -52,164 +103,409 @@ public class grabChunkData implements CommandExecutor
 
         if (cmd.getName().equalsIgnoreCase("grabChunkData"))
         {
+            UUID playerUUID = player.getUniqueId();
+            if (args.length > 0 && args[0].equalsIgnoreCase("cancel"))
+            {
+                HarvestJob job = harvests.get(playerUUID);
+                if (job != null)
+                {
+                    job.stop(ChatColor.YELLOW + "Harvest canceled.");
+                }
+                else
+                {
+                    player.sendMessage(ChatColor.YELLOW + "You don't have a harvest in progress.");
+                }
+                return true;
+            }
+
             // Check if path is set.
-            if (setDataPath.getPath() == null || setDataPath.getPath().isEmpty())
+            final String path = setDataPath.getPath(playerUUID);
+            if (path == null || path.isEmpty())
             {
                 player.sendMessage(ChatColor.RED + "Warning: Please set a path before using this command via /setDataPath");
                 return true;
             }
 
+            if (args.length > 0 && (args[0].equalsIgnoreCase("radius") || args[0].equalsIgnoreCase("area")))
+            {
+                startHarvest(player, path, args);
+                return true;
+            }
+
             Location playerLocation = player.getLocation();
             World world = player.getWorld();
-            Chunk playerChunk = world.getChunkAt(playerLocation);
 
-            // Collect chunk data.
-            try
+            // Collect chunk data once the chunk and its neighbours have loaded asynchronously; their tickets only last until the capture
+            player.sendMessage(ChatColor.YELLOW + "Collecting chunk data, please wait...");
+            ChunkTickets tickets = new ChunkTickets(ticketRegistry, world);
+            tickets.loadWithNeighbours(playerLocation.getBlockX() >> 4, playerLocation.getBlockZ() >> 4).whenComplete((chunk, error) ->
             {
-                player.sendMessage(ChatColor.YELLOW + "Collecting chunk data, please wait...");
-
-                // Gets central biome for the chunk by finding the surface at the center block.
-                int centerX = 8;
-                int centerZ = 8;
-                int surfaceY = maxY;
+                try
+                {
+                    if (error != null)
+                    {
+                        player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Fatal error: " + error.getMessage());
+                        plugin.getLogger().log(Level.SEVERE, "Failed to load chunks for export", error);
+                        return;
+                    }
 
-                while (surfaceY > minY && playerChunk.getBlock(centerX, surfaceY, centerZ).getType() == Material.AIR)
+                    export(player, path, ChunkNeighbourhood.capture(chunk));
+                }
+                finally
                 {
-                    surfaceY--;
+                    tickets.releaseAll();
                 }
+            });
 
-                ChunkBiome = playerChunk.getBlock(centerX, surfaceY, centerZ).getBiome().toString();
+            return true;
+        }
 
-                // Loops through every block in the chunk.
-                for (int x = 0; x < 16; x++)
+        return false;
+    }
+
+    private void export(Player player, String path, ChunkNeighbourhood captured)
+    {
+        exporter.execute(() ->
+        {
+            try
+            {
+                long start = System.nanoTime();
+                ChunkSample sample = ChunkSample.assemble(captured);
+                if (BinaryExporter.handles(path))
                 {
-                    for (int y = minY; y <= maxY; y++)
-                    {
-                        for (int z = 0; z < 16; z++)
-                        {
-                            ListX.add(x);
-                            ListY.add(y);
-                            ListZ.add(z);
-                            Biome.add(playerChunk.getBlock(x, y, z).getBiome().toString());
-                            Block_ID.add(playerChunk.getBlock(x, y, z).getType().toString());
-                            Is_Surface.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.UP).getType() == Material.AIR);
-                            Light_Level.add((double)playerChunk.getBlock(x, y, z).getLightLevel());
-                            Block_to_Left.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.WEST).getType().toString());
-                            Block_to_Right.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.EAST).getType().toString());
-                            Block_in_Front.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.NORTH).getType().toString());
-                            Block_Behind.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.SOUTH).getType().toString());
-                            Block_Below.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.DOWN).getType().toString());
-                            Block_Above.add(playerChunk.getBlock(x, y, z).getRelative(BlockFace.UP).getType().toString());
-                        }
-                    }
+                    BinaryExporter.write(sample, new File(path));
+                }
+                else
+                {
+                    CsvExporter.write(sample, new File(path));
                 }
 
-                // Export data to CSV.
-                exportToCSV(setDataPath.getPath());
-                clearAllLists();
-                player.sendMessage(ChatColor.GREEN + "" + ChatColor.BOLD + "[!] Chunk data fetched successfully!");
-
-                return true;
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(ChatColor.GREEN + "" + ChatColor.BOLD + "[!] Chunk data fetched successfully! " +
+                        ChatColor.RESET + ChatColor.GRAY + "(" + millis + " ms)"));
             }
             catch (Exception e)
             {
-                player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Fatal error: " + e.getMessage());
-                e.printStackTrace();
-                clearAllLists();
-                return true;
+                plugin.getLogger().log(Level.SEVERE, "Failed to export chunk data", e);
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Fatal error: " + e.getMessage()));
             }
-        }
-
-        return false;
+        });
     }
 
-    private void exportToCSV(String path)
+    private void startHarvest(Player player, String path, String[] args)
     {
-        // Exports all data from respective ArrayLists to CSV file format.
-        final int length = ListY.size();
-        BufferedWriter bufferedWriter = null;
-        FileWriter fileWriter = null;
+        if (harvests.containsKey(player.getUniqueId()))
+        {
+            player.sendMessage(ChatColor.RED + "You already have a harvest in progress. Type /grabchunkdata cancel to stop it.");
+            return;
+        }
 
+        int minX;
+        int minZ;
+        int maxX;
+        int maxZ;
         try
         {
-            File csvFile = new File(path);
+            if (args[0].equalsIgnoreCase("radius"))
+            {
+                if (args.length < 2)
+                {
+                    player.sendMessage(ChatColor.RED + "Usage: /grabchunkdata radius <r>");
+                    return;
+                }
 
-            // Create parent directories if they don't exist.
-            File parent = csvFile.getParentFile();
-            if (parent != null && !parent.exists())
+                int radius = Math.max(0, Integer.parseInt(args[1]));
+                Chunk playerChunk = player.getLocation().getChunk();
+                minX = playerChunk.getX() - radius;
+                minZ = playerChunk.getZ() - radius;
+                maxX = playerChunk.getX() + radius;
+                maxZ = playerChunk.getZ() + radius;
+            }
+            else
             {
-                parent.mkdirs();
+                if (args.length < 5)
+                {
+                    player.sendMessage(ChatColor.RED + "Usage: /grabchunkdata area <chunkX1> <chunkZ1> <chunkX2> <chunkZ2>");
+                    return;
+                }
+
+                int x1 = Integer.parseInt(args[1]);
+                int z1 = Integer.parseInt(args[2]);
+                int x2 = Integer.parseInt(args[3]);
+                int z2 = Integer.parseInt(args[4]);
+                minX = Math.min(x1, x2);
+                minZ = Math.min(z1, z2);
+                maxX = Math.max(x1, x2);
+                maxZ = Math.max(z1, z2);
             }
+        }
+        catch (NumberFormatException e)
+        {
+            player.sendMessage(ChatColor.RED + "Invalid chunk coordinates.");
+            return;
+        }
+
+        long chunkCount = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        if (chunkCount > maxHarvestChunks)
+        {
+            player.sendMessage(ChatColor.RED + "That region covers " + chunkCount + " chunks; the limit is " + maxHarvestChunks + ".");
+            return;
+        }
 
-            // Write data features and prepare to iterate
-            fileWriter = new FileWriter(csvFile);
-            bufferedWriter = new BufferedWriter(fileWriter);
-            bufferedWriter.write("x,y,z,ChunkBiome,Biome,Block_ID,Is_Surface,Light_Level,Block_to_Left,Block_to_Right,Block_Below,Block_Above,Block_in_Front,Block_Behind");
-            bufferedWriter.newLine();
+        ShardWriter writer;
+        try
+        {
+            writer = new ShardWriter(new File(path), maxShardBytes);
+        }
+        catch (FileAlreadyExistsException e)
+        {
+            player.sendMessage(ChatColor.RED + "A harvest already exists at " + path + " (" + e.getFile() + "). Choose a new path with /setDataPath.");
+            return;
+        }
+        catch (IOException e)
+        {
+            player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Fatal error: " + e.getMessage());
+            plugin.getLogger().log(Level.SEVERE, "Could not open harvest shards at " + path, e);
+            return;
+        }
+
+        HarvestJob job = new HarvestJob(player, player.getWorld(), new HilbertWalk(minX, minZ, maxX, maxZ, 0), chunkCount, writer);
+        harvests.put(player.getUniqueId(), job);
+        job.task = Bukkit.getScheduler().runTaskTimer(plugin, job::tick, 1L, 1L);
+
+        player.sendMessage(ChatColor.GREEN + "Harvesting " + chunkCount + " chunks from " + minX + ", " + minZ + " to " + maxX + ", " + maxZ + " into " + path + " shards...");
+        player.sendMessage(ChatColor.GRAY + "Type /grabchunkdata cancel to stop the harvest.");
+    }
+
+    public void shutdown()
+    {
+        List<HarvestJob> stopped = new ArrayList<>(harvests.values());
+        for (HarvestJob job : stopped)
+        {
+            job.stop(null);
+        }
 
-            for (int i = 0; i < length; i++)
+        // Harvest chunks still waiting for an encoder are dropped. Exports and appends already queued still run, and the
+        // exporter is waited on for a bounded time so a file isn't left half written when the server stops; whatever is
+        // still running after that is interrupted
+        encoders.shutdownNow();
+        exporter.shutdown();
+        try
+        {
+            if (!exporter.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS))
             {
-                bufferedWriter.write(ListX.get(i).toString());
-                bufferedWriter.write("," + ListY.get(i).toString());
-                bufferedWriter.write("," + ListZ.get(i).toString());
-                bufferedWriter.write("," + ChunkBiome);
-                bufferedWriter.write("," + Biome.get(i));
-                bufferedWriter.write("," + Block_ID.get(i));
-                bufferedWriter.write("," + Is_Surface.get(i).toString());
-                bufferedWriter.write("," + Light_Level.get(i).toString());
-                bufferedWriter.write("," + Block_to_Left.get(i));
-                bufferedWriter.write("," + Block_to_Right.get(i));
-                bufferedWriter.write("," + Block_Below.get(i));
-                bufferedWriter.write("," + Block_Above.get(i));
-                bufferedWriter.write("," + Block_in_Front.get(i));
-                bufferedWriter.write("," + Block_Behind.get(i));
-                bufferedWriter.newLine();
+                plugin.getLogger().warning("Chunk data exports did not finish within " + SHUTDOWN_WAIT_SECONDS + " seconds; abandoning them.");
+                exporter.shutdownNow();
             }
         }
-        catch (IOException ioe)
+        catch (InterruptedException e)
         {
-            System.err.println("Failed to export to CSV: " + ioe.getMessage());
-            ioe.printStackTrace();
+            exporter.shutdownNow();
+            Thread.currentThread().interrupt();
         }
-        finally
-        // Finally block always runs regardless of exception status; exists to close all file and buffered readers.
+
+        // Shards and manifests whose close never got its turn on the exporter are closed here, once it is done with them
+        for (HarvestJob job : stopped)
         {
-            try
+            job.closeWriter();
+        }
+    }
+
+    private final class HarvestJob
+    {
+        // One player's region harvest, driven once per tick on the main thread
+
+        private final Player player;
+        private final UUID playerUUID;
+        private final HilbertWalk walk;
+        private final long totalChunks;
+        private final ShardWriter writer;
+        private final ArrayDeque<PendingChunk> loading = new ArrayDeque<>();
+        private final ChunkTickets tickets;
+        private final LinkedHashMap<Long, ChunkSnapshot> recentSnapshots = new LinkedHashMap<Long, ChunkSnapshot>(64, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ChunkSnapshot> eldest)
+            {
+                return size() > 64;
+            }
+        };
+        private final AtomicInteger encoding = new AtomicInteger();
+        private final AtomicInteger written = new AtomicInteger();
+        private final long start = System.currentTimeMillis();
+
+        private BukkitTask task;
+        private boolean walkDone;
+        private volatile boolean stopped;
+        private boolean closed; // guarded by the job
+        private int skipped;
+        private long lastReport = start;
+        private volatile String failure;
+
+        private HarvestJob(Player player, World world, HilbertWalk walk, long totalChunks, ShardWriter writer)
+        {
+            this.player = player;
+            this.playerUUID = player.getUniqueId();
+            this.walk = walk;
+            this.totalChunks = totalChunks;
+            this.writer = writer;
+
+            // Every load a pending chunk depends on was requested within the last five per pending chunk, so this bound never
+            // drops the ticket of a chunk that still has to be captured
+            this.tickets = new ChunkTickets(ticketRegistry, world, (loadsAhead + 1) * 5);
+        }
+
+        private void tick()
+        {
+            if (stopped) return;
+            if (failure != null)
+            {
+                stop(ChatColor.RED + "" + ChatColor.BOLD + "[!] Harvest stopped: " + failure);
+                return;
+            }
+
+            // Keep a window of chunks (and their neighbours) loading asynchronously ahead of the walk
+            while (!walkDone && loading.size() < loadsAhead)
             {
-                if (bufferedWriter != null)
+                if (!walk.next())
                 {
-                    bufferedWriter.close();
+                    walkDone = true;
+                    break;
                 }
 
-                if (fileWriter != null)
+                int chunkX = walk.getChunkX();
+                int chunkZ = walk.getChunkZ();
+                loading.add(new PendingChunk(tickets.loadWithNeighbours(chunkX, chunkZ)));
+            }
+
+            // Snapshot loaded chunks in walk order, within the per-tick budget and while the encoders keep up
+            for (int captured = 0; captured < snapshotsPerTick && !loading.isEmpty() && encoding.get() < maxEncoding; captured++)
+            {
+                PendingChunk next = loading.peek();
+                if (!next.ready.isDone()) break;
+                loading.poll();
+
+                if (next.ready.isCompletedExceptionally())
                 {
-                    fileWriter.close();
+                    skipped++;
+                    continue;
                 }
+
+                submit(ChunkNeighbourhood.capture(next.ready.join(), recentSnapshots));
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= reportMillis)
+            {
+                lastReport = now;
+                player.sendMessage(ChatColor.GRAY + progressLine());
+            }
+
+            if (walkDone && loading.isEmpty() && encoding.get() == 0)
+            {
+                stop(ChatColor.GREEN + "" + ChatColor.BOLD + "[!] Harvest complete!");
+            }
+        }
+
+        private void submit(ChunkNeighbourhood captured)
+        {
+            encoding.incrementAndGet();
+            CompletableFuture.supplyAsync(() ->
+                    {
+                        try
+                        {
+                            return writer.encode(ChunkSample.assemble(captured));
+                        }
+                        catch (IOException e)
+                        {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, encoders)
+                    .thenAcceptAsync(member -> append(captured, member), exporter)
+                    .whenComplete((ignored, error) ->
+                    {
+                        encoding.decrementAndGet();
+
+                        // Once the harvest is stopped nothing more is written, and an append refused by the exporter
+                        // shutting down is expected
+                        if (error != null && !stopped && failure == null)
+                        {
+                            failure = error.getCause() != null ? error.getCause().getMessage() : error.getMessage();
+                            plugin.getLogger().log(Level.SEVERE, "Harvesting chunk " + captured.getChunkX() + ", " + captured.getChunkZ() + " failed", error);
+                        }
+                    });
+        }
+
+        private synchronized void append(ChunkNeighbourhood captured, byte[] member)
+        {
+            if (closed) return;
+            try
+            {
+                writer.append(captured.getChunkX(), captured.getChunkZ(), member);
+                written.incrementAndGet();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized void closeWriter()
+        {
+            if (closed) return;
+            closed = true;
+            try
+            {
+                writer.close();
             }
-            catch (IOException ioe)
+            catch (IOException e)
             {
-                System.err.println("Error while closing BufferedWriter or FileWriter object(s).");
-                ioe.printStackTrace();
+                plugin.getLogger().log(Level.SEVERE, "Could not close harvest shards", e);
             }
         }
+
+        private String progressLine()
+        {
+            double seconds = (System.currentTimeMillis() - start) / 1000.0;
+            int done = written.get();
+            return String.format("[Harvest] %d/%d chunks, %.2f chunks/s, %.1f MB in %d shard(s)%s", done, totalChunks,
+                    seconds > 0 ? done / seconds : 0.0, writer.getTotalBytes() / (1024.0 * 1024.0), writer.getShardCount(),
+                    skipped > 0 ? ", " + skipped + " chunk(s) failed to load" : "");
+        }
+
+        private void stop(String message)
+        {
+            if (stopped) return;
+            stopped = true;
+            if (task != null) task.cancel();
+            tickets.releaseAll();
+            harvests.remove(playerUUID);
+
+            // Chunks already queued for the writer are still appended; the shard and manifest close after them
+            exporter.execute(() ->
+            {
+                closeWriter();
+                if (message != null)
+                {
+                    String line = message + " " + ChatColor.RESET + ChatColor.GRAY + progressLine();
+                    Bukkit.getScheduler().runTask(plugin, () ->
+                    {
+                        if (player.isOnline()) player.sendMessage(line);
+                    });
+                }
+            });
+        }
     }
 
-    private void clearAllLists()
+    private static final class PendingChunk
     {
-        // Clears all ArrayList data stored in the class.
-        ListX.clear();
-        ListY.clear();
-        ListZ.clear();
-        Block_ID.clear();
-        Biome.clear();
-        Is_Surface.clear();
-        Light_Level.clear();
-        Block_to_Left.clear();
-        Block_to_Right.clear();
-        Block_Above.clear();
-        Block_Below.clear();
-        Block_in_Front.clear();
-        Block_Behind.clear();
-        ChunkBiome = "UNKNOWN";
+        // A walk chunk whose own load and neighbour loads are in flight; completes with the chunk once all of them are in
+
+        private final CompletableFuture<Chunk> ready;
+
+        private PendingChunk(CompletableFuture<Chunk> ready)
+        {
+            this.ready = ready;
+        }
     }
-}
\ No newline at end of file
+}
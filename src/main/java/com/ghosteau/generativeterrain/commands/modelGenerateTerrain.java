@@ -1,552 +1,2397 @@
 package com.ghosteau.generativeterrain.commands;
 
 import ai.onnxruntime.*;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.ghosteau.generativeterrain.generation.ApplyScheduler;
+import com.ghosteau.generativeterrain.generation.BlockPalette;
+import com.ghosteau.generativeterrain.generation.BlockSource;
+import com.ghosteau.generativeterrain.generation.BlockVolume;
+import com.ghosteau.generativeterrain.generation.CancelToken;
+import com.ghosteau.generativeterrain.generation.ChangeList;
+import com.ghosteau.generativeterrain.generation.ChunkNeighbourhood;
+import com.ghosteau.generativeterrain.generation.ChunkTickets;
+import com.ghosteau.generativeterrain.generation.FeatureEncoder;
+import com.ghosteau.generativeterrain.generation.GeneratedChunk;
+import com.ghosteau.generativeterrain.generation.HilbertWalk;
+import com.ghosteau.generativeterrain.generation.InferenceCache;
+import com.ghosteau.generativeterrain.generation.InferenceService;
+import com.ghosteau.generativeterrain.generation.JobManager;
+import com.ghosteau.generativeterrain.generation.LatencyHistogram;
+import com.ghosteau.generativeterrain.generation.ModelChunkGenerator;
+import com.ghosteau.generativeterrain.generation.ModelRegistry;
+import com.ghosteau.generativeterrain.generation.ModelTuner;
+import com.ghosteau.generativeterrain.generation.PipelineMetrics;
+import com.ghosteau.generativeterrain.generation.PregenCheckpoint;
+import com.ghosteau.generativeterrain.generation.SessionSettings;
+import com.ghosteau.generativeterrain.generation.SlabLayout;
+import com.ghosteau.generativeterrain.generation.TensorPool;
+import com.ghosteau.generativeterrain.generation.TerrainModel;
+import com.ghosteau.generativeterrain.generation.TerrainPrecomputer;
+import com.ghosteau.generativeterrain.generation.TicketRegistry;
+import com.ghosteau.generativeterrain.generation.UndoJournal;
+import com.ghosteau.generativeterrain.generation.UndoRecord;
+import com.ghosteau.generativeterrain.generation.VoxelSource;
+import io.papermc.paper.math.Position;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.*;
 import org.bukkit.block.Biome;
-import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.command.*;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.FloatBuffer;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 
-public class modelGenerateTerrain implements CommandExecutor
+public class modelGenerateTerrain implements CommandExecutor, Listener
 {
     private final JavaPlugin plugin;
-    private OrtEnvironment env;
-    private OrtSession session;
-    private final ConcurrentHashMap<UUID, AtomicBoolean> generationTasks = new ConcurrentHashMap<>();
-    private final String model = "terrain_transformer_model.onnx";
+    private final TicketRegistry ticketRegistry;
+    private ModelRegistry models;
 
     private static final int CHUNK_WIDTH = 16;
     private static final int CHUNK_DEPTH = 16;
-    private static final int MODEL_CHUNK_HEIGHT = 32; // 32 for transformer, 256 for CNN model (as of now)
+    private static final int DEFAULT_MODEL_HEIGHT = 32; // 32 for transformer, 256 for CNN model (as of now); real heights come from model metadata
     private static final int MAX_Y = 319;
     private static final int MIN_Y = -64;
     private static final int WORLD_CHUNK_HEIGHT = MAX_Y - MIN_Y + 1;
 
-    private static final int BLOCKS_PER_BATCH = 2048;
-    private static final int TICKS_BETWEEN_BATCHES = 1;
+    private static final long SNAPSHOT_BYTES_ESTIMATE = 5 * 256 * 1024; // chunk plus four neighbour snapshots
+
+    private BlockPalette palette;
+    private FeatureEncoder featureEncoder;
+    private final int slabOverlap;
+    private final int inferenceBatchSize;
+    private final int maxRegionChunks;
+    private final TensorPool tensorPool;
+    private final InferenceService inferenceService;
+    private final JobManager jobManager;
+    private final AtomicBoolean tuning = new AtomicBoolean(false);
+    private final ApplyScheduler applyScheduler;
+    private final InferenceCache inferenceCache;
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final UndoJournal undoJournal;
+    private final int inferenceWorkers;
+    private final List<ModelChunkGenerator> chunkGenerators = new ArrayList<>();
+    private final ConcurrentHashMap<String, PregenJob> pregenJobs = new ConcurrentHashMap<>();
+    private final Map<UUID, Preview> previews = new HashMap<>(); // main thread only
+    private final Map<UUID, JobManager.Job> previewJobs = new HashMap<>(); // main thread only
+    private final File pregenFolder;
+
+    private static final int PREGEN_PRIORITY = Integer.MAX_VALUE / 2; // behind every interactive request
+    private static final String TARGET_USAGE = "Usage: /generateterrain [preview] [model <name>] [column] [chunkX chunkZ | radius <r> | area <chunkX1> <chunkZ1> <chunkX2> <chunkZ2>]";
+
+    public modelGenerateTerrain(JavaPlugin plugin, TicketRegistry ticketRegistry)
+    {
+        this.plugin = plugin;
+        this.ticketRegistry = ticketRegistry;
+        this.slabOverlap = plugin.getConfig().getInt("generation.slab-overlap", 0);
+        this.inferenceBatchSize = Math.max(1, plugin.getConfig().getInt("generation.batch-size", 8));
+        this.maxRegionChunks = Math.max(1, plugin.getConfig().getInt("generation.max-region-chunks", 256));
+        this.jobManager = new JobManager(plugin.getConfig().getInt("generation.max-jobs-per-player", 3),
+                plugin.getConfig().getLong("generation.job-timeout-seconds", 600) * 1000);
+
+        // Inference runs on a fixed set of plugin-owned workers, each with its own pooled input buffer
+        int workers = Math.max(1, plugin.getConfig().getInt("inference.workers", 2));
+        this.inferenceWorkers = workers;
+        this.tensorPool = new TensorPool(workers, FeatureEncoder.tensorSize(1, DEFAULT_MODEL_HEIGHT));
+        this.inferenceService = new InferenceService(workers,
+                Math.max(1, plugin.getConfig().getInt("inference.queue-capacity", 16)),
+                plugin.getConfig().getLong("inference.heap-budget-mb", 1024) * 1024 * 1024,
+                metrics, plugin.getLogger());
+
+        // A single main-thread scheduler applies blocks for every job within a per-tick time budget
+        this.applyScheduler = new ApplyScheduler(plugin,
+                plugin.getConfig().getDouble("apply.tick-budget-ms", 5.0),
+                plugin.getConfig().getDouble("apply.min-tick-budget-ms", 0.5),
+                plugin.getConfig().getDouble("apply.mspt-threshold", 40.0));
+        this.applyScheduler.start();
+
+        // Predictions are cached by input content, so regenerating an unchanged chunk skips the model
+        if (plugin.getConfig().getBoolean("cache.enabled", true))
+        {
+            this.inferenceCache = new InferenceCache(plugin.getConfig().getLong("cache.memory-mb", 256) * 1024 * 1024,
+                    plugin.getConfig().getBoolean("cache.disk", false) ? new File(plugin.getDataFolder(), "cache") : null,
+                    plugin.getConfig().getLong("cache.disk-mb", 2048) * 1024 * 1024,
+                    plugin.getLogger());
+        }
+        else
+        {
+            this.inferenceCache = null;
+        }
+
+        // Pre-generation checkpoints left by a stop or crash are picked up again once the worlds have loaded
+        this.pregenFolder = new File(plugin.getDataFolder(), "pregen");
+        if (plugin.getConfig().getBoolean("pregen.auto-resume", true))
+        {
+            Bukkit.getScheduler().runTask(plugin, () -> resumePregenJobs(Bukkit.getConsoleSender(), null));
+        }
+
+        // Prior block states are journalled before every change so generations can be undone
+        this.undoJournal = plugin.getConfig().getBoolean("undo.enabled", true)
+                ? new UndoJournal(new File(plugin.getDataFolder(), "undo"), plugin.getConfig().getInt("undo.max-jobs", 10), plugin.getLogger())
+                : null;
+
+        try
+        {
+            File mappingFile = new File(plugin.getDataFolder(), "block_id_mapping.json");
+            File biomeFile = new File(plugin.getDataFolder(), "biome_id_mapping.json");
+            palette = BlockPalette.load(mappingFile, biomeFile, plugin.getLogger());
+
+            // Feature extraction runs on its own fork-join pool so it never competes with the Bukkit async workers
+            featureEncoder = new FeatureEncoder(Runtime.getRuntime().availableProcessors() / 2);
+
+            // There are two models -- transformer based and pure CNN based; both are loaded and can be picked per request
+            Map<String, String> modelFiles = new LinkedHashMap<>();
+            ConfigurationSection files = plugin.getConfig().getConfigurationSection("models.files");
+            if (files != null)
+            {
+                for (String name : files.getKeys(false))
+                {
+                    modelFiles.put(name, files.getString(name));
+                }
+            }
+            else
+            {
+                modelFiles.put("transformer", "terrain_transformer_model.onnx");
+                modelFiles.put("cnn", "terrain_model.onnx");
+            }
+
+            // Sessions are created and warmed up off the main thread so enabling the plugin doesn't block the server
+            models = new ModelRegistry(plugin.getDataFolder(), modelFiles,
+                    plugin.getConfig().getString("models.default", "transformer"),
+                    SessionSettings.fromConfig(plugin.getConfig().getConfigurationSection("onnx")),
+                    tensorPool, plugin.getLogger());
+            models.loadAll();
+        }
+        catch (Exception e)
+        {
+            plugin.getLogger().log(Level.SEVERE, "Error initialising ONNX Runtime", e);
+        }
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args)
+    {
+        // Pre-generation runs unattended, so it can also be driven from the console
+        if (args.length > 0 && args[0].equalsIgnoreCase("pregen"))
+        {
+            handlePregenCommand(sender, args);
+            return true;
+        }
+
+        if (!(sender instanceof Player))
+        {
+            sender.sendMessage(ChatColor.RED + "You must be in-game to execute this command.");
+            return true;
+        }
+
+        Player player = (Player) sender;
+        if (!player.hasPermission("generativeterrain.generateterrain"))
+        {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return true;
+        }
+
+        if (models == null)
+        {
+            player.sendMessage(ChatColor.RED + "The terrain generation model isn't loaded. Check server logs.");
+            return true;
+        }
+
+        UUID playerUUID = player.getUniqueId();
+        if (args.length > 0 && (args[0].equalsIgnoreCase("models") || args[0].equalsIgnoreCase("reload")
+                || args[0].equalsIgnoreCase("use") || args[0].equalsIgnoreCase("tune")))
+        {
+            handleModelCommand(player, args);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("cache"))
+        {
+            handleCacheCommand(player, args);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats"))
+        {
+            handleStatsCommand(player, args);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("cancel"))
+        {
+            handleCancelCommand(player, args);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("jobs"))
+        {
+            handleJobsCommand(player);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("undo"))
+        {
+            startUndo(player, args);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("commit"))
+        {
+            commitPreview(player);
+            return true;
+        }
+
+        if (args.length > 1 && args[0].equalsIgnoreCase("preview") && args[1].equalsIgnoreCase("clear"))
+        {
+            clearPreview(player, true);
+            return true;
+        }
+
+        // Leading options: "model <name>" picks a model for this request, "column" regenerates the whole world column
+        // in model-height slabs instead of the single centred slab, "preview" only shows the result to you
+        String modelName = null;
+        boolean fullColumn = false;
+        boolean preview = false;
+        int argOffset = 0;
+        while (args.length > argOffset)
+        {
+            if (args[argOffset].equalsIgnoreCase("model") && args.length > argOffset + 1)
+            {
+                modelName = args[argOffset + 1];
+                argOffset += 2;
+            }
+            else if (args[argOffset].equalsIgnoreCase("column"))
+            {
+                fullColumn = true;
+                argOffset++;
+            }
+            else if (args[argOffset].equalsIgnoreCase("preview"))
+            {
+                preview = true;
+                argOffset++;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (modelName != null && !models.isKnown(modelName))
+        {
+            player.sendMessage(ChatColor.RED + "Unknown model '" + modelName + "'. Available: " + String.join(", ", models.names()));
+            return true;
+        }
+
+        TerrainModel model = models.get(modelName);
+        if (model == null)
+        {
+            player.sendMessage(ChatColor.RED + "The terrain generation model isn't loaded yet. It may still be warming up; otherwise check server logs.");
+            return true;
+        }
+
+        // Parse arguments for the target chunk(s)
+        World world = player.getWorld();
+        Chunk playerChunk = player.getLocation().getChunk();
+        List<long[]> chunks = new ArrayList<>();
+        String targetDescription;
+
+        try
+        {
+            if (args.length > argOffset && args[argOffset].equalsIgnoreCase("radius"))
+            {
+                if (args.length < argOffset + 2)
+                {
+                    player.sendMessage(ChatColor.RED + "Usage: /generateterrain [column] radius <r>");
+                    return true;
+                }
+
+                int radius = Math.max(0, Integer.parseInt(args[argOffset + 1]));
+                if (!checkRegionSize((long) (2 * radius + 1) * (2 * radius + 1), player)) return true;
+
+                addChunks(chunks, playerChunk.getX() - radius, playerChunk.getZ() - radius,
+                        playerChunk.getX() + radius, playerChunk.getZ() + radius);
+                targetDescription = chunks.size() + " chunks within radius " + radius + " of " + playerChunk.getX() + ", " + playerChunk.getZ();
+            }
+            else if (args.length > argOffset && args[argOffset].equalsIgnoreCase("area"))
+            {
+                if (args.length < argOffset + 5)
+                {
+                    player.sendMessage(ChatColor.RED + "Usage: /generateterrain [column] area <chunkX1> <chunkZ1> <chunkX2> <chunkZ2>");
+                    return true;
+                }
+
+                int x1 = Integer.parseInt(args[argOffset + 1]);
+                int z1 = Integer.parseInt(args[argOffset + 2]);
+                int x2 = Integer.parseInt(args[argOffset + 3]);
+                int z2 = Integer.parseInt(args[argOffset + 4]);
+                if (!checkRegionSize((long) (Math.abs(x2 - x1) + 1) * (Math.abs(z2 - z1) + 1), player)) return true;
+
+                addChunks(chunks, Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2));
+                targetDescription = chunks.size() + " chunks from " + x1 + ", " + z1 + " to " + x2 + ", " + z2;
+            }
+            else if (args.length == argOffset + 2)
+            {
+                int chunkX = Integer.parseInt(args[argOffset]);
+                int chunkZ = Integer.parseInt(args[argOffset + 1]);
+                chunks.add(new long[]{chunkX, chunkZ});
+                targetDescription = "chunk: " + chunkX + ", " + chunkZ;
+            }
+            else if (args.length == argOffset)
+            {
+                chunks.add(new long[]{playerChunk.getX(), playerChunk.getZ()});
+                targetDescription = "chunk: " + playerChunk.getX() + ", " + playerChunk.getZ() + " (your current position)";
+            }
+            else
+            {
+                player.sendMessage(ChatColor.RED + TARGET_USAGE);
+                return true;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            // A typo must never fall back to regenerating wherever the player happens to stand
+            player.sendMessage(ChatColor.RED + "Invalid number: " + e.getMessage().replace("For input string: ", ""));
+            player.sendMessage(ChatColor.RED + TARGET_USAGE);
+            return true;
+        }
+
+        SlabLayout layout = fullColumn
+                ? SlabLayout.fullColumn(model.getModelHeight(), WORLD_CHUNK_HEIGHT, slabOverlap)
+                : SlabLayout.centred(model.getModelHeight(), WORLD_CHUNK_HEIGHT);
+
+        // Chunks an identical job (same world, model version and layout) already has in flight are merged into it; previews
+        // are never merged, since their result only goes to the player who asked
+        String signature = preview ? null : world.getUID() + "/" + model.getIdentity() + "/" + (fullColumn ? "column-" + slabOverlap : "centred");
+        JobManager.Submission submission = jobManager.submit(playerUUID, signature, world.getUID(), chunks, targetDescription);
+        if (submission == null)
+        {
+            player.sendMessage(ChatColor.RED + "You already have " + jobManager.getMaxJobsPerPlayer() +
+                    " terrain generations in progress. Wait for one to finish or stop it with /generateterrain cancel [id].");
+            return true;
+        }
+
+        for (Map.Entry<JobManager.Job, Integer> joined : submission.getJoined().entrySet())
+        {
+            player.sendMessage(ChatColor.GRAY + "" + joined.getValue() + " of these chunks are already being generated by job #" +
+                    joined.getKey().getId() + "; you'll be told when it is done.");
+        }
+
+        JobManager.Job job = submission.getJob();
+        if (job == null) return true;
+
+        // A new preview replaces the last one, which the player would otherwise keep seeing next to it; one still running is
+        // canceled so it can't draw over the new one or replace it as the preview to commit
+        if (preview)
+        {
+            JobManager.Job previous = previewJobs.put(playerUUID, job);
+            if (previous != null) jobManager.cancel(previous, "replaced by preview #" + job.getId());
+            clearPreview(player, false);
+        }
+
+        player.sendMessage(ChatColor.GREEN + "Starting terrain " + (preview ? "preview #" : "generation #") + job.getId() + " for " + targetDescription +
+                (job.getChunks().size() < chunks.size() ? " (" + job.getChunks().size() + " chunks not already in progress)" : "") +
+                (fullColumn ? " [full column, " + layout.slabCount() + " slabs]" : "") +
+                " using model '" + model.getName() + "'");
+        player.sendMessage(ChatColor.GRAY + "Type /generateterrain cancel " + job.getId() + " to stop the generation.");
+
+        final boolean previewOnly = preview;
+        whenChunksReady(job, world, player, (loaded, tickets) -> startTerrainGeneration(loaded, tickets, job, model, layout, player, previewOnly));
+        return true;
+    }
+
+    private void whenChunksReady(JobManager.Job job, World world, Player player, BiConsumer<List<Chunk>, ChunkTickets> start)
+    {
+        // Load the chunks and their neighbours asynchronously, ticketed for the life of the job; the pipeline starts once all
+        // of them are in and every earlier job on the same chunks has finished (Paper completes the load futures on the main
+        // thread, where the snapshots are taken, and jobs are finished on the main thread too)
+        ChunkTickets tickets = new ChunkTickets(ticketRegistry, world);
+        tickets.loadAll(job.getChunks()).whenComplete((loaded, error) ->
+        {
+            if (error != null || !job.isActive())
+            {
+                tickets.releaseAll();
+                jobManager.finish(job);
+                if (error != null)
+                {
+                    player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Could not load the target chunks: " + error.getMessage());
+                    plugin.getLogger().log(Level.SEVERE, "Error loading chunks for terrain generation", error);
+                }
+                return;
+            }
+
+            CompletableFuture<Void> turn = jobManager.awaitChunks(job);
+            if (!turn.isDone())
+            {
+                player.sendMessage(ChatColor.GRAY + "Terrain generation #" + job.getId() + " overlaps an earlier job and will start when it is done.");
+            }
+            turn.whenComplete((ignored, cancelled) ->
+            {
+                if (cancelled != null || !job.isActive())
+                {
+                    tickets.releaseAll();
+                    jobManager.finish(job);
+                    return;
+                }
+
+                jobManager.start(job);
+                start.accept(loaded, tickets);
+            });
+        });
+    }
+
+    private void handleCancelCommand(Player player, String[] args)
+    {
+        // cancel: all of your jobs, cancel <id>: one job (admins may cancel anyone's)
+        List<JobManager.Job> targets;
+        if (args.length > 1)
+        {
+            JobManager.Job job;
+            try
+            {
+                job = jobManager.get(Integer.parseInt(args[1]));
+            }
+            catch (NumberFormatException e)
+            {
+                player.sendMessage(ChatColor.RED + "Usage: /generateterrain cancel [id]");
+                return;
+            }
+
+            if (job == null || (!job.getOwner().equals(player.getUniqueId()) && !player.hasPermission("generativeterrain.admin")))
+            {
+                player.sendMessage(ChatColor.YELLOW + "There is no terrain generation #" + args[1] + " you can cancel.");
+                return;
+            }
+            targets = List.of(job);
+        }
+        else
+        {
+            targets = jobManager.jobsOf(player.getUniqueId());
+        }
+
+        if (targets.isEmpty())
+        {
+            player.sendMessage(ChatColor.YELLOW + "You don't have any terrain generation in progress.");
+            return;
+        }
+
+        for (JobManager.Job job : targets)
+        {
+            jobManager.cancel(job);
+        }
+        player.sendMessage(ChatColor.YELLOW + (targets.size() == 1 ? "Terrain generation #" + targets.get(0).getId() + " canceled." :
+                targets.size() + " terrain generations canceled."));
+    }
+
+    private void handleJobsCommand(Player player)
+    {
+        // Your own jobs; admins see everyone's
+        boolean admin = player.hasPermission("generativeterrain.admin");
+        List<JobManager.Job> listed = admin ? jobManager.all() : jobManager.jobsOf(player.getUniqueId());
+        if (listed.isEmpty())
+        {
+            player.sendMessage(ChatColor.YELLOW + (admin ? "No terrain generations are running." : "You don't have any terrain generation in progress."));
+            return;
+        }
+
+        player.sendMessage(ChatColor.AQUA + "Terrain generations in progress:");
+        for (JobManager.Job job : listed)
+        {
+            Player owner = Bukkit.getPlayer(job.getOwner());
+            player.sendMessage(ChatColor.GRAY + "#" + job.getId() + " " + job.getState().getLabel() + " - " + job.getDescription() +
+                    (admin ? " by " + (owner != null ? owner.getName() : job.getOwner().toString()) : "") +
+                    ", " + formatDuration(System.currentTimeMillis() - job.getStarted()) +
+                    (job.getFollowers().isEmpty() ? "" : ", shared with " + job.getFollowers().size() + " other player(s)"));
+        }
+    }
+
+    private void handleModelCommand(Player player, String[] args)
+    {
+        String sub = args[0].toLowerCase();
+        if (sub.equals("models"))
+        {
+            for (String name : models.names())
+            {
+                TerrainModel loaded = models.get(name);
+                player.sendMessage(ChatColor.GRAY + "- " + name +
+                        (name.equals(models.getDefaultModel()) ? " (default)" : "") + ": " +
+                        (loaded != null ? "loaded, height " + loaded.getModelHeight() +
+                                (loaded.getMaxBatch() == Integer.MAX_VALUE ? ", dynamic batch" : ", batch " + loaded.getMaxBatch())
+                                : "not loaded"));
+            }
+            return;
+        }
+
+        if (!player.hasPermission("generativeterrain.admin"))
+        {
+            player.sendMessage(ChatColor.RED + "You don't have permission to manage terrain models.");
+            return;
+        }
+
+        String name = args.length > 1 ? args[1] : models.getDefaultModel();
+        if (!models.isKnown(name))
+        {
+            player.sendMessage(ChatColor.RED + "Unknown model '" + name + "'. Available: " + String.join(", ", models.names()));
+            return;
+        }
+
+        if (sub.equals("use"))
+        {
+            models.setDefaultModel(name);
+            player.sendMessage(ChatColor.GREEN + "Default terrain model set to '" + name + "'.");
+            return;
+        }
+
+        if (sub.equals("tune"))
+        {
+            int iterations = 20;
+            if (args.length > 2)
+            {
+                try
+                {
+                    iterations = Math.max(1, Integer.parseInt(args[2]));
+                }
+                catch (NumberFormatException e)
+                {
+                    player.sendMessage(ChatColor.YELLOW + "Invalid iteration count. Using " + iterations + ".");
+                }
+            }
+
+            startTuning(player, name, iterations);
+            return;
+        }
+
+        // Reload builds and warms up a fresh session in the background, then swaps it in
+        player.sendMessage(ChatColor.YELLOW + "Reloading model '" + name + "'...");
+        models.reload(name).whenComplete((loaded, error) ->
+                Bukkit.getScheduler().runTask(plugin, () ->
+                {
+                    if (error != null)
+                    {
+                        player.sendMessage(ChatColor.RED + "Reloading model '" + name + "' failed: " + error.getMessage());
+                    }
+                    else
+                    {
+                        player.sendMessage(ChatColor.GREEN + "Model '" + name + "' reloaded.");
+                    }
+                }));
+    }
+
+    private void handleCacheCommand(Player player, String[] args)
+    {
+        if (!player.hasPermission("generativeterrain.admin"))
+        {
+            player.sendMessage(ChatColor.RED + "You don't have permission to manage the inference cache.");
+            return;
+        }
+
+        if (inferenceCache == null)
+        {
+            player.sendMessage(ChatColor.YELLOW + "The inference cache is disabled in config.yml.");
+            return;
+        }
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("clear"))
+        {
+            inferenceCache.clear();
+            player.sendMessage(ChatColor.GREEN + "Inference cache cleared.");
+            return;
+        }
+
+        long hits = inferenceCache.getMemoryHits() + inferenceCache.getDiskHits();
+        long lookups = hits + inferenceCache.getMisses();
+        player.sendMessage(ChatColor.AQUA + "Inference cache: " + hits + " hits (" + inferenceCache.getMemoryHits() + " memory, " +
+                inferenceCache.getDiskHits() + " disk), " + inferenceCache.getMisses() + " misses" +
+                (lookups > 0 ? String.format(" - %.1f%% hit rate", hits * 100.0 / lookups) : ""));
+        player.sendMessage(ChatColor.GRAY + "- Memory: " + inferenceCache.memoryEntries() + " volumes, " + (inferenceCache.memoryBytes() >> 20) + " MB");
+        if (inferenceCache.hasDiskTier())
+        {
+            player.sendMessage(ChatColor.GRAY + "- Disk: " + inferenceCache.diskEntries() + " volumes, " + (inferenceCache.diskBytes() >> 20) + " MB");
+        }
+    }
+
+    private void handleStatsCommand(Player player, String[] args)
+    {
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset"))
+        {
+            if (!player.hasPermission("generativeterrain.admin"))
+            {
+                player.sendMessage(ChatColor.RED + "You don't have permission to reset generation statistics.");
+                return;
+            }
+
+            metrics.reset();
+            player.sendMessage(ChatColor.GREEN + "Generation statistics reset.");
+            return;
+        }
+
+        player.sendMessage(ChatColor.AQUA + "Generation stage latency (ms) over the last " + formatDuration(System.currentTimeMillis() - metrics.getSince()) + ":");
+        boolean any = false;
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values())
+        {
+            LatencyHistogram histogram = metrics.getHistogram(stage);
+            long count = histogram.getCount();
+            if (count == 0) continue;
+
+            any = true;
+            long chunks = metrics.getChunks(stage);
+            player.sendMessage(ChatColor.GRAY + String.format("- %s: %d x, mean %.2f, p50 %.2f, p95 %.2f, p99 %.2f, max %.2f%s", stage.getLabel(), count,
+                    histogram.getMeanMicros() / 1000.0, histogram.percentileMicros(50) / 1000.0, histogram.percentileMicros(95) / 1000.0,
+                    histogram.percentileMicros(99) / 1000.0, histogram.getMaxMicros() / 1000.0, chunks > 0 ? " (" + chunks + " chunks)" : ""));
+        }
+
+        if (!any)
+        {
+            player.sendMessage(ChatColor.GRAY + "No generation has run yet.");
+        }
+        player.sendMessage(ChatColor.GRAY + "Queue: " + inferenceService.queuedJobs() + " waiting, " + (inferenceService.reservedBytes() >> 20) + "/" +
+                (inferenceService.heapBudgetBytes() >> 20) + " MB reserved");
+    }
+
+    private boolean checkRegionSize(long chunkCount, Player player)
+    {
+        if (chunkCount > maxRegionChunks)
+        {
+            player.sendMessage(ChatColor.RED + "That region covers " + chunkCount + " chunks; the limit is " + maxRegionChunks + ".");
+            return false;
+        }
+
+        return true;
+    }
+
+    private void addChunks(List<long[]> chunks, int minX, int minZ, int maxX, int maxZ)
+    {
+        for (int x = minX; x <= maxX; x++)
+        {
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                chunks.add(new long[]{x, z});
+            }
+        }
+    }
+
+    private void startTuning(Player player, String name, int iterations)
+    {
+        if (!tuning.compareAndSet(false, true))
+        {
+            player.sendMessage(ChatColor.RED + "A tuning run is already in progress.");
+            return;
+        }
+
+        SessionSettings current = models.getSessionSettings();
+        List<SessionSettings> candidates = ModelTuner.candidates(current, Runtime.getRuntime().availableProcessors());
+        ModelTuner tuner = new ModelTuner(models.getEnvironment(), name, models.getModelFile(name), palette.classCount(), palette.biomeCount());
+
+        player.sendMessage(ChatColor.YELLOW + "Tuning model '" + name + "' over " + candidates.size() + " configurations (" +
+                iterations + " runs each). Generation keeps running, but expect it to be slower meanwhile.");
+
+        // Runs on its own thread; each candidate session uses the thread pools it would be saved with, so the winner is what was measured
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                List<ModelTuner.Result> results = tuner.run(candidates, inferenceBatchSize, iterations,
+                        line -> player.sendMessage(ChatColor.GRAY + line));
+                ModelTuner.Result best = results.get(0);
+
+                Bukkit.getScheduler().runTask(plugin, () ->
+                {
+                    // Persist the winner; it applies on the next reload (the shared pool's size is never changed by tuning)
+                    ConfigurationSection onnx = plugin.getConfig().getConfigurationSection("onnx");
+                    if (onnx == null) onnx = plugin.getConfig().createSection("onnx");
+                    best.getSettings().writeTo(onnx);
+                    plugin.saveConfig();
+                    models.setSessionSettings(best.getSettings());
+
+                    player.sendMessage(ChatColor.GREEN + "Tuning complete. Top configurations:");
+                    for (int i = 0; i < Math.min(5, results.size()); i++)
+                    {
+                        player.sendMessage(ChatColor.GRAY + "" + (i + 1) + ". " + results.get(i));
+                    }
+                    player.sendMessage(ChatColor.GREEN + "Saved the best configuration to config.yml. Use /generateterrain reload to apply it.");
+                });
+            }
+            catch (Exception e)
+            {
+                player.sendMessage(ChatColor.RED + "Tuning failed: " + e.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Error while tuning ONNX sessions", e);
+            }
+            finally
+            {
+                tuning.set(false);
+            }
+        }, "GenerativeTerrain-Tuner");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void startTerrainGeneration(List<Chunk> chunks, ChunkTickets tickets, JobManager.Job generationJob, TerrainModel model, SlabLayout layout, Player player,
+                                        boolean preview)
+    {
+        // A preview runs the same pipeline, but is neither journalled nor written: its changes are only sent to the player
+        final UUID playerUUID = player.getUniqueId();
+        final CancelToken token = generationJob.getToken();
+        final int slabs = layout.slabCount();
+        final int chunksPerBatch = Math.max(1, inferenceBatchSize / slabs);
+
+        // Admission is decided before any snapshot is taken, so a refused request costs the main thread nothing
+        final long estimatedBytes = estimateJobBytes(chunks.size(), model, layout);
+        InferenceService.Reservation reservation = inferenceService.reserve(estimatedBytes);
+        if (reservation.getAdmission() != InferenceService.Admission.ACCEPTED)
+        {
+            tickets.releaseAll();
+            jobManager.finish(generationJob);
+
+            if (reservation.getAdmission() == InferenceService.Admission.QUEUE_FULL)
+            {
+                player.sendMessage(ChatColor.RED + "The terrain generation queue is full. Please try again in a moment.");
+            }
+            else
+            {
+                player.sendMessage(ChatColor.RED + "This generation needs about " + (estimatedBytes >> 20) +
+                        " MB and would exceed the server's generation memory budget. Try a smaller area or wait for other jobs to finish.");
+            }
+            return;
+        }
+
+        // Capture every chunk and its neighbours in this tick, each chunk once; the async stage only ever reads these snapshots
+        PipelineMetrics.Span snapshot = metrics.start(PipelineMetrics.Stage.SNAPSHOT);
+        final List<ChunkNeighbourhood> neighbourhoods;
+        try
+        {
+            neighbourhoods = ChunkNeighbourhood.captureAll(chunks);
+        }
+        catch (RuntimeException e)
+        {
+            inferenceService.release(reservation);
+            throw e;
+        }
+        snapshot.end(chunks.size());
+
+        // Decoded chunks are streamed to the apply stage as soon as their batch finishes
+        final Queue<GeneratedChunk> ready = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean inferenceDone = new AtomicBoolean(false);
+        final AtomicBoolean wasQueued = new AtomicBoolean(false);
+        final AtomicLong plannedChanges = new AtomicLong();
+
+        // Run data gathering and model inference on the inference service; smaller jobs are served first
+        InferenceService.Job job = new InferenceService.Job(chunks.size(), estimatedBytes, () ->
+        {
+            TerrainModel running = model;
+            boolean retained = false;
+            long undoJobId = 0;
+            try
+            {
+                generationJob.setCancelAction(null);
+                if (token.isCancelled()) return;
+
+                // Keep the model open for the whole job even if it gets reloaded meanwhile. A reload while the job was queued
+                // retires the model it was submitted with; the job then runs on whatever is now loaded under the same name
+                // (a reload puts the new model in place before retiring the old one, so this settles at once)
+                retained = running.retain();
+                while (!retained)
+                {
+                    running = models.get(model.getName());
+                    if (running == null)
+                    {
+                        jobManager.cancel(generationJob, "stopped");
+                        player.sendMessage(ChatColor.RED + "The model '" + model.getName() + "' is no longer loaded. Please run the command again.");
+                        return;
+                    }
+                    retained = running.retain();
+                }
+
+                if (running.getModelHeight() != model.getModelHeight())
+                {
+                    jobManager.cancel(generationJob, "stopped");
+                    player.sendMessage(ChatColor.RED + "The model '" + model.getName() + "' was reloaded with a different height while your request was queued. Please run the command again.");
+                    return;
+                }
+
+                if (wasQueued.get())
+                {
+                    player.sendMessage(ChatColor.AQUA + "Your terrain generation has left the queue and started.");
+                }
+
+                player.sendMessage(ChatColor.AQUA + "Gathering data and running AI model inference...");
+                if (undoJournal != null && !preview) undoJobId = undoJournal.beginJob(playerUUID);
+
+                for (int first = 0; first < chunks.size(); first += chunksPerBatch)
+                {
+                    if (token.isCancelled()) return;
+
+                    int batchChunks = Math.min(chunksPerBatch, chunks.size() - first);
+
+                    BlockVolume[] outputBlocks = predictBatch(running, layout, neighbourhoods.subList(first, first + batchChunks), player, token);
+                    if (outputBlocks == null)
+                    {
+                        jobManager.cancel(generationJob, "failed");
+                        return;
+                    }
+
+                    // Diff each prediction against its snapshot here so the main thread only visits blocks that change
+                    int batchChanges = 0;
+                    for (int i = 0; i < batchChunks; i++)
+                    {
+                        token.throwIfCancelled();
+                        ChunkSnapshot before = neighbourhoods.get(first + i).getCentre();
+                        PipelineMetrics.Span diff = metrics.start(PipelineMetrics.Stage.DIFF);
+                        ChangeList changes = ChangeList.diff(outputBlocks[i], before, palette);
+                        diff.end(1);
+                        batchChanges += changes.size();
+
+                        // Journal the prior states before the chunk can reach the apply stage
+                        if (undoJournal != null && !preview) undoJournal.record(playerUUID, undoJobId, before, changes);
+                        ready.add(new GeneratedChunk(chunks.get(first + i), outputBlocks[i], changes));
+                    }
+                    long planned = plannedChanges.addAndGet(batchChanges);
+
+                    if (chunks.size() > 1)
+                    {
+                        player.sendMessage(ChatColor.GRAY + "Inference: " + (first + batchChunks) + "/" + chunks.size() + " chunks ready (" +
+                                planned + " block changes planned).");
+                    }
+                    else
+                    {
+                        player.sendMessage(ChatColor.GRAY + "Planned " + planned + " block changes.");
+                    }
+                }
+            }
+            catch (CancellationException e)
+            {
+                // Canceled or timed out mid-batch; the pooled buffer is already back and the apply task reports why
+            }
+            catch (Exception e)
+            {
+                jobManager.cancel(generationJob, "failed");
+                player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Error during terrain generation: " + e.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Error in terrain generation", e);
+            }
+            finally
+            {
+                if (retained) running.release();
+                inferenceDone.set(true);
+            }
+        });
+
+        // A job still waiting in the queue when it is canceled is dropped outright so it never reaches a worker
+        generationJob.setCancelAction(() -> inferenceService.remove(job));
+        inferenceService.submit(reservation, job);
+
+        int position = inferenceService.queuePosition(job);
+        if (position > 0)
+        {
+            wasQueued.set(true);
+            player.sendMessage(ChatColor.GRAY + "Your terrain generation is queued at position " + position + ".");
+        }
+
+        applyScheduler.submit(preview
+                ? new PreviewTask(ready, inferenceDone, chunks.get(0).getWorld(), generationJob, tickets, player)
+                : new TerrainApplyTask(ready, inferenceDone, chunks.size(), generationJob, tickets, player));
+    }
+
+    private void clearPreview(Player player, boolean announce)
+    {
+        // Resending the previewed chunks replaces the fake blocks with what the world really holds
+        Preview preview = previews.remove(player.getUniqueId());
+        if (preview == null)
+        {
+            if (announce) player.sendMessage(ChatColor.YELLOW + "You don't have a terrain preview to clear.");
+            return;
+        }
+
+        for (long[] position : preview.positions)
+        {
+            if (preview.world.isChunkLoaded((int) position[0], (int) position[1]))
+            {
+                preview.world.refreshChunk((int) position[0], (int) position[1]);
+            }
+        }
+        if (announce) player.sendMessage(ChatColor.GREEN + "Terrain preview of " + preview.description + " cleared.");
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event)
+    {
+        // The client forgets the fake blocks on its own; a preview still running cancels itself once its player is offline
+        UUID playerUUID = event.getPlayer().getUniqueId();
+        previews.remove(playerUUID);
+        previewJobs.remove(playerUUID);
+    }
+
+    private void commitPreview(Player player)
+    {
+        UUID playerUUID = player.getUniqueId();
+        Preview preview = previews.get(playerUUID);
+        if (preview == null)
+        {
+            player.sendMessage(ChatColor.YELLOW + "You don't have a terrain preview to commit. Make one with /generateterrain preview [column] [chunkX chunkZ | radius <r> | area ...].");
+            return;
+        }
+
+        if (Bukkit.getWorld(preview.world.getUID()) == null)
+        {
+            previews.remove(playerUUID);
+            player.sendMessage(ChatColor.RED + "The world of your terrain preview is no longer loaded.");
+            return;
+        }
+
+        // Writes exactly what was previewed, even where the world has changed since; no inference runs again
+        JobManager.Submission submission = jobManager.submit(playerUUID, null, preview.world.getUID(), preview.positions, preview.description + " (committed preview)");
+        if (submission == null)
+        {
+            player.sendMessage(ChatColor.RED + "You already have " + jobManager.getMaxJobsPerPlayer() +
+                    " terrain generations in progress. Wait for one to finish or stop it with /generateterrain cancel [id].");
+            return;
+        }
+
+        previews.remove(playerUUID);
+        JobManager.Job job = submission.getJob();
+        player.sendMessage(ChatColor.GREEN + "Committing your terrain preview of " + preview.description + " as terrain generation #" + job.getId() + ".");
+        whenChunksReady(job, preview.world, player, (loaded, tickets) -> startCommit(loaded, tickets, job, preview, player));
+    }
+
+    private void startCommit(List<Chunk> chunks, ChunkTickets tickets, JobManager.Job commitJob, Preview preview, Player player)
+    {
+        UUID playerUUID = player.getUniqueId();
+        List<ChangeList> changes = preview.changes;
+        Queue<GeneratedChunk> ready = new ConcurrentLinkedQueue<>();
+        AtomicBoolean journalled = new AtomicBoolean(undoJournal == null);
+        if (undoJournal == null)
+        {
+            for (int i = 0; i < chunks.size(); i++)
+            {
+                ready.add(new GeneratedChunk(chunks.get(i), null, changes.get(i)));
+            }
+            applyScheduler.submit(new TerrainApplyTask(ready, journalled, chunks.size(), commitJob, tickets, player));
+            return;
+        }
+
+        // Prior states are snapshotted in this tick and journalled on an inference worker, like a generation's;
+        // chunks reach the apply stage one by one as their records are written
+        List<ChunkSnapshot> before = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks)
+        {
+            before.add(chunk.getChunkSnapshot());
+        }
+
+        InferenceService.Job job = new InferenceService.Job(0, 0, () ->
+        {
+            try
+            {
+                commitJob.setCancelAction(null);
+                long undoJobId = undoJournal.beginJob(playerUUID);
+                for (int i = 0; i < chunks.size(); i++)
+                {
+                    if (!commitJob.isActive()) return;
+
+                    undoJournal.record(playerUUID, undoJobId, before.get(i), changes.get(i));
+                    ready.add(new GeneratedChunk(chunks.get(i), null, changes.get(i)));
+                }
+            }
+            catch (IOException e)
+            {
+                jobManager.cancel(commitJob, "failed");
+                player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Could not journal the committed preview: " + e.getMessage());
+                plugin.getLogger().log(Level.SEVERE, "Error journalling committed preview", e);
+            }
+            finally
+            {
+                journalled.set(true);
+            }
+        });
+
+        commitJob.setCancelAction(() -> inferenceService.remove(job));
+        if (inferenceService.submit(job) != InferenceService.Admission.ACCEPTED)
+        {
+            commitJob.setCancelAction(null);
+            tickets.releaseAll();
+            jobManager.finish(commitJob);
+            previews.putIfAbsent(playerUUID, preview);
+            player.sendMessage(ChatColor.RED + "The terrain generation queue is full. Please try /generateterrain commit again in a moment.");
+            return;
+        }
+
+        applyScheduler.submit(new TerrainApplyTask(ready, journalled, chunks.size(), commitJob, tickets, player));
+    }
+
+    private void startUndo(Player player, String[] args)
+    {
+        if (undoJournal == null)
+        {
+            player.sendMessage(ChatColor.YELLOW + "Undo is disabled in config.yml.");
+            return;
+        }
+
+        int count = 1;
+        if (args.length > 1)
+        {
+            try
+            {
+                count = Math.max(1, Integer.parseInt(args[1]));
+            }
+            catch (NumberFormatException e)
+            {
+                player.sendMessage(ChatColor.RED + "Usage: /generateterrain undo [n]");
+                return;
+            }
+        }
+
+        UUID playerUUID = player.getUniqueId();
+        if (undoJournal.undoableJobs(playerUUID) == 0)
+        {
+            player.sendMessage(ChatColor.YELLOW + "You don't have any terrain generations to undo.");
+            return;
+        }
+
+        // Undo always restores your newest generations, so it can't run next to jobs that are still writing them
+        if (!jobManager.jobsOf(playerUUID).isEmpty())
+        {
+            player.sendMessage(ChatColor.RED + "Wait for your terrain generations to finish (or cancel them) before undoing.");
+            return;
+        }
+
+        // The undo claims every chunk it restores, so a generation submitted after it on those chunks queues behind it
+        // instead of being written over; the jobs are picked now, so a later generation is never undone by this one
+        List<Long> jobIds = undoJournal.newestJobs(playerUUID, count);
+        Map<UUID, List<long[]>> chunks = new LinkedHashMap<>();
+        for (Map.Entry<String, List<long[]>> worldChunks : undoJournal.chunksOf(playerUUID, jobIds).entrySet())
+        {
+            World world = Bukkit.getWorld(worldChunks.getKey());
+            if (world != null) chunks.put(world.getUID(), worldChunks.getValue());
+        }
+
+        JobManager.Submission submission = jobManager.submit(playerUUID, null, chunks, "undo");
+        if (submission == null)
+        {
+            player.sendMessage(ChatColor.RED + "You already have " + jobManager.getMaxJobsPerPlayer() +
+                    " terrain generations in progress. Wait for one to finish or stop it with /generateterrain cancel [id].");
+            return;
+        }
+
+        JobManager.Job undoJob = submission.getJob();
+        player.sendMessage(ChatColor.GREEN + "Undoing your last " + (jobIds.size() == 1 ? "terrain generation" : jobIds.size() + " terrain generations") + "...");
+
+        // The chunks to restore are loaded asynchronously and ticketed until the undo ends, like a generation's
+        Map<String, ChunkTickets> tickets = new HashMap<>();
+        List<CompletableFuture<Chunk>> loads = new ArrayList<>();
+        for (Map.Entry<UUID, List<long[]>> worldChunks : chunks.entrySet())
+        {
+            World world = Bukkit.getWorld(worldChunks.getKey());
+            ChunkTickets worldTickets = new ChunkTickets(ticketRegistry, world);
+            tickets.put(world.getName(), worldTickets);
+            for (long[] position : worldChunks.getValue())
+            {
+                loads.add(worldTickets.load((int) position[0], (int) position[1]));
+            }
+        }
+
+        CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).whenComplete((loaded, error) ->
+        {
+            if (error != null || !undoJob.isActive())
+            {
+                releaseAll(tickets);
+                jobManager.finish(undoJob);
+                if (error != null)
+                {
+                    player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Could not load the chunks to undo: " + error.getMessage());
+                    plugin.getLogger().log(Level.SEVERE, "Error loading chunks for undo", error);
+                }
+                return;
+            }
+
+            awaitUndoTurn(player, playerUUID, undoJob, jobIds, tickets);
+        });
+    }
+
+    private void awaitUndoTurn(Player player, UUID playerUUID, JobManager.Job undoJob, List<Long> jobIds, Map<String, ChunkTickets> tickets)
+    {
+        CompletableFuture<Void> turn = jobManager.awaitChunks(undoJob);
+        if (!turn.isDone())
+        {
+            player.sendMessage(ChatColor.GRAY + "Undo #" + undoJob.getId() + " overlaps a running job and will start when it is done.");
+        }
+        turn.whenComplete((ignored, cancelled) ->
+        {
+            if (cancelled != null || !undoJob.isActive())
+            {
+                releaseAll(tickets);
+                jobManager.finish(undoJob);
+                return;
+            }
+
+            jobManager.start(undoJob);
+            undoJob.setState(JobManager.State.UNDOING);
+
+            // Records are read and inflated on the journal thread and restored in the same tick-budgeted apply path as generation
+            Queue<UndoRecord> records = new ConcurrentLinkedQueue<>();
+            AtomicBoolean readDone = new AtomicBoolean(false);
+            AtomicInteger jobsUndone = new AtomicInteger();
+            undoJournal.undo(playerUUID, jobIds, records::add).whenComplete((jobs, error) ->
+            {
+                if (error != null)
+                {
+                    player.sendMessage(ChatColor.RED + "Reading the undo journal failed: " + error.getMessage());
+                    plugin.getLogger().log(Level.SEVERE, "Error reading undo journal", error);
+                }
+                else
+                {
+                    jobsUndone.set(jobs);
+                }
+                readDone.set(true);
+            });
+
+            applyScheduler.submit(new UndoApplyTask(records, readDone, jobsUndone, undoJob, tickets, player, playerUUID));
+        });
+    }
+
+    private static void releaseAll(Map<String, ChunkTickets> tickets)
+    {
+        for (ChunkTickets worldTickets : tickets.values())
+        {
+            worldTickets.releaseAll();
+        }
+    }
+
+    private void handlePregenCommand(CommandSender sender, String[] args)
+    {
+        if (!sender.hasPermission("generativeterrain.admin"))
+        {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to run pre-generation jobs.");
+            return;
+        }
+
+        if (models == null)
+        {
+            sender.sendMessage(ChatColor.RED + "The terrain generation model isn't loaded. Check server logs.");
+            return;
+        }
+
+        String sub = args.length > 1 ? args[1].toLowerCase() : "status";
+        if (sub.equals("status"))
+        {
+            if (pregenJobs.isEmpty())
+            {
+                sender.sendMessage(ChatColor.YELLOW + "No pre-generation jobs are running.");
+            }
+            for (PregenJob job : pregenJobs.values())
+            {
+                sender.sendMessage(ChatColor.AQUA + job.progressLine());
+            }
+            return;
+        }
+
+        if (sub.equals("resume"))
+        {
+            resumePregenJobs(sender, args.length > 2 ? args[2] : null);
+            return;
+        }
+
+        if (sub.equals("stop") || sub.equals("cancel"))
+        {
+            if (args.length < 3)
+            {
+                sender.sendMessage(ChatColor.RED + "Usage: /generateterrain pregen " + sub + " <world>");
+                return;
+            }
+
+            PregenJob job = pregenJobs.get(args[2]);
+            if (job == null)
+            {
+                sender.sendMessage(ChatColor.YELLOW + "No pre-generation job is running in world '" + args[2] + "'.");
+                return;
+            }
+
+            // stop keeps the checkpoint so the job can be resumed later; cancel forgets it
+            job.stop(sub.equals("cancel"));
+            sender.sendMessage(ChatColor.YELLOW + "Pre-generation of " + args[2] + (sub.equals("cancel") ? " canceled." : " stopped; resume it with /generateterrain pregen resume " + args[2] + "."));
+            return;
+        }
+
+        // pregen <world> <x1> <z1> <x2> <z2> [model <name>] [column]
+        if (args.length < 6)
+        {
+            sender.sendMessage(ChatColor.RED + "Usage: /generateterrain pregen <world> <chunkX1> <chunkZ1> <chunkX2> <chunkZ2> [model <name>] [column] | status | stop <world> | cancel <world> | resume [world]");
+            return;
+        }
+
+        World world = Bukkit.getWorld(args[1]);
+        if (world == null)
+        {
+            sender.sendMessage(ChatColor.RED + "Unknown world '" + args[1] + "'.");
+            return;
+        }
+
+        if (pregenJobs.containsKey(world.getName()) || checkpointFile(world.getName()).exists())
+        {
+            sender.sendMessage(ChatColor.RED + "World '" + world.getName() + "' already has a pre-generation job. Resume or cancel it first.");
+            return;
+        }
+
+        int x1;
+        int z1;
+        int x2;
+        int z2;
+        try
+        {
+            x1 = Integer.parseInt(args[2]);
+            z1 = Integer.parseInt(args[3]);
+            x2 = Integer.parseInt(args[4]);
+            z2 = Integer.parseInt(args[5]);
+        }
+        catch (NumberFormatException e)
+        {
+            sender.sendMessage(ChatColor.RED + "Invalid chunk coordinates.");
+            return;
+        }
+
+        String modelName = null;
+        boolean fullColumn = false;
+        for (int i = 6; i < args.length; i++)
+        {
+            if (args[i].equalsIgnoreCase("model") && i + 1 < args.length)
+            {
+                modelName = args[++i];
+            }
+            else if (args[i].equalsIgnoreCase("column"))
+            {
+                fullColumn = true;
+            }
+        }
+
+        if (modelName != null && !models.isKnown(modelName))
+        {
+            sender.sendMessage(ChatColor.RED + "Unknown model '" + modelName + "'. Available: " + String.join(", ", models.names()));
+            return;
+        }
+
+        PregenCheckpoint checkpoint = new PregenCheckpoint(world.getName(), Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2),
+                modelName, fullColumn);
+        startPregen(sender, world, checkpoint);
+    }
+
+    private void resumePregenJobs(CommandSender sender, String worldName)
+    {
+        File[] files = pregenFolder.listFiles((dir, name) -> name.endsWith(".checkpoint"));
+        int resumed = 0;
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                try
+                {
+                    PregenCheckpoint checkpoint = PregenCheckpoint.load(file);
+                    if (worldName != null && !checkpoint.getWorldName().equals(worldName)) continue;
+                    if (pregenJobs.containsKey(checkpoint.getWorldName())) continue;
+
+                    World world = Bukkit.getWorld(checkpoint.getWorldName());
+                    if (world == null)
+                    {
+                        plugin.getLogger().warning("Can't resume pre-generation of unknown world '" + checkpoint.getWorldName() + "'.");
+                        continue;
+                    }
+
+                    startPregen(sender, world, checkpoint);
+                    resumed++;
+                }
+                catch (IOException e)
+                {
+                    plugin.getLogger().log(Level.SEVERE, "Could not read pre-generation checkpoint " + file, e);
+                }
+            }
+        }
+
+        if (resumed == 0 && worldName != null)
+        {
+            sender.sendMessage(ChatColor.YELLOW + "There is no stopped pre-generation job for world '" + worldName + "'.");
+        }
+    }
+
+    private void startPregen(CommandSender sender, World world, PregenCheckpoint checkpoint)
+    {
+        PregenJob job = new PregenJob(world, checkpoint, checkpointFile(world.getName()), sender);
+        try
+        {
+            // Written up front so even a crash before the first window leaves a job to resume
+            job.saveCheckpoint();
+        }
+        catch (IOException e)
+        {
+            sender.sendMessage(ChatColor.RED + "Could not write the pre-generation checkpoint: " + e.getMessage());
+            plugin.getLogger().log(Level.SEVERE, "Could not write pre-generation checkpoint", e);
+            return;
+        }
+
+        pregenJobs.put(world.getName(), job);
+        applyScheduler.submit(job);
+        sender.sendMessage(ChatColor.GREEN + (checkpoint.getChunksDone() > 0 ? "Resuming" : "Starting") + " pre-generation of " + checkpoint.describe() +
+                " (" + checkpoint.getChunksDone() + "/" + checkpoint.chunkCount() + " chunks done).");
+    }
+
+    private File checkpointFile(String worldName)
+    {
+        return new File(pregenFolder, worldName + ".checkpoint");
+    }
+
+    private long estimateJobBytes(int chunkCount, TerrainModel model, SlabLayout layout)
+    {
+        // Peak memory of one job: every chunk's snapshots and decoded volume, plus the largest batch in flight
+        int slabs = layout.slabCount();
+        int batchEntries = Math.min(chunkCount, Math.max(1, inferenceBatchSize / slabs)) * slabs;
+        long slabVoxels = (long) CHUNK_WIDTH * model.getModelHeight() * CHUNK_DEPTH;
+        long columnVoxels = (long) CHUNK_WIDTH * WORLD_CHUNK_HEIGHT * CHUNK_DEPTH;
+
+        long perChunk = SNAPSHOT_BYTES_ESTIMATE + columnVoxels * Short.BYTES;
+        long inputBytes = FeatureEncoder.tensorSize(batchEntries, model.getModelHeight()) * (long) Float.BYTES;
+
+        // ONNX Runtime's output tensor plus the copy getFloatBuffer() hands back
+        long outputBytes = 2L * batchEntries * palette.classCount() * slabVoxels * Float.BYTES;
+
+        // Running scores used while decoding (blended decoding works on the whole column)
+        long decodeBytes = (slabs > 1 ? columnVoxels : slabVoxels) * (Float.BYTES * 2 + Short.BYTES + 1);
+
+        return chunkCount * perChunk + inputBytes + outputBytes + decodeBytes;
+    }
+
+    private static void moveChunkInput(FloatBuffer buffer, int from, int to, int chunkFloats)
+    {
+        // Copies one chunk's batch entries to an earlier position; source and target never overlap since to < from
+        FloatBuffer source = buffer.duplicate();
+        source.limit(from * chunkFloats + chunkFloats).position(from * chunkFloats);
+        FloatBuffer target = buffer.duplicate();
+        target.limit(target.capacity()).position(to * chunkFloats);
+        target.put(source);
+    }
+
+    private BlockVolume[] predictBatch(TerrainModel model, SlabLayout layout, List<? extends BlockSource> sources, CommandSender requester,
+                                       CancelToken token) throws InterruptedException
+    {
+        // Encodes, looks up and (for cache misses) runs one batch of chunks; returns null if inference failed
+        // With a token, a canceled job throws CancellationException from whichever step it is in and the buffer goes straight back
+        final int slabs = layout.slabCount();
+        final int batchChunks = sources.size();
+
+        // Borrow a pooled input buffer (waits if every inference worker's buffer is busy) and encode the snapshots into it
+        // Every slab of every chunk in the batch gets its own entry along the batch dimension
+        FloatBuffer inputBuffer = tensorPool.acquire(FeatureEncoder.tensorSize(batchChunks * slabs, model.getModelHeight()), token);
+        try
+        {
+            PipelineMetrics.Span encode = metrics.start(PipelineMetrics.Stage.ENCODE);
+            for (int i = 0; i < batchChunks; i++)
+            {
+                BlockSource source = sources.get(i);
+                VoxelSource voxels = palette.voxels(source);
+                float chunkBiome = palette.biomeFeature(getChunkBiome(source));
+                for (int slab = 0; slab < slabs; slab++)
+                {
+                    featureEncoder.encode(inputBuffer, i * slabs + slab, voxels, chunkBiome, model.getModelHeight(), MIN_Y + layout.slabStart(slab), token);
+                }
+            }
+            encode.end(batchChunks);
+
+            // Look each chunk's encoded input up in the cache; misses are packed to the front of the buffer for inference
+            int chunkFloats = FeatureEncoder.tensorSize(slabs, model.getModelHeight());
+            BlockVolume[] outputBlocks = new BlockVolume[batchChunks];
+            String[] cacheKeys = new String[batchChunks];
+            int[] missed = new int[batchChunks];
+            int missCount = 0;
+            for (int i = 0; i < batchChunks; i++)
+            {
+                if (inferenceCache != null)
+                {
+                    cacheKeys[i] = InferenceCache.key(model, InferenceCache.hash(inputBuffer, i * chunkFloats, chunkFloats, layout));
+                    outputBlocks[i] = inferenceCache.get(cacheKeys[i], CHUNK_WIDTH, WORLD_CHUNK_HEIGHT, CHUNK_DEPTH);
+                }
+
+                if (outputBlocks[i] == null)
+                {
+                    if (missCount != i) moveChunkInput(inputBuffer, i, missCount, chunkFloats);
+                    missed[missCount++] = i;
+                }
+            }
+
+            // Run inference
+            if (missCount > 0)
+            {
+                inputBuffer.limit(missCount * chunkFloats);
+                BlockVolume[] predicted = runModelInference(model, inputBuffer, missCount, layout, requester, token);
+                if (predicted == null) return null;
+
+                for (int k = 0; k < missCount; k++)
+                {
+                    outputBlocks[missed[k]] = predicted[k];
+                    if (inferenceCache != null) inferenceCache.put(cacheKeys[missed[k]], predicted[k]);
+                }
+            }
+
+            return outputBlocks;
+        }
+        finally
+        {
+            tensorPool.release(inputBuffer);
+        }
+    }
+
+    private BlockVolume[] runModelInference(TerrainModel model, FloatBuffer inputBuffer, int chunkCount, SlabLayout layout, CommandSender requester,
+                                            CancelToken token)
+    {
+        try
+        {
+            // All slabs of all chunks go through as few session.run calls as the model's batch dimension allows
+            return model.infer(inputBuffer, chunkCount, layout, metrics, token);
+        }
+        catch (OrtException e)
+        {
+            requester.sendMessage(ChatColor.RED + "Model inference failed: " + e.getMessage());
+            plugin.getLogger().log(Level.SEVERE, "Model inference error", e);
+            return null;
+        }
+    }
+
+    private final class TerrainApplyTask implements ApplyScheduler.Task
+    {
+        // Applies a job's chunks in the order their inference finished, a few blocks at a time as the apply scheduler allows
+
+        private final Queue<GeneratedChunk> ready;
+        private final AtomicBoolean inferenceDone;
+        private final int totalChunks;
+        private final JobManager.Job job;
+        private final ChunkTickets tickets;
+        private final Player player;
+
+        private GeneratedChunk current;
+        private PipelineMetrics.Span applySpan;
+        private int changeIndex;
+        private int blocksChanged;
+        private int chunksApplied;
+        private int lastProgress = -1;
+
+        private TerrainApplyTask(Queue<GeneratedChunk> ready, AtomicBoolean inferenceDone, int totalChunks, JobManager.Job job,
+                                 ChunkTickets tickets, Player player)
+        {
+            this.ready = ready;
+            this.inferenceDone = inferenceDone;
+            this.totalChunks = totalChunks;
+            this.job = job;
+            this.tickets = tickets;
+            this.player = player;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return job.isActive();
+        }
+
+        @Override
+        public void cancelled()
+        {
+            String reason = job.getCancelReason();
+            tickets.releaseAll();
+            jobManager.finish(job);
+            player.sendMessage(ChatColor.YELLOW + "Terrain generation #" + job.getId() + " " + reason + ".");
+            notifyFollowers(job, ChatColor.YELLOW + "Terrain generation #" + job.getId() + ", which covered chunks you asked for, was " + reason + ".");
+        }
+
+        @Override
+        public void failed(Throwable error)
+        {
+            tickets.releaseAll();
+            jobManager.finish(job);
+            player.sendMessage(ChatColor.RED + "Terrain generation #" + job.getId() + " stopped after an error: " + error.getMessage() +
+                    " (" + blocksChanged + " blocks were already changed).");
+            notifyFollowers(job, ChatColor.RED + "Terrain generation #" + job.getId() + ", which covered chunks you asked for, stopped after an error.");
+        }
+
+        @Override
+        public ApplyScheduler.Status apply(int maxBlocks)
+        {
+            int processed = 0;
+
+            // Write a batch of planned changes, moving on to the next ready chunk when one is finished; a job that times out
+            // from the deadline thread stops mid-quantum rather than at the scheduler's next visit
+            while (processed < maxBlocks && job.isActive())
+            {
+                if (current == null)
+                {
+                    current = ready.poll();
+                    changeIndex = 0;
+                    if (current == null) break;
+                    applySpan = metrics.start(PipelineMetrics.Stage.APPLY);
+
+                    if (chunksApplied == 0)
+                    {
+                        player.sendMessage(ChatColor.YELLOW + "Applying terrain changes to world...");
+                    }
+                }
+
+                Chunk chunk = current.getChunk();
+                ChangeList changes = current.getChanges();
+
+                if (changeIndex < changes.size())
+                {
+                    int x = changes.x(changeIndex);
+                    int y = changes.y(changeIndex);
+                    int z = changes.z(changeIndex);
+
+                    try
+                    {
+                        // false = don't update physics; the block change is still sent to clients and batched per section by the server
+                        chunk.getBlock(x, y, z).setType(palette.decode(changes.classId(changeIndex)), false);
+                        blocksChanged++;
+                    }
+                    catch (Exception e)
+                    {
+                        plugin.getLogger().warning("Error setting block at " + x + "," + y + "," + z + ": " + e.getMessage());
+                    }
 
-    private final Map<String, Integer> biomeEncoder = new HashMap<>();
-    private final Map<String, Integer> blockTypeEncoder = new HashMap<>();
-    private final Map<Integer, Material> blockTypeDecoder = new HashMap<>();
+                    processed++;
+                    changeIndex++;
+                }
 
-    public modelGenerateTerrain(JavaPlugin plugin)
-    {
-        this.plugin = plugin;
-        try
-        {
-            env = OrtEnvironment.getEnvironment();
+                if (changeIndex >= changes.size())
+                {
+                    // Measured from the first write to the last, so it includes ticks spent waiting for budget
+                    applySpan.end(1);
+                    chunksApplied++;
+                    current = null;
+                }
+            }
 
-            // Note: might be worth it to make a switch model command
-            // There are two models -- transformer based and pure CNN based
-            // Modify final variable "model" to use other model, default is transformer architecture
-            File modelFile = new File(plugin.getDataFolder(), model);
-            if (!modelFile.exists())
+            // Report progress
+            double currentFraction = current != null && current.getChanges().size() > 0 ? (double) changeIndex / current.getChanges().size() : 0.0;
+            int progress = (int)(((chunksApplied + currentFraction) * 100.0) / totalChunks);
+            if (progress >= lastProgress + 10 || (chunksApplied == totalChunks && progress > lastProgress))
             {
-                plugin.getLogger().severe("Model file not found! Please place name_model.onnx in the plugin's data folder.");
-                return;
+                player.sendMessage(ChatColor.GRAY + "Progress: " + progress + "% (" +
+                        blocksChanged + " blocks changed)");
+                lastProgress = progress;
             }
 
-            File mappingFile = new File(plugin.getDataFolder(), "block_id_mapping.json");
-            blockTypeDecoder.putAll(loadBlockMapping(mappingFile));
-            blockTypeEncoder.putAll(loadReverseBlockMapping(mappingFile));
+            // Check if we're done; inference marks itself done only after its last chunk was queued, and a job canceled or
+            // timed out during this quantum is reported by cancelled() instead
+            if (current == null && inferenceDone.get() && ready.isEmpty() && job.isActive())
+            {
+                player.sendMessage(ChatColor.GREEN + "Terrain generation #" + job.getId() + " complete! Changed " +
+                        blocksChanged + " blocks" + (totalChunks > 1 ? " across " + chunksApplied + " chunks." : "."));
+                notifyFollowers(job, ChatColor.GREEN + "Terrain generation #" + job.getId() + ", which covered chunks you asked for, is complete.");
+                tickets.releaseAll();
+                jobManager.finish(job);
+                return ApplyScheduler.Status.FINISHED;
+            }
 
-            File biomeFile = new File(plugin.getDataFolder(), "biome_id_mapping.json");
-            biomeEncoder.putAll(loadBiomeMapping(biomeFile));
+            return processed > 0 ? ApplyScheduler.Status.WORKING : ApplyScheduler.Status.WAITING;
+        }
+    }
 
-            OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
-            sessionOptions.setIntraOpNumThreads(2);
-            sessionOptions.setInterOpNumThreads(2);
-            sessionOptions.setMemoryPatternOptimization(true);
-            session = env.createSession(modelFile.getAbsolutePath(), sessionOptions);
-            plugin.getLogger().info("ONNX model loaded successfully!");
+    private final class PreviewTask implements ApplyScheduler.Task
+    {
+        // Shows a job's changes to its owner only, as client-side block changes grouped by section: the world, its lighting and
+        // its saved chunks are never touched. The finished result is kept so /generateterrain commit can write it later.
+
+        private final Queue<GeneratedChunk> ready;
+        private final AtomicBoolean inferenceDone;
+        private final World world;
+        private final JobManager.Job job;
+        private final ChunkTickets tickets;
+        private final Player player;
+        private final List<long[]> shownPositions = new ArrayList<>();
+        private final List<ChangeList> shownChanges = new ArrayList<>();
+        private final BlockData[] classData = new BlockData[palette.classCount() + 1]; // last slot: unknown classes (air)
+
+        private GeneratedChunk current;
+        private int[] order;
+        private int cursor;
+        private int blocksShown;
+
+        private PreviewTask(Queue<GeneratedChunk> ready, AtomicBoolean inferenceDone, World world, JobManager.Job job, ChunkTickets tickets, Player player)
+        {
+            this.ready = ready;
+            this.inferenceDone = inferenceDone;
+            this.world = world;
+            this.job = job;
+            this.tickets = tickets;
+            this.player = player;
         }
-        catch (Exception e)
+
+        @Override
+        public boolean isActive()
         {
-            plugin.getLogger().log(Level.SEVERE, "Error loading ONNX model", e);
+            // Nobody left to show it to once the player logs off or leaves the world
+            return job.isActive() && player.isOnline() && player.getWorld().equals(world);
         }
-    }
 
-    private Map<Integer, Material> loadBlockMapping(File jsonFile)
-    {
-        Map<Integer, Material> mapping = new HashMap<>();
-        try (InputStream is = new FileInputStream(jsonFile))
+        @Override
+        public void cancelled()
+        {
+            String reason = job.isActive() ? JobManager.CANCELED : job.getCancelReason();
+            discard();
+            player.sendMessage(ChatColor.YELLOW + "Terrain preview #" + job.getId() + " " + reason + ".");
+        }
+
+        @Override
+        public void failed(Throwable error)
+        {
+            discard();
+            player.sendMessage(ChatColor.RED + "Terrain preview #" + job.getId() + " stopped after an error: " + error.getMessage());
+        }
+
+        private void discard()
+        {
+            // Take back what was already shown
+            previewJobs.remove(player.getUniqueId(), job);
+            for (long[] position : shownPositions)
+            {
+                world.refreshChunk((int) position[0], (int) position[1]);
+            }
+            tickets.releaseAll();
+            jobManager.finish(job);
+        }
+
+        @Override
+        public ApplyScheduler.Status apply(int maxBlocks)
         {
-            String json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            JsonObject obj = JsonParser.parseString(json).getAsJsonObject();
-            for (String key : obj.keySet())
+            int processed = 0;
+
+            // Each round sends the next run of one chunk's changes in section order, so it becomes one packet per section touched
+            while (processed < maxBlocks && job.isActive())
             {
-                int index = Integer.parseInt(key);
-                String blockName = obj.get(key).getAsString();
-                Material mat = Material.matchMaterial(blockName);
-                if (mat != null && mat.isBlock())
+                if (current == null)
                 {
-                    mapping.put(index, mat);
+                    current = ready.poll();
+                    if (current == null) break;
+
+                    order = current.getChanges().sectionOrder();
+                    cursor = 0;
+                    shownPositions.add(new long[]{current.getChunk().getX(), current.getChunk().getZ()});
+                    shownChanges.add(current.getChanges());
                 }
-                else
+
+                Chunk chunk = current.getChunk();
+                ChangeList changes = current.getChanges();
+                int end = Math.min(order.length, cursor + maxBlocks - processed);
+
+                // One multi-block change per run; it reaches only this player, so the world is left as it is
+                Map<Position, BlockData> blocks = new HashMap<>(Math.max(16, (end - cursor) * 2));
+                int baseX = chunk.getX() << 4;
+                int baseZ = chunk.getZ() << 4;
+                for (; cursor < end; cursor++)
                 {
-                    plugin.getLogger().warning("Invalid material in model mapping: " + blockName);
+                    int i = order[cursor];
+                    blocks.put(Position.block(baseX + changes.x(i), changes.y(i), baseZ + changes.z(i)), blockData(changes.classId(i)));
                 }
+                if (!blocks.isEmpty()) player.sendMultiBlockChange(blocks);
+
+                processed += blocks.size();
+                blocksShown += blocks.size();
+                if (cursor >= order.length) current = null;
             }
-        }
-        catch (IOException e)
-        {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load block mapping", e);
-        }
 
-        plugin.getLogger().info("Loaded " + mapping.size() + " block mappings from JSON.");
-        return mapping;
-    }
+            if (current == null && inferenceDone.get() && ready.isEmpty() && job.isActive())
+            {
+                previews.put(player.getUniqueId(), new Preview(world, job.getDescription(), shownPositions, shownChanges));
+                previewJobs.remove(player.getUniqueId(), job);
+                player.sendMessage(ChatColor.GREEN + "Terrain preview #" + job.getId() + " ready: " + blocksShown +
+                        " block changes are shown only to you. Use /generateterrain commit to apply them or /generateterrain preview clear to discard them.");
+                tickets.releaseAll();
+                jobManager.finish(job);
+                return ApplyScheduler.Status.FINISHED;
+            }
 
-    private Map<String, Integer> loadReverseBlockMapping(File jsonFile)
-    {
-        Map<String, Integer> reverseMapping = new HashMap<>();
-        try (InputStream is = new FileInputStream(jsonFile))
+            return processed > 0 ? ApplyScheduler.Status.WORKING : ApplyScheduler.Status.WAITING;
+        }
+
+        private BlockData blockData(int classId)
         {
-            String json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            JsonObject obj = JsonParser.parseString(json).getAsJsonObject();
-            for (String key : obj.keySet())
+            // Shared by every block of a class; the client only reads it
+            int slot = classId >= 0 && classId < classData.length - 1 ? classId : classData.length - 1;
+            BlockData data = classData[slot];
+            if (data == null)
             {
-                String blockName = obj.get(key).getAsString();
-                reverseMapping.put(blockName, Integer.parseInt(key));
+                data = palette.decode(classId).createBlockData();
+                classData[slot] = data;
             }
+            return data;
         }
-        catch (IOException e)
+    }
+
+    private static final class Preview
+    {
+        // The last preview a player was shown: its chunks and their change lists, without the predicted volumes
+
+        private final World world;
+        private final String description;
+        private final List<long[]> positions;
+        private final List<ChangeList> changes;
+
+        private Preview(World world, String description, List<long[]> positions, List<ChangeList> changes)
         {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load reverse block mapping", e);
+            this.world = world;
+            this.description = description;
+            this.positions = positions;
+            this.changes = changes;
         }
-        return reverseMapping;
     }
 
-    private Map<String, Integer> loadBiomeMapping(File jsonFile)
+    private final class PregenJob implements ApplyScheduler.Task
     {
-        Map<String, Integer> mapping = new HashMap<>();
-        try (InputStream is = new FileInputStream(jsonFile))
+        /*
+        - Walks a pre-generation area in Hilbert order, pipelining three stages: a few chunks are snapshotted per tick into windows,
+          each full window becomes one low-priority inference job, and finished chunks are applied within the scheduler's budget.
+        - Windows are applied strictly in walk order, so the checkpoint can simply move past each window once all of it is in the world.
+        - The checkpoint file only moves forward right after the world has been saved, so after a crash it never claims chunks whose
+          blocks were still unsaved; those windows are simply generated again.
+        - Each window loads its chunks and their neighbours asynchronously and holds their tickets until all of it is applied;
+          chunks are captured in walk order as their loads complete.
+        - Recent snapshots are reused as neighbours of the next chunks, which the Hilbert order makes likely.
+        */
+
+        private final World world;
+        private final PregenCheckpoint checkpoint;
+        private final File checkpointFile;
+        private final HilbertWalk walk;
+        private final CommandSender requester;
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private final ArrayDeque<PregenWindow> windows = new ArrayDeque<>();
+        private final LinkedHashMap<Long, ChunkSnapshot> recentSnapshots = new LinkedHashMap<Long, ChunkSnapshot>(64, 0.75f, true)
         {
-            String json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-            JsonObject obj = JsonParser.parseString(json).getAsJsonObject();
-            for (String key : obj.keySet())
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ChunkSnapshot> eldest)
             {
-                mapping.put(key, obj.get(key).getAsInt());
+                return size() > 64;
             }
-        }
-        catch (IOException e)
+        };
+        private final int snapshotsPerTick;
+        private final int maxWindows;
+        private final long checkpointMillis;
+        private final long reportMillis;
+        private final long runStart = System.currentTimeMillis();
+
+        private PregenWindow filling;
+        private boolean walkDone;
+        private GeneratedChunk current;
+        private PipelineMetrics.Span applySpan;
+        private int changeIndex;
+        private int lastFeedTick = -1;
+        private long chunksThisRun;
+        private long lastAdvance = runStart;
+        private long lastCheckpoint = runStart;
+        private long lastReport = runStart;
+        private boolean forget;
+        private volatile String failure;
+
+        private PregenJob(World world, PregenCheckpoint checkpoint, File checkpointFile, CommandSender requester)
         {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load biome mapping", e);
+            this.world = world;
+            this.checkpoint = checkpoint;
+            this.checkpointFile = checkpointFile;
+            this.walk = checkpoint.resumeWalk();
+            this.requester = requester;
+            this.snapshotsPerTick = Math.max(1, plugin.getConfig().getInt("pregen.snapshots-per-tick", 4));
+            this.maxWindows = inferenceWorkers + 1;
+            this.checkpointMillis = plugin.getConfig().getLong("pregen.checkpoint-seconds", 120) * 1000;
+            this.reportMillis = plugin.getConfig().getLong("pregen.report-seconds", 60) * 1000;
         }
-        plugin.getLogger().info("Loaded " + mapping.size() + " biome mappings from JSON.");
-        return mapping;
-    }
 
-    @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args)
-    {
-        if (!(sender instanceof Player))
+        @Override
+        public boolean isActive()
         {
-            sender.sendMessage(ChatColor.RED + "You must be in-game to execute this command.");
-            return true;
+            return active.get();
         }
 
-        Player player = (Player) sender;
-        if (!player.hasPermission("generativeterrain.generateterrain"))
+        private void stop(boolean forgetCheckpoint)
         {
-            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
-            return true;
+            forget = forgetCheckpoint;
+            active.set(false);
         }
 
-        if (session == null)
+        @Override
+        public void cancelled()
         {
-            player.sendMessage(ChatColor.RED + "The terrain generation model isn't loaded. Check server logs.");
-            return true;
+            pregenJobs.remove(world.getName());
+            releaseTickets();
+            if (forget)
+            {
+                checkpointFile.delete();
+                return;
+            }
+
+            try
+            {
+                saveWorldAndCheckpoint();
+            }
+            catch (IOException e)
+            {
+                plugin.getLogger().log(Level.SEVERE, "Could not write pre-generation checkpoint", e);
+            }
         }
 
-        UUID playerUUID = player.getUniqueId();
-        if (generationTasks.containsKey(playerUUID) && generationTasks.get(playerUUID).get())
+        @Override
+        public void failed(Throwable error)
         {
-            player.sendMessage(ChatColor.RED + "You already have a terrain generation in progress. Type /generateterrain cancel to stop it.");
-            return true;
+            failure = error.getMessage();
+            stopAfterFailure();
         }
 
-        // Parse arguments for chunk coordinates
-        Chunk chunk = player.getLocation().getChunk();
-        boolean fromArgs = false;
+        private ApplyScheduler.Status stopAfterFailure()
+        {
+            // The checkpoint only covers windows that were fully applied, so resuming regenerates the one that failed
+            active.set(false);
+            report(ChatColor.RED + "Pre-generation of " + world.getName() + " stopped: " + failure + ". Resume it with /generateterrain pregen resume " + world.getName() + ".");
+            cancelled();
+            return ApplyScheduler.Status.FINISHED;
+        }
 
-        if (args.length > 0 && args[0].equalsIgnoreCase("cancel"))
+        private void releaseTickets()
         {
-            if (generationTasks.containsKey(playerUUID))
-            {
-                generationTasks.get(playerUUID).set(false);
-                generationTasks.remove(playerUUID);
-                player.sendMessage(ChatColor.YELLOW + "Terrain generation canceled.");
-            }
-            else
+            if (filling != null) filling.tickets.releaseAll();
+            for (PregenWindow window : windows)
             {
-                player.sendMessage(ChatColor.YELLOW + "You don't have any terrain generation in progress.");
+                window.tickets.releaseAll();
             }
+        }
 
-            return true;
+        private void saveWorldAndCheckpoint() throws IOException
+        {
+            // Everything the checkpoint claims is handed to the world's storage before the checkpoint itself is written
+            world.save();
+            saveCheckpoint();
         }
 
-        if (args.length >= 2)
+        private void saveCheckpoint() throws IOException
         {
-            try
-            {
-                int chunkX = Integer.parseInt(args[0]);
-                int chunkZ = Integer.parseInt(args[1]);
-                chunk = player.getWorld().getChunkAt(chunkX, chunkZ);
-                fromArgs = true;
-            }
-            catch (NumberFormatException e)
+            File folder = checkpointFile.getParentFile();
+            if (!folder.isDirectory() && !folder.mkdirs())
             {
-                player.sendMessage(ChatColor.YELLOW + "Invalid chunk coordinates. Using current chunk.");
+                throw new IOException("Could not create " + folder);
             }
+            checkpoint.save(checkpointFile);
         }
 
-        generationTasks.put(playerUUID, new AtomicBoolean(true));
-
-        player.sendMessage(ChatColor.GREEN + "Starting terrain generation for chunk: " +
-                chunk.getX() + ", " + chunk.getZ() +
-                (fromArgs ? "" : " (your current position)"));
-        player.sendMessage(ChatColor.GRAY + "Type /generateterrain cancel to stop the generation.");
+        @Override
+        public ApplyScheduler.Status apply(int maxBlocks)
+        {
+            if (failure != null) return stopAfterFailure();
 
-        // Start the async process
-        startTerrainGeneration(chunk, player);
-        return true;
-    }
+            // Snapshotting and submitting happen once per tick; applying may run several quanta per tick
+            if (Bukkit.getCurrentTick() != lastFeedTick)
+            {
+                lastFeedTick = Bukkit.getCurrentTick();
+                feed();
+                submitWindows();
+            }
 
-    private void startTerrainGeneration(Chunk chunk, Player player)
-    {
-        final UUID playerUUID = player.getUniqueId();
-        final World world = chunk.getWorld();
-        final int chunkX = chunk.getX() * 16;
-        final int chunkZ = chunk.getZ() * 16;
+            int processed = applyWindows(maxBlocks);
+            if (failure != null) return stopAfterFailure();
 
-        // Run data gathering and model inference in async task
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () ->
-        {
-            try
+            long now = System.currentTimeMillis();
+            if (now - lastCheckpoint >= checkpointMillis)
+            {
+                lastCheckpoint = now;
+                try
+                {
+                    saveWorldAndCheckpoint();
+                }
+                catch (IOException e)
+                {
+                    plugin.getLogger().log(Level.WARNING, "Could not write pre-generation checkpoint", e);
+                }
+            }
+            if (now - lastReport >= reportMillis)
             {
-                if (!generationTasks.get(playerUUID).get()) return;
+                lastReport = now;
+                report(ChatColor.GRAY + progressLine());
+            }
 
-                player.sendMessage(ChatColor.AQUA + "Gathering data and preparing model input...");
-                final String chunkBiomeName = getChunkBiome(chunk);
+            if (walkDone && filling == null && windows.isEmpty())
+            {
+                pregenJobs.remove(world.getName());
+                checkpointFile.delete();
+                report(ChatColor.GREEN + "Pre-generation of " + checkpoint.describe() + " complete: " + checkpoint.getChunksDone() + " chunks in " +
+                        formatDuration(checkpoint.getElapsedMillis()) + ".");
+                return ApplyScheduler.Status.FINISHED;
+            }
 
-                // Create input tensor and fill with data from the world
-                float[][][][][] inputTensorData = new float[1][10][CHUNK_WIDTH][MODEL_CHUNK_HEIGHT][CHUNK_DEPTH];
-                fillInputTensor(inputTensorData, world, chunkX, chunkZ, chunkBiomeName);
+            return processed > 0 ? ApplyScheduler.Status.WORKING : ApplyScheduler.Status.WAITING;
+        }
 
-                if (!generationTasks.get(playerUUID).get()) return;
+        private void feed()
+        {
+            // A window holds enough chunks for a few batches; all of its loads are requested when it opens
+            if (filling == null)
+            {
+                if (walkDone || windows.size() >= maxWindows) return;
+                filling = new PregenWindow(new ChunkTickets(ticketRegistry, world));
 
-                // Run inference
-                player.sendMessage(ChatColor.AQUA + "Running AI model inference...");
-                float[][][][] outputBlocks = runModelInference(inputTensorData, player);
+                int windowChunks = Math.max(1, inferenceBatchSize) * 4;
+                while (filling.loading.size() < windowChunks)
+                {
+                    if (!walk.next())
+                    {
+                        walkDone = true;
+                        break;
+                    }
+                    filling.loading.add(filling.tickets.loadWithNeighbours(walk.getChunkX(), walk.getChunkZ()));
+                    filling.endIndex = walk.getIndex();
+                }
+            }
 
-                if (!generationTasks.get(playerUUID).get() || outputBlocks == null) return;
+            // Capture the next few loaded chunks in walk order; a chunk that can't be loaded stops the job, since the
+            // checkpoint would otherwise move past it
+            for (int captured = 0; captured < snapshotsPerTick && !filling.loading.isEmpty(); captured++)
+            {
+                CompletableFuture<Chunk> next = filling.loading.peek();
+                if (!next.isDone()) break;
+                filling.loading.poll();
 
-                // Start applying blocks in the main thread
-                Bukkit.getScheduler().runTask(plugin, () ->
-                        applyTerrainChanges(chunk, outputBlocks, player, playerUUID));
+                Chunk chunk;
+                try
+                {
+                    chunk = next.join();
+                }
+                catch (CompletionException | CancellationException e)
+                {
+                    plugin.getLogger().log(Level.SEVERE, "Could not load a chunk for pre-generation", e);
+                    failure = "a chunk failed to load (" + e.getMessage() + ")";
+                    return;
+                }
 
+                PipelineMetrics.Span snapshot = metrics.start(PipelineMetrics.Stage.SNAPSHOT);
+                filling.chunks.add(chunk);
+                filling.neighbourhoods.add(ChunkNeighbourhood.capture(chunk, recentSnapshots));
+                snapshot.end(1);
             }
-            catch (Exception e)
+
+            if (filling.loading.isEmpty())
             {
-                generationTasks.get(playerUUID).set(false);
-                player.sendMessage(ChatColor.RED + "" + ChatColor.BOLD + "[!] Error during terrain generation: " + e.getMessage());
-                plugin.getLogger().log(Level.SEVERE, "Error in terrain generation", e);
+                if (!filling.chunks.isEmpty()) windows.add(filling);
+                else filling.tickets.releaseAll();
+                filling = null;
             }
-        });
-    }
+        }
 
-    private float[][][][] runModelInference(float[][][][][] inputTensorData, Player player)
-    {
-        try
+        private void submitWindows()
         {
-            // Convert tensor data to flat buffer for ONNX
-            int totalSize = 1 * 10 * CHUNK_WIDTH * MODEL_CHUNK_HEIGHT * CHUNK_DEPTH;
-            FloatBuffer inputBuffer = FloatBuffer.allocate(totalSize);
+            for (PregenWindow window : windows)
+            {
+                if (window.submitted) continue;
 
-            // Flatten the tensor
-            for (int c = 0; c < 10; c++)
-                for (int x = 0; x < CHUNK_WIDTH; x++)
-                    for (int y = 0; y < MODEL_CHUNK_HEIGHT; y++)
-                        for (int z = 0; z < CHUNK_DEPTH; z++)
-                            inputBuffer.put(inputTensorData[0][c][x][y][z]);
-            inputBuffer.flip();
+                TerrainModel model = models.get(checkpoint.getModelName());
+                if (model == null) return; // still loading; try again next tick
 
-            // Create ONNX tensor
-            OnnxTensor inputTensor = OnnxTensor.createTensor(env, inputBuffer,
-                    new long[]{1, 10, CHUNK_WIDTH, MODEL_CHUNK_HEIGHT, CHUNK_DEPTH});
+                SlabLayout layout = checkpoint.isFullColumn()
+                        ? SlabLayout.fullColumn(model.getModelHeight(), WORLD_CHUNK_HEIGHT, slabOverlap)
+                        : SlabLayout.centred(model.getModelHeight(), WORLD_CHUNK_HEIGHT);
 
-            // Run inference
-            Map<String, OnnxTensor> inputs = new HashMap<>();
-            inputs.put("input", inputTensor);
+                InferenceService.Job job = new InferenceService.Job(PREGEN_PRIORITY, estimateJobBytes(window.chunks.size(), model, layout),
+                        () -> inferWindow(window, model, layout));
+                if (inferenceService.submit(job) != InferenceService.Admission.ACCEPTED) return; // queue full or over budget; retry next tick
+                window.submitted = true;
+            }
+        }
 
-            OrtSession.Result result = null;
-            try
+        private void inferWindow(PregenWindow window, TerrainModel model, SlabLayout layout)
+        {
+            if (!active.get()) return;
+            if (!model.retain())
             {
-                result = session.run(inputs);
-                OnnxTensor outputTensor = (OnnxTensor) result.get(0);
-
-                // Process model output
-                float[][][][][] outputRaw = (float[][][][][]) outputTensor.getValue();
-                float[][][][] outputBlocks = new float[CHUNK_WIDTH][WORLD_CHUNK_HEIGHT][CHUNK_DEPTH][1];
-                int numClasses = outputRaw[0].length;
+                // Reloaded while queued; resubmit with the new model
+                window.submitted = false;
+                return;
+            }
 
-                // Convert model height space to world height space
-                for (int x = 0; x < CHUNK_WIDTH; x++)
+            try
+            {
+                int chunksPerBatch = Math.max(1, inferenceBatchSize / layout.slabCount());
+                for (int first = 0; first < window.chunks.size() && active.get(); first += chunksPerBatch)
                 {
-                    for (int modelY = 0; modelY < MODEL_CHUNK_HEIGHT; modelY++)
+                    int batchChunks = Math.min(chunksPerBatch, window.chunks.size() - first);
+                    BlockVolume[] outputBlocks = predictBatch(model, layout, window.neighbourhoods.subList(first, first + batchChunks), requester, null);
+                    if (outputBlocks == null)
                     {
-                        int worldY = modelY - (MODEL_CHUNK_HEIGHT - WORLD_CHUNK_HEIGHT) / 2;
-                        if (worldY < 0 || worldY >= WORLD_CHUNK_HEIGHT) continue;
+                        failure = "model inference failed";
+                        return;
+                    }
 
-                        for (int z = 0; z < CHUNK_DEPTH; z++)
-                        {
-                            float maxProb = Float.NEGATIVE_INFINITY;
-                            int bestClass = 0;
-
-                            // Find highest probability class
-                            for (int c = 0; c < numClasses; c++)
-                            {
-                                float prob = outputRaw[0][c][x][modelY][z];
-                                if (prob > maxProb)
-                                {
-                                    maxProb = prob;
-                                    bestClass = c;
-                                }
-                            }
-                            outputBlocks[x][worldY][z][0] = bestClass;
-                        }
+                    for (int i = 0; i < batchChunks; i++)
+                    {
+                        PipelineMetrics.Span diff = metrics.start(PipelineMetrics.Stage.DIFF);
+                        ChangeList changes = ChangeList.diff(outputBlocks[i], window.neighbourhoods.get(first + i).getCentre(), palette);
+                        diff.end(1);
+                        window.results.add(new GeneratedChunk(window.chunks.get(first + i), outputBlocks[i], changes));
                     }
                 }
 
-                return outputBlocks;
+                // Snapshots are no longer needed once every chunk has been predicted
+                window.neighbourhoods = null;
+                window.inferred = true;
+            }
+            catch (Exception e)
+            {
+                failure = e.getMessage();
+                plugin.getLogger().log(Level.SEVERE, "Error in pre-generation", e);
             }
             finally
             {
-                // Clean up resources
-                if (inputTensor != null) inputTensor.close();
-                if (result != null) result.close();
+                model.release();
             }
         }
-        catch (OrtException e)
-        {
-            player.sendMessage(ChatColor.RED + "Model inference failed: " + e.getMessage());
-            plugin.getLogger().log(Level.SEVERE, "Model inference error", e);
-            return null;
-        }
-    }
-
-    private void applyTerrainChanges(Chunk chunk, float[][][][] outputBlocks, Player player, UUID playerUUID)
-    {
-        final AtomicBoolean isGenerating = generationTasks.get(playerUUID);
-        final int baseY = MIN_Y;
-        final int totalBlocks = CHUNK_WIDTH * WORLD_CHUNK_HEIGHT * CHUNK_DEPTH;
-
-        player.sendMessage(ChatColor.YELLOW + "Applying terrain changes to world...");
 
-        // Use atomic values for thread safety
-        final AtomicInteger blockIndex = new AtomicInteger(0);
-        final AtomicInteger blocksChanged = new AtomicInteger(0);
-        final AtomicInteger lastProgress = new AtomicInteger(-1);
-
-        // Create a block update task that runs periodically
-        new BukkitRunnable()
+        private int applyWindows(int maxBlocks)
         {
-            @Override
-            public void run()
+            int processed = 0;
+            while (processed < maxBlocks)
             {
-                // Check if we should stop
-                if (!isGenerating.get())
+                PregenWindow head = windows.peek();
+                if (head == null) break;
+
+                if (current == null)
                 {
-                    player.sendMessage(ChatColor.YELLOW + "Terrain generation canceled.");
-                    cancel();
-                    return;
+                    // inferred is set after the last result was queued, so checking it first can't miss a chunk
+                    boolean finished = head.inferred;
+                    current = head.results.poll();
+                    changeIndex = 0;
+                    if (current == null)
+                    {
+                        if (!finished) break;
+
+                        // The whole window is in the world; move the checkpoint past it
+                        long now = System.currentTimeMillis();
+                        checkpoint.advance(head.endIndex, head.chunks.size(), now - lastAdvance);
+                        lastAdvance = now;
+                        chunksThisRun += head.chunks.size();
+                        head.tickets.releaseAll();
+                        windows.poll();
+                        continue;
+                    }
+                    applySpan = metrics.start(PipelineMetrics.Stage.APPLY);
                 }
 
-                // Get the current block index
-                int currentIndex = blockIndex.get();
-                int processed = 0;
-
-                // Process a batch of blocks
-                while (currentIndex < totalBlocks && processed < BLOCKS_PER_BATCH)
+                ChangeList changes = current.getChanges();
+                if (changeIndex < changes.size())
                 {
-                    int x = (currentIndex / (WORLD_CHUNK_HEIGHT * CHUNK_DEPTH)) % CHUNK_WIDTH;
-                    int y = (currentIndex / CHUNK_DEPTH) % WORLD_CHUNK_HEIGHT;
-                    int z = currentIndex % CHUNK_DEPTH;
-
+                    Chunk chunk = current.getChunk();
+                    int x = changes.x(changeIndex);
+                    int y = changes.y(changeIndex);
+                    int z = changes.z(changeIndex);
                     try
                     {
-                        // Get block type from model output
-                        int blockId = (int) outputBlocks[x][y][z][0];
-                        Material mat = blockTypeDecoder.getOrDefault(blockId, Material.AIR);
-
-                        // Get existing block
-                        Block block = chunk.getBlock(x, y + baseY, z);
-                        Material currentType = block.getType();
-
-                        // Update block if different (skip air-to-air replacements)
-                        if (mat != null && mat != currentType && !(mat == Material.AIR && currentType == Material.AIR))
-                        {
-                            // Safe block update with client notification
-                            block.setType(mat, false);  // false = don't update physics for better performance
-                            blocksChanged.incrementAndGet();
-                        }
+                        chunk.getBlock(x, y, z).setType(palette.decode(changes.classId(changeIndex)), false);
                     }
-                    catch (Exception e)
+                    catch (RuntimeException e)
                     {
-                        plugin.getLogger().warning("Error setting block at " + x + "," + (y + baseY) + "," + z + ": " + e.getMessage());
+                        // One bad window stops the job; the checkpoint hasn't moved past it yet
+                        plugin.getLogger().log(Level.SEVERE, "Error setting block at " + x + "," + y + "," + z + " in chunk " + chunk.getX() + "," + chunk.getZ(), e);
+                        failure = "could not apply chunk " + chunk.getX() + "," + chunk.getZ() + ": " + e.getMessage();
+                        break;
                     }
-
                     processed++;
-                    currentIndex = blockIndex.incrementAndGet();
+                    changeIndex++;
                 }
 
-                // Report progress
-                int progress = (int)((blockIndex.get() * 100.0) / totalBlocks);
-                if (progress >= lastProgress.get() + 10 || blockIndex.get() >= totalBlocks)
+                if (changeIndex >= changes.size())
                 {
-                    player.sendMessage(ChatColor.GRAY + "Progress: " + progress + "% (" +
-                            blocksChanged.get() + " blocks changed)");
-                    lastProgress.set(progress);
+                    applySpan.end(1);
+                    current = null;
                 }
+            }
 
-                // Check if we're done
-                if (blockIndex.get() >= totalBlocks)
-                {
-                    player.sendMessage(ChatColor.GREEN + "Terrain generation complete! Changed " +
-                            blocksChanged.get() + " blocks.");
-                    generationTasks.remove(playerUUID);
-                    cancel();
+            return processed;
+        }
 
-                    // Notify client about block updates
-                    chunk.getWorld().refreshChunk(chunk.getX(), chunk.getZ());
-                }
+        private String progressLine()
+        {
+            long done = checkpoint.getChunksDone();
+            long total = checkpoint.chunkCount();
+            double seconds = (System.currentTimeMillis() - runStart) / 1000.0;
+            double rate = seconds > 0 ? chunksThisRun / seconds : 0.0;
+
+            return String.format("[Pregen %s] %d/%d chunks (%.1f%%), %.2f chunks/s, ETA %s", world.getName(), done, total,
+                    total > 0 ? done * 100.0 / total : 100.0, rate,
+                    rate > 0 ? formatDuration((long) ((total - done) / rate * 1000)) : "unknown");
+        }
+
+        private void report(String message)
+        {
+            // Progress always goes to the server log; a player who started the job also gets it in chat while online
+            plugin.getLogger().info(ChatColor.stripColor(message));
+            if (requester instanceof Player && ((Player) requester).isOnline())
+            {
+                requester.sendMessage(message);
             }
-        }.runTaskTimer(plugin, 5L, TICKS_BETWEEN_BATCHES);
+        }
     }
 
-    private void fillInputTensor(float[][][][][] input, World world, int chunkX, int chunkZ, String chunkBiomeName)
+    private static final class PregenWindow
     {
-        for (int x = 0; x < CHUNK_WIDTH; x++)
+        // A run of consecutive walk chunks that is predicted by one inference job and applied as a unit
+
+        private final ChunkTickets tickets;
+        private final ArrayDeque<CompletableFuture<Chunk>> loading = new ArrayDeque<>();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private List<ChunkNeighbourhood> neighbourhoods = new ArrayList<>();
+        private final Queue<GeneratedChunk> results = new ConcurrentLinkedQueue<>();
+        private long endIndex;
+        private volatile boolean submitted;
+        private volatile boolean inferred;
+
+        private PregenWindow(ChunkTickets tickets)
         {
-            for (int modelY = 0; modelY < MODEL_CHUNK_HEIGHT; modelY++)
-            {
-                int offset = ((MODEL_CHUNK_HEIGHT - WORLD_CHUNK_HEIGHT) / 2);
-                int worldY = modelY - offset + MIN_Y;
+            this.tickets = tickets;
+        }
+    }
+
+    private static String formatDuration(long millis)
+    {
+        long minutes = millis / 60_000;
+        return minutes >= 60 ? (minutes / 60) + "h " + String.format("%02d", minutes % 60) + "m" : minutes + "m " + (millis / 1000 % 60) + "s";
+    }
+
+    private final class UndoApplyTask implements ApplyScheduler.Task
+    {
+        // Restores journalled block states chunk by chunk, newest job first, within the apply scheduler's budget
+
+        private final Queue<UndoRecord> records;
+        private final AtomicBoolean readDone;
+        private final AtomicInteger jobsUndone;
+        private final JobManager.Job job;
+        private final Map<String, ChunkTickets> tickets;
+        private final Player player;
+        private final UUID playerUUID;
+
+        private UndoRecord current;
+        private Chunk chunk;
+        private BlockData[] states;
+        private int recordIndex;
+        private int blocksRestored;
+        private int chunksRestored;
+
+        private UndoApplyTask(Queue<UndoRecord> records, AtomicBoolean readDone, AtomicInteger jobsUndone, JobManager.Job job,
+                              Map<String, ChunkTickets> tickets, Player player, UUID playerUUID)
+        {
+            this.records = records;
+            this.readDone = readDone;
+            this.jobsUndone = jobsUndone;
+            this.job = job;
+            this.tickets = tickets;
+            this.player = player;
+            this.playerUUID = playerUUID;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return job.isActive();
+        }
+
+        @Override
+        public void cancelled()
+        {
+            releaseAll(tickets);
+            jobManager.finish(job);
+            player.sendMessage(ChatColor.YELLOW + "Undo canceled; " + blocksRestored + " blocks were already restored.");
+        }
+
+        @Override
+        public void failed(Throwable error)
+        {
+            releaseAll(tickets);
+            jobManager.finish(job);
+            player.sendMessage(ChatColor.RED + "Undo stopped after an error: " + error.getMessage() + " (" + blocksRestored + " blocks were already restored).");
+        }
+
+        @Override
+        public ApplyScheduler.Status apply(int maxBlocks)
+        {
+            int processed = 0;
 
-                for (int z = 0; z < CHUNK_DEPTH; z++)
+            while (processed < maxBlocks)
+            {
+                if (current == null)
                 {
-                    // Skip positions outside world bounds
-                    if (worldY < MIN_Y || worldY > MAX_Y)
+                    current = records.poll();
+                    if (current == null) break;
+
+                    // Every chunk the undo restores was loaded before it started; a world unloaded since then is skipped
+                    recordIndex = 0;
+                    ChunkTickets worldTickets = tickets.get(current.getWorldName());
+                    chunk = worldTickets != null ? worldTickets.getLoaded(current.getChunkX(), current.getChunkZ()) : null;
+                    if (chunk == null)
+                    {
+                        plugin.getLogger().warning("Skipping undo record for chunk " + current.getChunkX() + ", " + current.getChunkZ() +
+                                " in " + current.getWorldName() + ", which isn't loaded");
+                        current = null;
+                        continue;
+                    }
+
+                    // Resolve the record's palette once; states this server no longer knows are skipped
+                    String[] palette = current.getPalette();
+                    states = new BlockData[palette.length];
+                    for (int i = 0; i < palette.length; i++)
                     {
-                        for (int c = 0; c < 10; c++)
+                        try
                         {
-                            input[0][c][x][modelY][z] = 0.0f;
+                            states[i] = Bukkit.createBlockData(palette[i]);
+                        }
+                        catch (IllegalArgumentException e)
+                        {
+                            plugin.getLogger().warning("Unknown block state in undo journal: " + palette[i]);
                         }
-
-                        continue;
                     }
+                }
 
-                    // Get block and surrounding blocks
-                    Block block = world.getBlockAt(chunkX + x, worldY, chunkZ + z);
-                    Block leftBlock = (x > 0) ?
-                            world.getBlockAt(chunkX + x - 1, worldY, chunkZ + z) :
-                            world.getBlockAt(chunkX + x, worldY, chunkZ + z);
-                    Block rightBlock = (x < CHUNK_WIDTH - 1) ?
-                            world.getBlockAt(chunkX + x + 1, worldY, chunkZ + z) :
-                            world.getBlockAt(chunkX + x, worldY, chunkZ + z);
-                    Block belowBlock = (worldY > MIN_Y) ?
-                            world.getBlockAt(chunkX + x, worldY - 1, chunkZ + z) : null;
-                    Block aboveBlock = (worldY < MAX_Y) ?
-                            world.getBlockAt(chunkX + x, worldY + 1, chunkZ + z) : null;
-                    Block frontBlock = (z < CHUNK_DEPTH - 1) ?
-                            world.getBlockAt(chunkX + x, worldY, chunkZ + z + 1) :
-                            world.getBlockAt(chunkX + x, worldY, chunkZ + z);
-                    Block behindBlock = (z > 0) ?
-                            world.getBlockAt(chunkX + x, worldY, chunkZ + z - 1) :
-                            world.getBlockAt(chunkX + x, worldY, chunkZ + z);
+                if (recordIndex < current.size())
+                {
+                    BlockData state = states[current.state(recordIndex)];
+                    if (state != null)
+                    {
+                        chunk.getBlock(current.x(recordIndex), current.y(recordIndex), current.z(recordIndex)).setBlockData(state, false);
+                        blocksRestored++;
+                    }
 
-                    // Get biome name
-                    String biomeName = block.getBiome().toString();
+                    processed++;
+                    recordIndex++;
+                }
 
-                    // Fill input tensor features
-                    input[0][0][x][modelY][z] = getBiomeFeature(chunkBiomeName);
-                    input[0][1][x][modelY][z] = getBiomeFeature(biomeName);
-                    input[0][2][x][modelY][z] = (aboveBlock != null && aboveBlock.getType() == Material.AIR) ? 1.0f : 0.0f;
-                    input[0][3][x][modelY][z] = block.getLightLevel() / 15.0f;
-                    input[0][4][x][modelY][z] = leftBlock != null ? getBlockTypeFeature(leftBlock.getType().toString()) : 0.0f;
-                    input[0][5][x][modelY][z] = rightBlock != null ? getBlockTypeFeature(rightBlock.getType().toString()) : 0.0f;
-                    input[0][6][x][modelY][z] = belowBlock != null ? getBlockTypeFeature(belowBlock.getType().toString()) : 0.0f;
-                    input[0][7][x][modelY][z] = aboveBlock != null ? getBlockTypeFeature(aboveBlock.getType().toString()) : 0.0f;
-                    input[0][8][x][modelY][z] = frontBlock != null ? getBlockTypeFeature(frontBlock.getType().toString()) : 0.0f;
-                    input[0][9][x][modelY][z] = behindBlock != null ? getBlockTypeFeature(behindBlock.getType().toString()) : 0.0f;
+                if (recordIndex >= current.size())
+                {
+                    chunksRestored++;
+                    current = null;
+                    chunk = null;
+                    states = null;
                 }
             }
+
+            if (current == null && readDone.get() && records.isEmpty() && job.isActive())
+            {
+                player.sendMessage(ChatColor.GREEN + "Undo complete! Restored " + blocksRestored + " blocks across " + chunksRestored +
+                        " chunks from " + jobsUndone.get() + (jobsUndone.get() == 1 ? " generation." : " generations."));
+                releaseAll(tickets);
+                jobManager.finish(job);
+                return ApplyScheduler.Status.FINISHED;
+            }
+
+            return processed > 0 ? ApplyScheduler.Status.WORKING : ApplyScheduler.Status.WAITING;
         }
     }
 
-    private String getChunkBiome(Chunk chunk)
+    private void notifyFollowers(JobManager.Job job, String message)
     {
-        int centerX = chunk.getX() * 16 + 8;
-        int centerZ = chunk.getZ() * 16 + 8;
-        World world = chunk.getWorld();
-        Biome biome = world.getBiome(centerX, 64, centerZ);
-        return biome.toString();
+        // Players whose requests were merged into this job
+        for (UUID follower : job.getFollowers())
+        {
+            Player player = Bukkit.getPlayer(follower);
+            if (player != null) player.sendMessage(message);
+        }
     }
 
-    private float getBiomeFeature(String biomeName)
+    private Biome getChunkBiome(BlockSource neighbourhood)
     {
-        return biomeEncoder.getOrDefault(biomeName, 0);
+        return neighbourhood.getBiome(8, 64, 8);
     }
 
-    private float getBlockTypeFeature(String blockType)
+    public ChunkGenerator createChunkGenerator(String worldName, String id)
     {
-        return blockTypeEncoder.getOrDefault(blockType, 0);
+        // Called through GenerativeTerrain for worlds whose generator is "GenerativeTerrain" or "GenerativeTerrain:<model>"
+        if (models == null || palette == null)
+        {
+            plugin.getLogger().warning("Terrain models aren't available; world '" + worldName + "' will use the default generator.");
+            return null;
+        }
+
+        String modelName = id != null && !id.isEmpty() ? id : null;
+        if (modelName != null && !models.isKnown(modelName))
+        {
+            plugin.getLogger().warning("Unknown model '" + modelName + "' for world '" + worldName + "'. Available: " + String.join(", ", models.names()));
+            return null;
+        }
+
+        int maxReady = Math.max(1, plugin.getConfig().getInt("generator.max-ready-chunks", 512));
+        ModelChunkGenerator generator = new ModelChunkGenerator(plugin, palette,
+                terrain -> new TerrainPrecomputer(terrain, models, modelName, palette, featureEncoder, tensorPool, inferenceService,
+                        inferenceBatchSize, slabOverlap, maxReady, inferenceWorkers, metrics, plugin.getLogger()),
+                plugin.getConfig().getLong("generator.max-wait-ms", 5),
+                plugin.getConfig().getInt("generator.prefetch-radius", 6),
+                plugin.getConfig().getDouble("generator.lookahead-seconds", 3.0));
+        generator.start();
+        chunkGenerators.add(generator);
+
+        plugin.getLogger().info("World '" + worldName + "' is generated by model '" + (modelName != null ? modelName : models.getDefaultModel()) + "'.");
+        return generator;
     }
 
     public void cleanup()
     {
         try
         {
-            // Cancel all running generation tasks
-            for (Map.Entry<UUID, AtomicBoolean> entry : generationTasks.entrySet())
+            // Stop pre-generation jobs; their checkpoints let them resume on the next start
+            for (PregenJob job : pregenJobs.values())
             {
-                entry.getValue().set(false);
+                job.stop(false);
+                job.cancelled();
             }
-            generationTasks.clear();
+            pregenJobs.clear();
 
-            // Close ONNX resources
-            if (session != null)
+            // Release world generators still waiting on inference before the workers go away
+            for (ModelChunkGenerator generator : chunkGenerators)
+            {
+                generator.stop();
+            }
+            chunkGenerators.clear();
+
+            // Cancel all running generation and undo jobs
+            for (JobManager.Job job : jobManager.all())
+            {
+                jobManager.cancel(job);
+            }
+            jobManager.shutdown();
+
+            inferenceService.shutdown();
+            applyScheduler.stop();
+
+            if (undoJournal != null)
+            {
+                undoJournal.close();
+            }
+
+            if (featureEncoder != null)
             {
-                session.close();
-                session = null;
+                featureEncoder.shutdown();
+                featureEncoder = null;
             }
-            if (env != null)
+
+            // Close ONNX resources
+            if (models != null)
             {
-                env.close();
-                env = null;
+                models.close();
+                models = null;
             }
             plugin.getLogger().info("ONNX resources cleaned up successfully");
         }
-        catch (OrtException e)
+        catch (RuntimeException e)
         {
             plugin.getLogger().log(Level.WARNING, "Error closing ONNX resources", e);
         }
@@ -1,5 +1,6 @@
 package com.ghosteau.generativeterrain.commands;
 
+import com.ghosteau.generativeterrain.dataset.BinaryExporter;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -7,11 +8,14 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class setDataPath implements CommandExecutor
 {
-    // Stores the user's input path.
-    private static String userPath;
+    // Stores each player's input path, so several players can collect data at once without overwriting each other.
+    private static final Map<UUID, String> userPaths = new ConcurrentHashMap<>();
 
     @Override
     public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args)
@@ -20,7 +24,8 @@ public class setDataPath implements CommandExecutor
         - The command to update the data extraction path, particularly used to extract data from Minecraft onto your PC in CSV format (refer to grabChunkData class for more).
         - Note that the path will always default to server if you simply just type in a file name; no spaces allowed at all in the path, including folder names.
         - As some of the warning messages imply, the directory is not based on your PC system root, rather the directory where the server is located.
-        - It is important that the final part of the path (what your file will be named and saved as) ends with .csv to have data extracted correctly.
+        - It is important that the final part of the path (what your file will be named and saved as) ends with .csv or .gtc to have data extracted correctly.
+        - .csv writes plain CSV rows; .gtc selects the compact binary format (refer to BinaryExporter), which is much smaller and loads as a NumPy memmap.
         */
 
         if (!(sender instanceof Player))
@@ -43,9 +48,9 @@ public class setDataPath implements CommandExecutor
                 String path = args[0];
 
                 // Check if the path is valid
-                if (!path.toLowerCase().endsWith(".csv"))
+                if (!path.toLowerCase().endsWith(".csv") && !BinaryExporter.handles(path))
                 {
-                    player.sendMessage(ChatColor.RED + "Path must end with .csv extension");
+                    player.sendMessage(ChatColor.RED + "Path must end with .csv or " + BinaryExporter.EXTENSION + " extension");
                     return true;
                 }
 
@@ -59,12 +64,12 @@ public class setDataPath implements CommandExecutor
                     player.sendMessage(ChatColor.YELLOW + "Directory doesn't exist. It will be created when you run grabChunkData.");
                 }
 
-                userPath = path;
+                userPaths.put(player.getUniqueId(), path);
                 player.sendMessage(ChatColor.GREEN + "" + ChatColor.BOLD + "[!] Path updated to: " + ChatColor.RESET + path);
             }
             else
             {
-                player.sendMessage(ChatColor.RED + "Usage: /setDataPath <your/specified/path.csv>");
+                player.sendMessage(ChatColor.RED + "Usage: /setDataPath <your/specified/path.csv|.gtc>");
                 player.sendMessage(ChatColor.YELLOW + "Ensure no spaces in path. Path is relative to server directory, not system root.");
             }
             return true;
@@ -72,9 +77,9 @@ public class setDataPath implements CommandExecutor
         return false;
     }
 
-    public static String getPath()
+    public static String getPath(UUID playerUUID)
     {
-        // Returns the path string.
-        return userPath;
+        // Returns the player's path string, or null if they haven't set one.
+        return userPaths.get(playerUUID);
     }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.ghosteau.generativeterrain.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public final class BinaryExporter
+{
+    /*
+    - Writes a ChunkSample as a compact .gtc file that NumPy can memory-map directly (see Notebooks/gtc.py).
+    - Layout, all little-endian:
+      - 64-byte header: magic "GTC1", version, index width, chunk position, world bounds, palette sizes and the offsets below.
+      - Palette: UTF-8 lines (world name, then block names, then biome names), each ending in '\n'.
+      - Section table: one 24-byte entry per 16-block section, bottom up. An entry holds the section's data offset,
+        or -1 when every column is constant over the section; in that case the entry carries the constant values instead.
+      - Section data: the eight palette-indexed columns (block, biome, left, right, below, above, front, behind)
+        at the header's index width, then surface and light as bytes. Each column is 4096 rows in the CSV order (x, y, z).
+    - Index width is 1 byte when both palettes fit in 256 entries, which is the usual case for a single chunk.
+    */
+
+    public static final String EXTENSION = ".gtc";
+
+    private static final int MAGIC = 0x31435447; // "GTC1" read as a little-endian int
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int TABLE_ENTRY_BYTES = 24;
+    private static final int SECTION_HEIGHT = 16;
+    private static final int SECTION_ROWS = ChunkSample.CHUNK_WIDTH * SECTION_HEIGHT * ChunkSample.CHUNK_DEPTH;
+    private static final int SECTIONS = ChunkSample.HEIGHT / SECTION_HEIGHT;
+    private static final int INDEXED_COLUMNS = 8;
+    private static final int BYTE_COLUMNS = 2;
+    private static final int ELIDED = -1;
+
+    private BinaryExporter()
+    {
+    }
+
+    public static boolean handles(String path)
+    {
+        return path.toLowerCase().endsWith(EXTENSION);
+    }
+
+    public static void write(ChunkSample sample, File file) throws IOException
+    {
+        // Create parent directories if they don't exist.
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists())
+        {
+            parent.mkdirs();
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            write(sample, channel);
+        }
+    }
+
+    public static void write(ChunkSample sample, WritableByteChannel channel) throws IOException
+    {
+        List<String> blocks = sample.getBlockPalette();
+        List<String> biomes = sample.getBiomePalette();
+        short[][] indexed = { sample.getBlock(), sample.getBiome(), sample.getLeft(), sample.getRight(),
+                sample.getBelow(), sample.getAbove(), sample.getFront(), sample.getBehind() };
+        byte[][] bytes = { sample.getSurface(), sample.getLight() };
+
+        int indexWidth = blocks.size() <= 256 && biomes.size() <= 256 ? 1 : 2;
+        int sectionBytes = SECTION_ROWS * (INDEXED_COLUMNS * indexWidth + BYTE_COLUMNS);
+
+        StringBuilder lines = new StringBuilder(1024);
+        lines.append(sample.getWorldName()).append('\n');
+        for (String name : blocks) lines.append(name).append('\n');
+        for (String name : biomes) lines.append(name).append('\n');
+        byte[] palette = lines.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Section data starts on a 64-byte boundary so memmapped columns are aligned
+        int tableOffset = HEADER_BYTES + palette.length;
+        int dataOffset = align(tableOffset + SECTIONS * TABLE_ENTRY_BYTES, 64);
+
+        int[] offsets = new int[SECTIONS];
+        int next = dataOffset;
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            if (isUniform(section, indexed, bytes))
+            {
+                offsets[section] = ELIDED;
+            }
+            else
+            {
+                offsets[section] = next;
+                next += sectionBytes;
+            }
+        }
+
+        ByteBuffer head = ByteBuffer.allocateDirect(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(MAGIC);
+        head.putShort(VERSION);
+        head.put((byte) indexWidth);
+        head.put((byte) SECTIONS);
+        head.putInt(sample.getChunkX());
+        head.putInt(sample.getChunkZ());
+        head.putShort((short) ChunkSample.MIN_Y);
+        head.putShort((short) ChunkSample.HEIGHT);
+        head.putShort((short) blocks.size());
+        head.putShort((short) biomes.size());
+        head.putShort((short) biomes.indexOf(sample.getChunkBiome()));
+        head.putShort((short) 0);
+        head.putInt(palette.length);
+        head.putInt(tableOffset);
+        head.putInt(dataOffset);
+        head.putInt(sectionBytes);
+        head.position(HEADER_BYTES);
+        head.put(palette);
+
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            // Offset, then the constant value of each column (meaningful only for elided sections), padded to the entry size
+            int first = firstRow(section);
+            head.putInt(offsets[section]);
+            for (short[] column : indexed) head.putShort(column[first]);
+            for (byte[] column : bytes) head.put(column[first]);
+            head.putShort((short) 0);
+        }
+        head.clear();
+
+        ByteBuffer data = ByteBuffer.allocateDirect(sectionBytes).order(ByteOrder.LITTLE_ENDIAN);
+        writeFully(channel, head);
+
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            if (offsets[section] == ELIDED) continue;
+
+            data.clear();
+            for (short[] column : indexed)
+            {
+                for (int row = firstRow(section), i = 0; i < SECTION_ROWS; i++, row = nextRow(row))
+                {
+                    if (indexWidth == 1) data.put((byte) column[row]);
+                    else data.putShort(column[row]);
+                }
+            }
+            for (byte[] column : bytes)
+            {
+                for (int row = firstRow(section), i = 0; i < SECTION_ROWS; i++, row = nextRow(row))
+                {
+                    data.put(column[row]);
+                }
+            }
+            data.flip();
+            writeFully(channel, data);
+        }
+    }
+
+    private static boolean isUniform(int section, short[][] indexed, byte[][] bytes)
+    {
+        int first = firstRow(section);
+        for (short[] column : indexed)
+        {
+            short value = column[first];
+            for (int row = first, i = 0; i < SECTION_ROWS; i++, row = nextRow(row))
+            {
+                if (column[row] != value) return false;
+            }
+        }
+        for (byte[] column : bytes)
+        {
+            byte value = column[first];
+            for (int row = first, i = 0; i < SECTION_ROWS; i++, row = nextRow(row))
+            {
+                if (column[row] != value) return false;
+            }
+        }
+        return true;
+    }
+
+    private static int firstRow(int section)
+    {
+        return section * SECTION_HEIGHT * ChunkSample.CHUNK_DEPTH;
+    }
+
+    private static int nextRow(int row)
+    {
+        // Sample rows run x, y, z over the whole column; step within one section and jump to the next x at its top
+        int next = row + 1;
+        int y = (next / ChunkSample.CHUNK_DEPTH) % ChunkSample.HEIGHT;
+        if (next % ChunkSample.CHUNK_DEPTH == 0 && y % SECTION_HEIGHT == 0)
+        {
+            next += (ChunkSample.HEIGHT - SECTION_HEIGHT) * ChunkSample.CHUNK_DEPTH;
+        }
+        return next;
+    }
+
+    private static int align(int value, int alignment)
+    {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.ghosteau.generativeterrain.dataset;
+
+import com.ghosteau.generativeterrain.generation.BlockSource;
+import com.ghosteau.generativeterrain.generation.ChunkNeighbourhood;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ChunkSample
+{
+    /*
+    - Training features of one chunk column, held in pre-sized primitive columns instead of boxed lists.
+    - Rows are in the order the CSV has always used: x, then y (bottom up), then z; positions are implied by the row index.
+    - Block and biome names are palette-encoded; every short column holds indices into this sample's own palettes.
+    - The surface of a column is its highest block according to the snapshot's heightmap, so cave floors under open air don't count.
+    - Built off the main thread from a ChunkNeighbourhood captured in a single tick (or any other BlockSource), so each export owns all of its state.
+    */
+
+    public static final int CHUNK_WIDTH = 16;
+    public static final int CHUNK_DEPTH = 16;
+    public static final int MIN_Y = -64;
+    public static final int MAX_Y = 319;
+    public static final int HEIGHT = MAX_Y - MIN_Y + 1;
+    public static final int ROWS = CHUNK_WIDTH * HEIGHT * CHUNK_DEPTH;
+
+    private final String worldName;
+    private final int chunkX;
+    private final int chunkZ;
+    private final String chunkBiome;
+
+    private final List<String> blockPalette = new ArrayList<>();
+    private final List<String> biomePalette = new ArrayList<>();
+    private final short[] materialIds = new short[Material.values().length];
+    private final Map<Biome, Short> biomeIds = new HashMap<>();
+
+    private final short[] biome = new short[ROWS];
+    private final short[] block = new short[ROWS];
+    private final byte[] surface = new byte[ROWS];
+    private final byte[] light = new byte[ROWS];
+    private final short[] left = new short[ROWS];
+    private final short[] right = new short[ROWS];
+    private final short[] below = new short[ROWS];
+    private final short[] above = new short[ROWS];
+    private final short[] front = new short[ROWS];
+    private final short[] behind = new short[ROWS];
+
+    private ChunkSample(String worldName, int chunkX, int chunkZ, String chunkBiome)
+    {
+        this.worldName = worldName;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.chunkBiome = chunkBiome;
+
+        Arrays.fill(materialIds, (short) -1);
+    }
+
+    public static ChunkSample assemble(ChunkNeighbourhood chunk)
+    {
+        // Surfaces and the chunk's label (the biome at the surface of its centre column) are read straight from the heightmap
+        ChunkSnapshot centre = chunk.getCentre();
+        int[] surfaceY = new int[CHUNK_WIDTH * CHUNK_DEPTH];
+        for (int x = 0; x < CHUNK_WIDTH; x++)
+        {
+            for (int z = 0; z < CHUNK_DEPTH; z++)
+            {
+                surfaceY[x * CHUNK_DEPTH + z] = centre.getHighestBlockYAt(x, z);
+            }
+        }
+
+        return assemble(chunk, surfaceY, centre.getWorldName(), centre.getX(), centre.getZ(),
+                centre.getBiome(8, surfaceY[8 * CHUNK_DEPTH + 8], 8).toString());
+    }
+
+    public static ChunkSample assemble(BlockSource chunk, String worldName, int chunkX, int chunkZ, String chunkBiome)
+    {
+        // Sources without a heightmap get one by scanning each column down to its highest non-air block
+        int[] surfaceY = new int[CHUNK_WIDTH * CHUNK_DEPTH];
+        for (int x = 0; x < CHUNK_WIDTH; x++)
+        {
+            for (int z = 0; z < CHUNK_DEPTH; z++)
+            {
+                int y = MAX_Y;
+                while (y >= MIN_Y && chunk.getType(x, y, z).isAir()) y--;
+                surfaceY[x * CHUNK_DEPTH + z] = y;
+            }
+        }
+
+        return assemble(chunk, surfaceY, worldName, chunkX, chunkZ, chunkBiome);
+    }
+
+    public static ChunkSample assemble(BlockSource chunk, int[] surfaceY, String worldName, int chunkX, int chunkZ, String chunkBiome)
+    {
+        // surfaceY holds the highest block of each column, indexed x * 16 + z; below MIN_Y for a column of nothing but air
+        ChunkSample sample = new ChunkSample(worldName, chunkX, chunkZ, chunkBiome);
+        short voidAir = sample.blockId(Material.VOID_AIR);
+
+        int row = 0;
+        for (int x = 0; x < CHUNK_WIDTH; x++)
+        {
+            for (int y = MIN_Y; y <= MAX_Y; y++)
+            {
+                for (int z = 0; z < CHUNK_DEPTH; z++)
+                {
+                    // Neighbours across the chunk border come from the neighbour snapshots; outside the world is void air
+                    Material up = y < MAX_Y ? chunk.getType(x, y + 1, z) : Material.VOID_AIR;
+
+                    sample.biome[row] = sample.biomeId(chunk.getBiome(x, y, z));
+                    sample.block[row] = sample.blockId(chunk.getType(x, y, z));
+                    sample.surface[row] = (byte) (y == surfaceY[x * CHUNK_DEPTH + z] ? 1 : 0);
+                    sample.light[row] = (byte) chunk.getLightLevel(x, y, z);
+                    sample.left[row] = sample.blockId(chunk.getType(x - 1, y, z));
+                    sample.right[row] = sample.blockId(chunk.getType(x + 1, y, z));
+                    sample.below[row] = y > MIN_Y ? sample.blockId(chunk.getType(x, y - 1, z)) : voidAir;
+                    sample.above[row] = sample.blockId(up);
+                    sample.front[row] = sample.blockId(chunk.getType(x, y, z - 1));
+                    sample.behind[row] = sample.blockId(chunk.getType(x, y, z + 1));
+                    row++;
+                }
+            }
+        }
+
+        return sample;
+    }
+
+    private short blockId(Material material)
+    {
+        short id = materialIds[material.ordinal()];
+        if (id < 0)
+        {
+            id = (short) blockPalette.size();
+            blockPalette.add(material.toString());
+            materialIds[material.ordinal()] = id;
+        }
+        return id;
+    }
+
+    private short biomeId(Biome value)
+    {
+        Short id = biomeIds.get(value);
+        if (id == null)
+        {
+            id = (short) biomePalette.size();
+            biomePalette.add(String.valueOf(value)); // sources without biome data report null
+            biomeIds.put(value, id);
+        }
+        return id;
+    }
+
+    public static int x(int row)
+    {
+        return row / (HEIGHT * CHUNK_DEPTH);
+    }
+
+    public static int y(int row)
+    {
+        return (row / CHUNK_DEPTH) % HEIGHT + MIN_Y;
+    }
+
+    public static int z(int row)
+    {
+        return row % CHUNK_DEPTH;
+    }
+
+    public String getWorldName()
+    {
+        return worldName;
+    }
+
+    public int getChunkX()
+    {
+        return chunkX;
+    }
+
+    public int getChunkZ()
+    {
+        return chunkZ;
+    }
+
+    public String getChunkBiome()
+    {
+        return chunkBiome;
+    }
+
+    public List<String> getBlockPalette()
+    {
+        return blockPalette;
+    }
+
+    public List<String> getBiomePalette()
+    {
+        return biomePalette;
+    }
+
+    public short[] getBiome()
+    {
+        return biome;
+    }
+
+    public short[] getBlock()
+    {
+        return block;
+    }
+
+    public byte[] getSurface()
+    {
+        return surface;
+    }
+
+    public byte[] getLight()
+    {
+        return light;
+    }
+
+    public short[] getLeft()
+    {
+        return left;
+    }
+
+    public short[] getRight()
+    {
+        return right;
+    }
+
+    public short[] getBelow()
+    {
+        return below;
+    }
+
+    public short[] getAbove()
+    {
+        return above;
+    }
+
+    public short[] getFront()
+    {
+        return front;
+    }
+
+    public short[] getBehind()
+    {
+        return behind;
+    }
+}
@@ -0,0 +1,69 @@
+package com.ghosteau.generativeterrain.dataset;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+public final class CsvExporter
+{
+    /*
+    - Writes a ChunkSample in the original CSV layout the training notebooks read: one row per block, names spelled out.
+    - Each row is built in one reused StringBuilder from the palettes, so no per-cell strings are created.
+    */
+
+    public static final String HEADER = "x,y,z,ChunkBiome,Biome,Block_ID,Is_Surface,Light_Level,Block_to_Left,Block_to_Right,Block_Below,Block_Above,Block_in_Front,Block_Behind";
+
+    private CsvExporter()
+    {
+    }
+
+    public static void write(ChunkSample sample, File csvFile) throws IOException
+    {
+        // Create parent directories if they don't exist.
+        File parent = csvFile.getParentFile();
+        if (parent != null && !parent.exists())
+        {
+            parent.mkdirs();
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile), 1 << 16))
+        {
+            writer.write(HEADER);
+            writer.newLine();
+            writeRows(sample, writer);
+        }
+    }
+
+    public static void writeRows(ChunkSample sample, Writer writer) throws IOException
+    {
+        // Rows only, without the header; harvest shards write the header once per shard
+        List<String> blocks = sample.getBlockPalette();
+        List<String> biomes = sample.getBiomePalette();
+        StringBuilder row = new StringBuilder(256);
+
+        for (int i = 0; i < ChunkSample.ROWS; i++)
+        {
+            row.setLength(0);
+            row.append(ChunkSample.x(i)).append(',')
+                    .append(ChunkSample.y(i)).append(',')
+                    .append(ChunkSample.z(i)).append(',')
+                    .append(sample.getChunkBiome()).append(',')
+                    .append(biomes.get(sample.getBiome()[i])).append(',')
+                    .append(blocks.get(sample.getBlock()[i])).append(',')
+                    .append(sample.getSurface()[i] != 0).append(',')
+                    .append((double) sample.getLight()[i]).append(',')
+                    .append(blocks.get(sample.getLeft()[i])).append(',')
+                    .append(blocks.get(sample.getRight()[i])).append(',')
+                    .append(blocks.get(sample.getBelow()[i])).append(',')
+                    .append(blocks.get(sample.getAbove()[i])).append(',')
+                    .append(blocks.get(sample.getFront()[i])).append(',')
+                    .append(blocks.get(sample.getBehind()[i]));
+
+            row.append(System.lineSeparator());
+            writer.append(row);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.ghosteau.generativeterrain.dataset;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+public final class ShardWriter implements Closeable
+{
+    /*
+    - Streams harvested chunks into numbered, gzip-compressed shard files next to the data path, e.g. plains.00000.csv.gz.
+    - Every chunk is its own gzip member. A shard is still an ordinary .gz file that gzip tools and pandas read in one go,
+      while the manifest's byte offsets let a loader seek to and decompress a single chunk.
+    - A shard is closed and the next one started once it would grow past the size limit.
+    - The manifest (<name>.manifest.csv) gets one line per chunk: shard, chunk_x, chunk_z, offset, length.
+    - Refuses (FileAlreadyExistsException) to start where a harvest of the same name already left a manifest or shards.
+    - encode() is thread-safe and is where the time goes; append() must be called from one thread at a time.
+    */
+
+    public static final String MANIFEST_HEADER = "shard,chunk_x,chunk_z,offset,length";
+
+    private final File folder;
+    private final String baseName;
+    private final String extension;
+    private final boolean binary;
+    private final long maxShardBytes;
+    private final Writer manifest;
+
+    private FileChannel shard;
+    private String shardName;
+    private int shardIndex = -1;
+    private long shardBytes;
+    private long totalBytes;
+    private long chunks;
+
+    public ShardWriter(File path, long maxShardBytes) throws IOException
+    {
+        this.folder = path.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs())
+        {
+            throw new IOException("Could not create " + folder);
+        }
+
+        String name = path.getName();
+        int dot = name.lastIndexOf('.');
+        this.baseName = dot > 0 ? name.substring(0, dot) : name;
+        this.extension = dot > 0 ? name.substring(dot) : "";
+        this.binary = BinaryExporter.handles(name);
+        this.maxShardBytes = Math.max(1, maxShardBytes);
+
+        // An earlier harvest under the same name is never overwritten; its manifest would no longer match its shards
+        File manifestFile = new File(folder, baseName + ".manifest.csv");
+        if (manifestFile.exists()) throw new FileAlreadyExistsException(manifestFile.getPath());
+        File firstShard = new File(folder, shardName(0));
+        if (firstShard.exists()) throw new FileAlreadyExistsException(firstShard.getPath());
+
+        this.manifest = new BufferedWriter(new FileWriter(manifestFile));
+        manifest.write(MANIFEST_HEADER);
+        manifest.write(System.lineSeparator());
+    }
+
+    public byte[] encode(ChunkSample sample) throws IOException
+    {
+        // One complete gzip member holding this chunk's rows (CSV) or its .gtc file (binary)
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(binary ? 1 << 20 : 1 << 22);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 1 << 16))
+        {
+            if (binary)
+            {
+                BinaryExporter.write(sample, Channels.newChannel(gzip));
+            }
+            else
+            {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 1 << 16);
+                CsvExporter.writeRows(sample, writer);
+                writer.flush();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public void append(int chunkX, int chunkZ, byte[] member) throws IOException
+    {
+        if (shard == null || shardBytes + member.length > maxShardBytes && shardBytes > 0)
+        {
+            rotate();
+        }
+
+        long offset = shardBytes;
+        ByteBuffer buffer = ByteBuffer.wrap(member);
+        while (buffer.hasRemaining())
+        {
+            shard.write(buffer);
+        }
+        shardBytes += member.length;
+        totalBytes += member.length;
+        chunks++;
+
+        manifest.write(shardName + "," + chunkX + "," + chunkZ + "," + offset + "," + member.length);
+        manifest.write(System.lineSeparator());
+    }
+
+    private void rotate() throws IOException
+    {
+        closeShard();
+        shardIndex++;
+        shardName = shardName(shardIndex);
+        shard = FileChannel.open(new File(folder, shardName).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        shardBytes = 0;
+
+        if (!binary)
+        {
+            // CSV shards start with a member holding just the header, so each one reads as a complete CSV file
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes))
+            {
+                gzip.write((CsvExporter.HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            }
+            ByteBuffer header = ByteBuffer.wrap(bytes.toByteArray());
+            while (header.hasRemaining())
+            {
+                shard.write(header);
+            }
+            shardBytes += bytes.size();
+            totalBytes += bytes.size();
+        }
+    }
+
+    private String shardName(int index)
+    {
+        return baseName + "." + String.format("%05d", index) + extension + ".gz";
+    }
+
+    private void closeShard() throws IOException
+    {
+        if (shard != null)
+        {
+            shard.close();
+            shard = null;
+        }
+    }
+
+    public long getChunks()
+    {
+        return chunks;
+    }
+
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    public int getShardCount()
+    {
+        return shardIndex + 1;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            closeShard();
+        }
+        finally
+        {
+            manifest.close();
+        }
+    }
+}
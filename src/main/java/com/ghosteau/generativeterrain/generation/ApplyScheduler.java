@@ -0,0 +1,158 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+public final class ApplyScheduler
+{
+    /*
+    - One main-thread task that applies block changes for every active job, instead of one timer per job.
+    - Each tick it hands out small quanta of work to the jobs in round-robin order until its nanosecond budget is spent.
+    - The budget shrinks while the server's average tick time is above the threshold and grows back once it recovers.
+    */
+
+    public enum Status
+    {
+        WORKING,
+        WAITING,
+        FINISHED
+    }
+
+    public interface Task
+    {
+        // Applies at most maxBlocks positions; WAITING means there is nothing to do until more results arrive
+        Status apply(int maxBlocks);
+
+        boolean isActive();
+
+        void cancelled();
+
+        // apply threw; the task is already dropped and cleans up as it would when canceled, telling its owner why
+        void failed(Throwable error);
+    }
+
+    private static final int BLOCKS_PER_QUANTUM = 128;
+
+    private final Plugin plugin;
+    private final List<Task> tasks = new ArrayList<>();
+    private final long maxBudgetNanos;
+    private final long minBudgetNanos;
+    private final double msptThreshold;
+    private long budgetNanos;
+    private int cursor;
+    private BukkitTask timer;
+
+    public ApplyScheduler(Plugin plugin, double maxBudgetMillis, double minBudgetMillis, double msptThreshold)
+    {
+        this.plugin = plugin;
+        this.maxBudgetNanos = (long) (maxBudgetMillis * 1_000_000);
+        this.minBudgetNanos = Math.min(maxBudgetNanos, (long) (minBudgetMillis * 1_000_000));
+        this.msptThreshold = msptThreshold;
+        this.budgetNanos = maxBudgetNanos;
+    }
+
+    public void start()
+    {
+        timer = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop()
+    {
+        if (timer != null)
+        {
+            timer.cancel();
+            timer = null;
+        }
+        tasks.clear();
+    }
+
+    public void submit(Task task)
+    {
+        // Main thread only, like the rest of this class
+        tasks.add(task);
+    }
+
+    public int activeTasks()
+    {
+        return tasks.size();
+    }
+
+    public double getBudgetMillis()
+    {
+        return budgetNanos / 1_000_000.0;
+    }
+
+    private void adjustBudget()
+    {
+        double mspt = plugin.getServer().getAverageTickTime();
+        if (mspt > msptThreshold)
+        {
+            budgetNanos = Math.max(minBudgetNanos, (long) (budgetNanos * 0.8));
+        }
+        else
+        {
+            budgetNanos = Math.min(maxBudgetNanos, (long) (budgetNanos * 1.1) + 1);
+        }
+    }
+
+    private void tick()
+    {
+        if (tasks.isEmpty()) return;
+
+        adjustBudget();
+        long deadline = System.nanoTime() + budgetNanos;
+        int waitingInARow = 0;
+
+        while (!tasks.isEmpty() && System.nanoTime() < deadline)
+        {
+            if (cursor >= tasks.size()) cursor = 0;
+            Task task = tasks.get(cursor);
+
+            if (!task.isActive())
+            {
+                tasks.remove(cursor);
+                task.cancelled();
+                continue;
+            }
+
+            Status status;
+            try
+            {
+                status = task.apply(BLOCKS_PER_QUANTUM);
+            }
+            catch (RuntimeException e)
+            {
+                plugin.getLogger().log(Level.SEVERE, "Dropping terrain apply task after error", e);
+                tasks.remove(cursor);
+                waitingInARow = 0;
+                try
+                {
+                    task.failed(e);
+                }
+                catch (RuntimeException cleanup)
+                {
+                    plugin.getLogger().log(Level.SEVERE, "Error cleaning up failed terrain apply task", cleanup);
+                }
+                continue;
+            }
+
+            if (status == Status.FINISHED)
+            {
+                // The next task slides into this slot, so the cursor stays put
+                tasks.remove(cursor);
+                waitingInARow = 0;
+                continue;
+            }
+
+            cursor++;
+            waitingInARow = status == Status.WAITING ? waitingInARow + 1 : 0;
+
+            // Every task is waiting on inference; nothing more to do this tick
+            if (waitingInARow >= tasks.size()) break;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.ghosteau.generativeterrain.generation;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Biome;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class BlockPalette
+{
+    /*
+    - The block and biome id mappings the model was trained with, compiled once into primitive lookup tables.
+    - Block encoding indexes a float[] table by Material ordinal, decoding indexes a Material[] by class id.
+    - Biomes are a registry (not an enum) since 1.21.5, so their ids are kept by namespaced key instead of ordinal.
+    - Neither direction builds strings or boxes integers, so both are safe to call per voxel.
+    */
+
+    private final float[] blockFeatures;
+    private final Map<NamespacedKey, Float> biomeFeatures;
+    private final Material[] blockDecoder;
+
+    private BlockPalette(float[] blockFeatures, Map<NamespacedKey, Float> biomeFeatures, Material[] blockDecoder)
+    {
+        this.blockFeatures = blockFeatures;
+        this.biomeFeatures = biomeFeatures;
+        this.blockDecoder = blockDecoder;
+    }
+
+    public static BlockPalette load(File blockMappingFile, File biomeMappingFile, Logger logger)
+    {
+        float[] blockFeatures = new float[Material.values().length];
+        Map<NamespacedKey, Float> biomeFeatures = new HashMap<>();
+        Material[] blockDecoder = new Material[0];
+
+        // Block mapping: one pass fills both the class id -> Material decoder and the Material -> id encoder
+        try
+        {
+            JsonObject obj = readJson(blockMappingFile);
+            int maxId = -1;
+            for (String key : obj.keySet())
+            {
+                maxId = Math.max(maxId, Integer.parseInt(key));
+            }
+
+            blockDecoder = new Material[maxId + 1];
+            int decodable = 0;
+            for (Map.Entry<String, JsonElement> entry : obj.entrySet())
+            {
+                int index = Integer.parseInt(entry.getKey());
+                String blockName = entry.getValue().getAsString();
+
+                // Encoder keys are the exact enum names the training data was exported with
+                Material encoded = Material.getMaterial(blockName);
+                if (encoded != null)
+                {
+                    blockFeatures[encoded.ordinal()] = index;
+                }
+
+                Material mat = Material.matchMaterial(blockName);
+                if (mat != null && mat.isBlock())
+                {
+                    blockDecoder[index] = mat;
+                    decodable++;
+                }
+                else
+                {
+                    logger.warning("Invalid material in model mapping: " + blockName);
+                }
+            }
+            logger.info("Loaded " + decodable + " block mappings from JSON.");
+        }
+        catch (IOException | RuntimeException e)
+        {
+            logger.log(Level.SEVERE, "Failed to load block mapping", e);
+        }
+
+        try
+        {
+            // Keys are the biome names the training data was exported with ("PLAINS"), or namespaced keys for datapack biomes
+            JsonObject obj = readJson(biomeMappingFile);
+            for (Map.Entry<String, JsonElement> entry : obj.entrySet())
+            {
+                NamespacedKey key = NamespacedKey.fromString(entry.getKey().toLowerCase(Locale.ROOT));
+                if (key != null)
+                {
+                    biomeFeatures.put(key, (float) entry.getValue().getAsInt());
+                }
+                else
+                {
+                    logger.warning("Invalid biome in model mapping: " + entry.getKey());
+                }
+            }
+            logger.info("Loaded " + biomeFeatures.size() + " biome mappings from JSON.");
+        }
+        catch (IOException | RuntimeException e)
+        {
+            logger.log(Level.SEVERE, "Failed to load biome mapping", e);
+        }
+
+        return new BlockPalette(blockFeatures, biomeFeatures, blockDecoder);
+    }
+
+    public static BlockPalette of(Material[] blockDecoder)
+    {
+        // Palette without mapping files: class id i is blockDecoder[i] and every biome encodes as 0.
+        // Needs no server, so benchmarks and offline tools can build one from Material alone.
+        float[] blockFeatures = new float[Material.values().length];
+        for (int i = 0; i < blockDecoder.length; i++)
+        {
+            if (blockDecoder[i] != null) blockFeatures[blockDecoder[i].ordinal()] = i;
+        }
+        return new BlockPalette(blockFeatures, Map.of(), blockDecoder.clone());
+    }
+
+    private static JsonObject readJson(File jsonFile) throws IOException
+    {
+        try (InputStream is = new FileInputStream(jsonFile))
+        {
+            String json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            return JsonParser.parseString(json).getAsJsonObject();
+        }
+    }
+
+    public float blockFeature(Material blockType)
+    {
+        return blockFeatures[blockType.ordinal()];
+    }
+
+    public float biomeFeature(Biome biome)
+    {
+        // Sources without biome data (null) encode as 0
+        return biome != null ? biomeFeature(biome.getKey()) : 0.0f;
+    }
+
+    public float biomeFeature(NamespacedKey biome)
+    {
+        // Biomes the mapping doesn't name encode as 0
+        Float id = biomeFeatures.get(biome);
+        return id != null ? id : 0.0f;
+    }
+
+    public VoxelSource voxels(BlockSource source)
+    {
+        // Model-id view of a Bukkit block source for the encoder and diff; lookups stay per call, nothing is copied
+        return new VoxelSource()
+        {
+            @Override
+            public int getBlockId(int x, int y, int z)
+            {
+                return (int) blockFeature(source.getType(x, y, z));
+            }
+
+            @Override
+            public boolean isAir(int x, int y, int z)
+            {
+                return source.getType(x, y, z) == Material.AIR;
+            }
+
+            @Override
+            public int getLightLevel(int x, int y, int z)
+            {
+                return source.getLightLevel(x, y, z);
+            }
+
+            @Override
+            public int getBiomeId(int x, int y, int z)
+            {
+                return (int) biomeFeature(source.getBiome(x, y, z));
+            }
+        };
+    }
+
+    public int classCount()
+    {
+        return blockDecoder.length;
+    }
+
+    public int biomeCount()
+    {
+        // One past the highest biome id the model was trained with
+        int count = 1;
+        for (float id : biomeFeatures.values())
+        {
+            count = Math.max(count, (int) id + 1);
+        }
+        return count;
+    }
+
+    public Material decode(int classId)
+    {
+        if (classId < 0 || classId >= blockDecoder.length || blockDecoder[classId] == null)
+        {
+            return Material.AIR;
+        }
+
+        return blockDecoder[classId];
+    }
+}
@@ -0,0 +1,15 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+public interface BlockSource
+{
+    // Read-only view of one chunk that the feature encoder samples; local x and z may step one block outside it (-1 or 16).
+
+    Material getType(int x, int y, int z);
+
+    int getLightLevel(int x, int y, int z);
+
+    Biome getBiome(int x, int y, int z);
+}
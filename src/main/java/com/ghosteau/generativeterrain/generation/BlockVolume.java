@@ -0,0 +1,206 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+public final class BlockVolume
+{
+    /*
+    - Decoded model prediction for one full chunk column, stored as a flat short[] of class ids (palette indices).
+    - Layout is x-major, then y, then z; ChangeList.diff walks it in that order, and TerrainApplyTask writes the changes in it.
+    - Cells the model did not predict hold UNSET and are left untouched when the volume is applied.
+    */
+
+    public static final short UNSET = -1;
+
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final short[] classIds;
+
+    public BlockVolume(int width, int height, int depth)
+    {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.classIds = new short[width * height * depth];
+        Arrays.fill(classIds, UNSET);
+    }
+
+    public int get(int x, int y, int z)
+    {
+        return classIds[index(x, y, z)];
+    }
+
+    public int get(int index)
+    {
+        return classIds[index];
+    }
+
+    public void set(int x, int y, int z, int classId)
+    {
+        classIds[index(x, y, z)] = (short) classId;
+    }
+
+    public BlockVolume copy()
+    {
+        BlockVolume copy = new BlockVolume(width, height, depth);
+        System.arraycopy(classIds, 0, copy.classIds, 0, classIds.length);
+        return copy;
+    }
+
+    public static BlockVolume read(ShortBuffer source, int width, int height, int depth)
+    {
+        BlockVolume volume = new BlockVolume(width, height, depth);
+        source.get(volume.classIds);
+        return volume;
+    }
+
+    public void write(ShortBuffer target)
+    {
+        target.put(classIds);
+    }
+
+    public int index(int x, int y, int z)
+    {
+        return (x * height + y) * depth + z;
+    }
+
+    public int size()
+    {
+        return classIds.length;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public void decode(FloatBuffer logits, int firstBatchIndex, int numClasses, SlabLayout layout)
+    {
+        // Slabs of one column occupy consecutive batch entries starting at firstBatchIndex
+        if (layout.slabCount() == 1)
+        {
+            decodeArgmax(logits, firstBatchIndex, numClasses, layout.getModelHeight(), layout.slabStart(0));
+        }
+        else
+        {
+            decodeBlended(logits, firstBatchIndex, numClasses, layout);
+        }
+    }
+
+    public void decodeArgmax(FloatBuffer logits, int batchIndex, int numClasses, int modelHeight, int yOffset)
+    {
+        /*
+        - Reads channel-major [batch][class][x][y][z] logits and stores the best class of each voxel at volume row y = modelY + yOffset.
+        - Classes are the outer loop so every pass streams one contiguous block of the buffer; the running maxima stay small enough for cache.
+        */
+        final int voxels = width * modelHeight * depth;
+        final int batchBase = batchIndex * numClasses * voxels;
+        final float[] bestScore = new float[voxels];
+        final short[] bestClass = new short[voxels];
+
+        for (int i = 0; i < voxels; i++)
+        {
+            bestScore[i] = logits.get(batchBase + i);
+        }
+
+        for (int c = 1; c < numClasses; c++)
+        {
+            int classBase = batchBase + c * voxels;
+            for (int i = 0; i < voxels; i++)
+            {
+                float score = logits.get(classBase + i);
+                if (score > bestScore[i])
+                {
+                    bestScore[i] = score;
+                    bestClass[i] = (short) c;
+                }
+            }
+        }
+
+        // Copy into world height space, dropping model layers that fall outside the column
+        for (int x = 0; x < width; x++)
+        {
+            for (int modelY = 0; modelY < modelHeight; modelY++)
+            {
+                int y = modelY + yOffset;
+                if (y < 0 || y >= height) continue;
+
+                System.arraycopy(bestClass, (x * modelHeight + modelY) * depth, classIds, index(x, y, 0), depth);
+            }
+        }
+    }
+
+    private void decodeBlended(FloatBuffer logits, int firstBatchIndex, int numClasses, SlabLayout layout)
+    {
+        /*
+        - Same class-outer sweep as decodeArgmax, but each class score is first summed over every slab covering a voxel.
+        - Slab logits are scaled by the layout's tent weight, so overlapping predictions blend instead of the last slab winning.
+        */
+        final int modelHeight = layout.getModelHeight();
+        final int slabVoxels = width * modelHeight * depth;
+        final float[] score = new float[classIds.length];
+        final float[] bestScore = new float[classIds.length];
+        final short[] bestClass = new short[classIds.length];
+        final boolean[] covered = new boolean[classIds.length];
+        Arrays.fill(bestScore, Float.NEGATIVE_INFINITY);
+
+        for (int c = 0; c < numClasses; c++)
+        {
+            Arrays.fill(score, 0.0f);
+
+            for (int slab = 0; slab < layout.slabCount(); slab++)
+            {
+                int classBase = ((firstBatchIndex + slab) * numClasses + c) * slabVoxels;
+                int start = layout.slabStart(slab);
+
+                for (int x = 0; x < width; x++)
+                {
+                    for (int modelY = 0; modelY < modelHeight; modelY++)
+                    {
+                        int y = modelY + start;
+                        if (y < 0 || y >= height) continue;
+
+                        float w = layout.weight(modelY);
+                        int src = classBase + (x * modelHeight + modelY) * depth;
+                        int dst = index(x, y, 0);
+                        for (int z = 0; z < depth; z++)
+                        {
+                            score[dst + z] += w * logits.get(src + z);
+                            covered[dst + z] = true;
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < score.length; i++)
+            {
+                if (covered[i] && score[i] > bestScore[i])
+                {
+                    bestScore[i] = score[i];
+                    bestClass[i] = (short) c;
+                }
+            }
+        }
+
+        for (int i = 0; i < classIds.length; i++)
+        {
+            if (covered[i])
+            {
+                classIds[i] = bestClass[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ghosteau.generativeterrain.generation;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+public final class CancelToken
+{
+    /*
+    - Shared by every stage of one job: the encoder, TensorPool, TerrainModel and the apply loop all check it at a fine
+      granularity, and whichever stage notices it unwinds with a CancellationException carrying the reason.
+    - A session.run that is already in progress is stopped too: each run registers its RunOptions here and cancel() sets
+      their terminate flag, so ONNX Runtime abandons the run within a kernel or two instead of finishing the whole batch.
+    - The first reason wins ("canceled", "timed out ..."); later calls to cancel() are ignored.
+    */
+
+    private final Set<OrtSession.RunOptions> runs = new HashSet<>();
+    private volatile String reason;
+
+    public boolean cancel(String reason)
+    {
+        synchronized (this)
+        {
+            if (this.reason != null) return false;
+            this.reason = reason;
+
+            // Under the lock, so a run can't close its options while they're being terminated
+            for (OrtSession.RunOptions run : runs)
+            {
+                terminate(run);
+            }
+        }
+        return true;
+    }
+
+    public boolean isCancelled()
+    {
+        return reason != null;
+    }
+
+    public String getReason()
+    {
+        return reason;
+    }
+
+    public void throwIfCancelled()
+    {
+        String current = reason;
+        if (current != null) throw new CancellationException(current);
+    }
+
+    synchronized void register(OrtSession.RunOptions run)
+    {
+        // A run registered after the token was canceled is terminated before it starts
+        runs.add(run);
+        if (reason != null) terminate(run);
+    }
+
+    synchronized void unregister(OrtSession.RunOptions run)
+    {
+        runs.remove(run);
+    }
+
+    private static void terminate(OrtSession.RunOptions run)
+    {
+        try
+        {
+            run.setTerminate(true);
+        }
+        catch (OrtException ignored)
+        {
+            // The run then finishes normally and the next check picks up the cancellation
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+
+import java.util.Arrays;
+
+public final class ChangeList
+{
+    /*
+    - Sparse list of the blocks a prediction actually changes, computed off-thread against the captured chunk snapshot.
+    - Each entry packs the BlockVolume index (17 bits) and the class id (15 bits) into one int, in x/y/z walk order.
+    - sectionOrder() regroups the entries by 16-block section for consumers that work a section at a time.
+    */
+
+    private static final int CHUNK_WIDTH = 16;
+    private static final int CHUNK_DEPTH = 16;
+    private static final int COLUMN_HEIGHT = 384;
+    private static final int MIN_Y = -64;
+    private static final int INDEX_BITS = 17;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    private int[] entries;
+    private int size;
+
+    private ChangeList(int capacity)
+    {
+        entries = new int[capacity];
+    }
+
+    public static ChangeList diff(BlockVolume volume, ChunkSnapshot snapshot, BlockPalette palette)
+    {
+        ChangeList changes = new ChangeList(1024);
+
+        for (int x = 0; x < CHUNK_WIDTH; x++)
+        {
+            for (int y = 0; y < COLUMN_HEIGHT; y++)
+            {
+                for (int z = 0; z < CHUNK_DEPTH; z++)
+                {
+                    int index = volume.index(x, y, z);
+                    int classId = volume.get(index);
+                    if (classId == BlockVolume.UNSET) continue;
+
+                    // Only keep positions whose predicted block differs from what was there when the snapshot was taken
+                    Material predicted = palette.decode(classId);
+                    if (predicted != snapshot.getBlockType(x, y + MIN_Y, z))
+                    {
+                        changes.add(index, classId);
+                    }
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    public static ChangeList diff(BlockVolume volume, VoxelSource current)
+    {
+        // Bukkit-free variant for offline runs: compares model ids, so blocks outside the mapping (id 0 to the encoder)
+        // only count as changed when the prediction isn't class 0
+        ChangeList changes = new ChangeList(1024);
+
+        for (int x = 0; x < CHUNK_WIDTH; x++)
+        {
+            for (int y = 0; y < COLUMN_HEIGHT; y++)
+            {
+                for (int z = 0; z < CHUNK_DEPTH; z++)
+                {
+                    int index = volume.index(x, y, z);
+                    int classId = volume.get(index);
+                    if (classId == BlockVolume.UNSET) continue;
+
+                    if (classId != current.getBlockId(x, y + MIN_Y, z))
+                    {
+                        changes.add(index, classId);
+                    }
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    private void add(int index, int classId)
+    {
+        if (size == entries.length)
+        {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+
+        entries[size++] = (classId << INDEX_BITS) | index;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int[] sectionOrder()
+    {
+        // Entry positions grouped by section from the bottom up, walk order within a section, so consumers that work a
+        // section at a time (client block change packets) can take consecutive runs of it
+        int sections = COLUMN_HEIGHT >> 4;
+        int[] start = new int[sections + 1];
+        for (int i = 0; i < size; i++)
+        {
+            start[(row(i) >> 4) + 1]++;
+        }
+        for (int section = 0; section < sections; section++)
+        {
+            start[section + 1] += start[section];
+        }
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            order[start[row(i) >> 4]++] = i;
+        }
+        return order;
+    }
+
+    private int row(int i)
+    {
+        return ((entries[i] & INDEX_MASK) / CHUNK_DEPTH) % COLUMN_HEIGHT;
+    }
+
+    public int classId(int i)
+    {
+        return entries[i] >>> INDEX_BITS;
+    }
+
+    public int index(int i)
+    {
+        // Position as a BlockVolume index; entries are in ascending index order
+        return entries[i] & INDEX_MASK;
+    }
+
+    public int x(int i)
+    {
+        return (entries[i] & INDEX_MASK) / (COLUMN_HEIGHT * CHUNK_DEPTH);
+    }
+
+    public int y(int i)
+    {
+        // World Y, not the column row
+        return row(i) + MIN_Y;
+    }
+
+    public int z(int i)
+    {
+        return (entries[i] & INDEX_MASK) % CHUNK_DEPTH;
+    }
+}
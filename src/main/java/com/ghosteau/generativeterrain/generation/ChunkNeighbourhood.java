@@ -0,0 +1,151 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ChunkNeighbourhood implements BlockSource
+{
+    /*
+    - Immutable view of a chunk and its four axis-aligned neighbours, captured on the main thread in a single tick.
+    - Everything in here is safe to read from any thread, which is what lets feature extraction run off-thread.
+    - Local x and z coordinates may step one block outside the chunk (-1 or 16); those reads are served by the neighbour snapshots.
+    */
+
+    private static final int CHUNK_SIZE = 16;
+
+    private final ChunkSnapshot centre;
+    private final ChunkSnapshot west;
+    private final ChunkSnapshot east;
+    private final ChunkSnapshot north;
+    private final ChunkSnapshot south;
+
+    private ChunkNeighbourhood(ChunkSnapshot centre, ChunkSnapshot west, ChunkSnapshot east, ChunkSnapshot north, ChunkSnapshot south)
+    {
+        this.centre = centre;
+        this.west = west;
+        this.east = east;
+        this.north = north;
+        this.south = south;
+    }
+
+    public static ChunkNeighbourhood capture(Chunk chunk)
+    {
+        return capture(chunk, null);
+    }
+
+    public static ChunkNeighbourhood capture(Chunk chunk, Map<Long, ChunkSnapshot> recent)
+    {
+        // Must be called on the main thread; neighbours only need block types, so skip their heightmaps and biomes.
+        // Neighbours must be loaded already (ChunkTickets); a capture never loads one synchronously.
+        // When walking neighbouring chunks in order, recent snapshots are reused as neighbours instead of being captured again.
+        World world = chunk.getWorld();
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+
+        ChunkSnapshot centre = chunk.getChunkSnapshot(true, true, false);
+        if (recent != null)
+        {
+            recent.put(key(chunkX, chunkZ), centre);
+        }
+
+        return around(world, chunkX, chunkZ, centre, recent);
+    }
+
+    public static List<ChunkNeighbourhood> captureAll(List<Chunk> chunks)
+    {
+        // Main thread. Every chunk is captured in full first, so adjacent chunks serve as each other's neighbours; chunks around
+        // the edge are captured once however many of them they border. Each chunk is snapshotted once instead of up to five times.
+        Map<Long, ChunkSnapshot> captured = new HashMap<>(chunks.size() * 2);
+        List<ChunkSnapshot> centres = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks)
+        {
+            ChunkSnapshot centre = chunk.getChunkSnapshot(true, true, false);
+            captured.put(key(chunk.getX(), chunk.getZ()), centre);
+            centres.add(centre);
+        }
+
+        List<ChunkNeighbourhood> neighbourhoods = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            Chunk chunk = chunks.get(i);
+            neighbourhoods.add(around(chunk.getWorld(), chunk.getX(), chunk.getZ(), centres.get(i), captured));
+        }
+        return neighbourhoods;
+    }
+
+    private static ChunkNeighbourhood around(World world, int chunkX, int chunkZ, ChunkSnapshot centre, Map<Long, ChunkSnapshot> recent)
+    {
+        return new ChunkNeighbourhood(centre,
+                neighbour(world, chunkX - 1, chunkZ, recent),
+                neighbour(world, chunkX + 1, chunkZ, recent),
+                neighbour(world, chunkX, chunkZ - 1, recent),
+                neighbour(world, chunkX, chunkZ + 1, recent));
+    }
+
+    private static ChunkSnapshot neighbour(World world, int chunkX, int chunkZ, Map<Long, ChunkSnapshot> recent)
+    {
+        // Neighbour-only snapshots are remembered too, so a chunk bordering several captured chunks is read once
+        ChunkSnapshot snapshot = recent != null ? recent.get(key(chunkX, chunkZ)) : null;
+        if (snapshot == null)
+        {
+            if (!world.isChunkLoaded(chunkX, chunkZ))
+            {
+                throw new IllegalStateException("Neighbour chunk " + chunkX + ", " + chunkZ + " of " + world.getName() + " is not loaded");
+            }
+            snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+            if (recent != null) recent.put(key(chunkX, chunkZ), snapshot);
+        }
+        return snapshot;
+    }
+
+    private static long key(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public Material getType(int x, int y, int z)
+    {
+        if (x < 0) return west.getBlockType(x + CHUNK_SIZE, y, z);
+        if (x >= CHUNK_SIZE) return east.getBlockType(x - CHUNK_SIZE, y, z);
+        if (z < 0) return north.getBlockType(x, y, z + CHUNK_SIZE);
+        if (z >= CHUNK_SIZE) return south.getBlockType(x, y, z - CHUNK_SIZE);
+        return centre.getBlockType(x, y, z);
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        // Same as Block#getLightLevel minus the time-of-day sky darkening, which snapshots don't carry.
+        return Math.max(centre.getBlockSkyLight(x, y, z), centre.getBlockEmittedLight(x, y, z));
+    }
+
+    @Override
+    public Biome getBiome(int x, int y, int z)
+    {
+        return centre.getBiome(x, y, z);
+    }
+
+    public int getChunkX()
+    {
+        return centre.getX();
+    }
+
+    public int getChunkZ()
+    {
+        return centre.getZ();
+    }
+
+    public ChunkSnapshot getCentre()
+    {
+        return centre;
+    }
+}
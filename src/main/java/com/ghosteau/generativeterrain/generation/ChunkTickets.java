@@ -0,0 +1,132 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public final class ChunkTickets
+{
+    /*
+    - Loads a job's chunks through Paper's async chunk API and holds a plugin ticket on each one until the job releases it,
+      so a far-away chunk never means a blocking load in a command handler and loaded chunks can't unload before they're used.
+    - Tickets go through the plugin-wide TicketRegistry, so releasing this job's chunks never unticks a chunk another job holds.
+    - Neighbours are loaded along with each chunk, since capturing a ChunkNeighbourhood reads all four of them.
+    - With a bound, the least recently requested chunks give up their tickets first (sliding windows such as harvests).
+    - Main thread only; Paper completes the load futures on the main thread as well.
+    */
+
+    private final TicketRegistry registry;
+    private final World world;
+    private final LinkedHashMap<Long, CompletableFuture<Chunk>> loads;
+    private final Set<Long> ticketed = new HashSet<>();
+    private boolean released;
+
+    public ChunkTickets(TicketRegistry registry, World world)
+    {
+        this(registry, world, 0);
+    }
+
+    public ChunkTickets(TicketRegistry registry, World world, int maxHeld)
+    {
+        this.registry = registry;
+        this.world = world;
+        this.loads = new LinkedHashMap<Long, CompletableFuture<Chunk>>(64, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Chunk>> eldest)
+            {
+                if (maxHeld <= 0 || size() <= maxHeld) return false;
+                unticket(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    public CompletableFuture<Chunk> load(int chunkX, int chunkZ)
+    {
+        long key = key(chunkX, chunkZ);
+        CompletableFuture<Chunk> future = loads.get(key);
+        if (future != null) return future;
+
+        future = world.getChunkAtAsync(chunkX, chunkZ);
+        loads.put(key, future);
+
+        // Ticket the chunk once it's in; a load that was released or evicted while in flight is left without one
+        future.thenAccept(chunk ->
+        {
+            if (!released && loads.containsKey(key) && ticketed.add(key)) registry.acquire(chunk);
+        });
+        return future;
+    }
+
+    public CompletableFuture<Chunk> loadWithNeighbours(int chunkX, int chunkZ)
+    {
+        CompletableFuture<Chunk> centre = load(chunkX, chunkZ);
+        return CompletableFuture.allOf(centre, load(chunkX - 1, chunkZ), load(chunkX + 1, chunkZ),
+                load(chunkX, chunkZ - 1), load(chunkX, chunkZ + 1)).thenApply(ignored -> centre.join());
+    }
+
+    public CompletableFuture<List<Chunk>> loadAll(List<long[]> positions)
+    {
+        // Completes with the chunks in the given order once every chunk and neighbour is loaded
+        List<CompletableFuture<Chunk>> futures = new ArrayList<>(positions.size());
+        for (long[] position : positions)
+        {
+            futures.add(loadWithNeighbours((int) position[0], (int) position[1]));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored ->
+        {
+            List<Chunk> chunks = new ArrayList<>(futures.size());
+            for (CompletableFuture<Chunk> future : futures) chunks.add(future.join());
+            return chunks;
+        });
+    }
+
+    public Chunk getLoaded(int chunkX, int chunkZ)
+    {
+        // The chunk if its load through this instance has completed, otherwise null; never starts or waits for a load
+        CompletableFuture<Chunk> future = loads.get(key(chunkX, chunkZ));
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    public int held()
+    {
+        return loads.size();
+    }
+
+    public void releaseAll()
+    {
+        // Idempotent, so every way a job can end may call it
+        if (released) return;
+        released = true;
+
+        for (long key : ticketed)
+        {
+            registry.release(world, (int) (key >> 32), (int) key);
+        }
+        ticketed.clear();
+        loads.clear();
+    }
+
+    private void unticket(long key)
+    {
+        // Only chunks this instance actually ticketed are handed back; a load still in flight never gets a ticket
+        if (ticketed.remove(key))
+        {
+            registry.release(world, (int) (key >> 32), (int) key);
+        }
+    }
+
+    private static long key(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,146 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class FeatureEncoder
+{
+    /*
+    - Builds the 10-channel model input from a VoxelSource (captured chunk snapshots or seeded noise through BlockPalette.voxels, or exported chunks offline), never touching the live world.
+    - Works on model ids only and has no Bukkit dependency, so it also runs without a server.
+    - Work is split into x-slices on a dedicated fork-join pool; each slice writes a disjoint part of the tensor.
+    - With a CancelToken, slices stop after the model layer they are on once the job is canceled, and encode() throws.
+    - Features are written straight into a flat channel-major [batch][channel][x][y][z] buffer with absolute puts, ready to be wrapped by ONNX Runtime.
+    - Channels: 0 chunk biome, 1 block biome, 2 is-surface, 3 light, 4 left (-x), 5 right (+x), 6 below, 7 above, 8 front (+z), 9 behind (-z).
+    */
+
+    public static final int CHANNELS = 10;
+
+    private static final int CHUNK_WIDTH = 16;
+    private static final int CHUNK_DEPTH = 16;
+    private static final int MAX_Y = 319;
+    private static final int MIN_Y = -64;
+
+    private final ForkJoinPool pool;
+
+    public FeatureEncoder(int parallelism)
+    {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    public static int tensorSize(int batch, int modelHeight)
+    {
+        return batch * CHANNELS * CHUNK_WIDTH * modelHeight * CHUNK_DEPTH;
+    }
+
+    public static long[] tensorShape(int batch, int modelHeight)
+    {
+        return new long[]{batch, CHANNELS, CHUNK_WIDTH, modelHeight, CHUNK_DEPTH};
+    }
+
+    public void encode(FloatBuffer input, int batchIndex, VoxelSource chunk, float chunkBiome, int modelHeight, int baseY)
+    {
+        encode(input, batchIndex, chunk, chunkBiome, modelHeight, baseY, null);
+    }
+
+    public void encode(FloatBuffer input, int batchIndex, VoxelSource chunk, float chunkBiome, int modelHeight, int baseY, CancelToken token)
+    {
+        // baseY is the world Y that model layer 0 maps to; layers falling outside the world are zero-filled.
+        pool.invoke(new SliceTask(input, batchIndex, chunk, chunkBiome, modelHeight, baseY, token, 0, CHUNK_WIDTH));
+
+        // A canceled encode leaves the entry half written; it is never run, since the job unwinds from here
+        if (token != null) token.throwIfCancelled();
+    }
+
+    private void encodeSlice(FloatBuffer input, int batchIndex, VoxelSource chunk, float chunkBiome, int modelHeight, int baseY,
+                             CancelToken token, int x)
+    {
+        // Distance between the same voxel in two consecutive channels
+        final int channelStride = CHUNK_WIDTH * modelHeight * CHUNK_DEPTH;
+        final int sliceBase = batchIndex * CHANNELS * channelStride + x * modelHeight * CHUNK_DEPTH;
+
+        for (int modelY = 0; modelY < modelHeight; modelY++)
+        {
+            if (token != null && token.isCancelled()) return;
+
+            int worldY = baseY + modelY;
+
+            for (int z = 0; z < CHUNK_DEPTH; z++)
+            {
+                int i = sliceBase + modelY * CHUNK_DEPTH + z;
+
+                // Skip positions outside world bounds; pooled buffers are reused, so these must still be cleared
+                if (worldY < MIN_Y || worldY > MAX_Y)
+                {
+                    for (int c = 0; c < CHANNELS; c++)
+                    {
+                        input.put(i + c * channelStride, 0.0f);
+                    }
+
+                    continue;
+                }
+
+                boolean hasAbove = worldY < MAX_Y;
+                boolean hasBelow = worldY > MIN_Y;
+
+                input.put(i, chunkBiome);
+                input.put(i + channelStride, chunk.getBiomeId(x, worldY, z));
+                input.put(i + 2 * channelStride, hasAbove && chunk.isAir(x, worldY + 1, z) ? 1.0f : 0.0f);
+                input.put(i + 3 * channelStride, chunk.getLightLevel(x, worldY, z) / 15.0f);
+                input.put(i + 4 * channelStride, chunk.getBlockId(x - 1, worldY, z));
+                input.put(i + 5 * channelStride, chunk.getBlockId(x + 1, worldY, z));
+                input.put(i + 6 * channelStride, hasBelow ? chunk.getBlockId(x, worldY - 1, z) : 0.0f);
+                input.put(i + 7 * channelStride, hasAbove ? chunk.getBlockId(x, worldY + 1, z) : 0.0f);
+                input.put(i + 8 * channelStride, chunk.getBlockId(x, worldY, z + 1));
+                input.put(i + 9 * channelStride, chunk.getBlockId(x, worldY, z - 1));
+            }
+        }
+    }
+
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    private final class SliceTask extends RecursiveAction
+    {
+        private final FloatBuffer input;
+        private final int batchIndex;
+        private final VoxelSource chunk;
+        private final float chunkBiome;
+        private final int modelHeight;
+        private final int baseY;
+        private final CancelToken token;
+        private final int fromX;
+        private final int toX;
+
+        private SliceTask(FloatBuffer input, int batchIndex, VoxelSource chunk, float chunkBiome, int modelHeight, int baseY, CancelToken token,
+                          int fromX, int toX)
+        {
+            this.input = input;
+            this.batchIndex = batchIndex;
+            this.chunk = chunk;
+            this.chunkBiome = chunkBiome;
+            this.modelHeight = modelHeight;
+            this.baseY = baseY;
+            this.token = token;
+            this.fromX = fromX;
+            this.toX = toX;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (toX - fromX == 1)
+            {
+                encodeSlice(input, batchIndex, chunk, chunkBiome, modelHeight, baseY, token, fromX);
+                return;
+            }
+
+            int mid = (fromX + toX) >>> 1;
+            invokeAll(new SliceTask(input, batchIndex, chunk, chunkBiome, modelHeight, baseY, token, fromX, mid),
+                    new SliceTask(input, batchIndex, chunk, chunkBiome, modelHeight, baseY, token, mid, toX));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Chunk;
+
+public final class GeneratedChunk
+{
+    // A decoded prediction and its precomputed change list, waiting to be written into its chunk by the apply stage.
+
+    private final Chunk chunk;
+    private final BlockVolume volume;
+    private final ChangeList changes;
+
+    public GeneratedChunk(Chunk chunk, BlockVolume volume, ChangeList changes)
+    {
+        this.chunk = chunk;
+        this.volume = volume;
+        this.changes = changes;
+    }
+
+    public Chunk getChunk()
+    {
+        return chunk;
+    }
+
+    public BlockVolume getVolume()
+    {
+        return volume;
+    }
+
+    public ChangeList getChanges()
+    {
+        return changes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ghosteau.generativeterrain.generation;
+
+public final class HilbertWalk
+{
+    /*
+    - Visits every chunk of a rectangle in Hilbert curve order, so consecutive chunks are neighbours and share region files and snapshots.
+    - The curve covers the smallest power-of-two square around the rectangle; curve cells outside the rectangle are skipped.
+    - Skipping works on whole blocks of the curve: the index range [m * 4^k, (m + 1) * 4^k) always fills one aligned 2^k square,
+      so a block whose square misses the rectangle is stepped over at once. Thin areas don't walk their empty square cell by cell.
+    - The position along the curve is a single number, which is all a checkpoint needs to resume the walk.
+    */
+
+    private final int minX;
+    private final int minZ;
+    private final int width;
+    private final int depth;
+    private final int order;
+    private final long length;
+    private long index;
+    private int chunkX;
+    private int chunkZ;
+
+    public HilbertWalk(int minX, int minZ, int maxX, int maxZ, long startIndex)
+    {
+        this.minX = minX;
+        this.minZ = minZ;
+        this.width = maxX - minX + 1;
+        this.depth = maxZ - minZ + 1;
+
+        int side = 1;
+        while (side < Math.max(width, depth))
+        {
+            side <<= 1;
+        }
+        this.order = side;
+        this.length = (long) side * side;
+        this.index = startIndex;
+    }
+
+    public boolean next()
+    {
+        // Advances to the next curve cell inside the rectangle; false once the curve is exhausted
+        while (index < length)
+        {
+            long cell = index;
+            long d = cell;
+            int x = 0;
+            int z = 0;
+            for (int s = 1; s < order; s <<= 1)
+            {
+                int rx = (int) (1 & (d >>> 1));
+                int rz = (int) (1 & (d ^ rx));
+                if (rz == 0)
+                {
+                    if (rx == 1)
+                    {
+                        x = s - 1 - x;
+                        z = s - 1 - z;
+                    }
+                    int swap = x;
+                    x = z;
+                    z = swap;
+                }
+                x += s * rx;
+                z += s * rz;
+                d >>>= 2;
+            }
+
+            if (x < width && z < depth)
+            {
+                index = cell + 1;
+                chunkX = minX + x;
+                chunkZ = minZ + z;
+                return true;
+            }
+
+            // Grow the skipped block while the cell starts a larger aligned block whose square still lies outside the rectangle
+            int k = 0;
+            while ((1 << (k + 1)) <= order && (cell & ((1L << (2 * (k + 1))) - 1)) == 0
+                    && ((x >> (k + 1)) << (k + 1) >= width || (z >> (k + 1)) << (k + 1) >= depth))
+            {
+                k++;
+            }
+            index = cell + (1L << (2 * k));
+        }
+
+        return false;
+    }
+
+    public int getChunkX()
+    {
+        return chunkX;
+    }
+
+    public int getChunkZ()
+    {
+        return chunkZ;
+    }
+
+    public long getIndex()
+    {
+        // Curve position just after the current chunk; a walk started here continues with the following chunk
+        return index;
+    }
+
+    public long chunkCount()
+    {
+        return (long) width * depth;
+    }
+}
@@ -0,0 +1,378 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class InferenceCache
+{
+    /*
+    - Content-addressed cache of decoded predictions: the key is a 64-bit hash of a chunk's encoded input tensor plus the model identity.
+    - An in-memory LRU tier is bounded by bytes; an optional disk tier keeps one file per volume under the data folder and reads them back memory-mapped.
+    - Entries are written through to disk when they are stored, so a volume dropped from memory can still be served from disk later.
+    - Identical input means identical output, so a hit can skip inference altogether without any invalidation logic beyond the model identity.
+    - Cached volumes are never handed out: get() returns a copy and put() stores one, so a caller changing its volume can't alter
+      what later hits see.
+    */
+
+    private static final String FILE_SUFFIX = ".vol";
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final Logger logger;
+    private final long maxMemoryBytes;
+    private final File diskFolder;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, BlockVolume> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public InferenceCache(long maxMemoryBytes, File diskFolder, long maxDiskBytes, Logger logger)
+    {
+        // diskFolder may be null to keep the cache in memory only
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.diskFolder = diskFolder;
+        this.maxDiskBytes = maxDiskBytes;
+        this.logger = logger;
+
+        if (diskFolder != null)
+        {
+            loadDiskIndex();
+        }
+    }
+
+    public static long hash(FloatBuffer input, int offset, int length, SlabLayout layout)
+    {
+        // Two interleaved multiply-rotate lanes over the raw float bits, finished with a murmur3 avalanche
+        long h1 = 0x9E3779B97F4A7C15L ^ layout.getModelHeight();
+        long h2 = 0xC2B2AE3D27D4EB4FL ^ layout.slabCount();
+        for (int slab = 0; slab < layout.slabCount(); slab++)
+        {
+            h1 = mix(h1, layout.slabStart(slab));
+        }
+
+        int end = offset + length;
+        int i = offset;
+        for (; i + 1 < end; i += 2)
+        {
+            h1 = mix(h1, Float.floatToRawIntBits(input.get(i)));
+            h2 = mix(h2, Float.floatToRawIntBits(input.get(i + 1)));
+        }
+        if (i < end)
+        {
+            h1 = mix(h1, Float.floatToRawIntBits(input.get(i)));
+        }
+
+        return avalanche(h1 ^ Long.rotateLeft(h2, 29) ^ length);
+    }
+
+    private static long mix(long h, int value)
+    {
+        h ^= value & 0xFFFFFFFFL;
+        h *= 0x9E3779B97F4A7C15L;
+        return Long.rotateLeft(h, 31);
+    }
+
+    private static long avalanche(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    public static String key(TerrainModel model, long hash)
+    {
+        // Called per chunk, so the file-name-safe identity and the zero-padded hex hash are built by hand rather than by
+        // regex and String.format
+        String identity = model.getIdentity();
+        StringBuilder key = new StringBuilder(identity.length() + 17);
+        for (int i = 0; i < identity.length(); i++)
+        {
+            char c = identity.charAt(i);
+            boolean safe = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-';
+            key.append(safe ? c : '_');
+        }
+        key.append('-');
+
+        String hex = Long.toHexString(hash);
+        for (int i = hex.length(); i < 16; i++)
+        {
+            key.append('0');
+        }
+        return key.append(hex).toString();
+    }
+
+    public BlockVolume get(String key, int width, int height, int depth)
+    {
+        synchronized (memory)
+        {
+            BlockVolume volume = memory.get(key);
+            if (volume != null)
+            {
+                memoryHits.incrementAndGet();
+                return volume.copy();
+            }
+        }
+
+        BlockVolume volume = diskFolder != null ? readFromDisk(key, width, height, depth) : null;
+        if (volume == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        diskHits.incrementAndGet();
+        putInMemory(key, volume.copy());
+        return volume;
+    }
+
+    public void put(String key, BlockVolume volume)
+    {
+        putInMemory(key, volume.copy());
+        if (diskFolder != null)
+        {
+            writeToDisk(key, volume);
+        }
+    }
+
+    private void putInMemory(String key, BlockVolume volume)
+    {
+        long bytes = (long) volume.size() * Short.BYTES;
+        if (bytes > maxMemoryBytes) return;
+
+        synchronized (memory)
+        {
+            BlockVolume previous = memory.put(key, volume);
+            if (previous != null)
+            {
+                memoryBytes -= (long) previous.size() * Short.BYTES;
+            }
+            memoryBytes += bytes;
+
+            // Drop least recently used volumes until the tier fits its budget again
+            Iterator<BlockVolume> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext())
+            {
+                memoryBytes -= (long) eldest.next().size() * Short.BYTES;
+                eldest.remove();
+            }
+        }
+    }
+
+    private BlockVolume readFromDisk(String key, int width, int height, int depth)
+    {
+        synchronized (disk)
+        {
+            // Touch the entry so it counts as recently used
+            if (disk.get(key) == null) return null;
+        }
+
+        File file = new File(diskFolder, key + FILE_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt() != width || mapped.getInt() != height || mapped.getInt() != depth)
+            {
+                return null;
+            }
+
+            return BlockVolume.read(mapped.asShortBuffer(), width, height, depth);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Missing, truncated or concurrently evicted files are just misses
+            logger.fine("Could not read cached volume " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, BlockVolume volume)
+    {
+        long bytes = HEADER_BYTES + (long) volume.size() * Short.BYTES;
+        if (bytes > maxDiskBytes) return;
+
+        synchronized (disk)
+        {
+            if (disk.containsKey(key)) return;
+        }
+
+        File file = new File(diskFolder, key + FILE_SUFFIX);
+        File temp = new File(diskFolder, key + FILE_SUFFIX + ".tmp");
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(volume.getWidth()).putInt(volume.getHeight()).putInt(volume.getDepth());
+            buffer.position(HEADER_BYTES);
+            volume.write(buffer.asShortBuffer());
+            buffer.rewind();
+
+            // Write to a temporary file first so readers never map a half-written volume
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+            {
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not write cached volume " + file.getName(), e);
+            temp.delete();
+            return;
+        }
+
+        synchronized (disk)
+        {
+            disk.put(key, bytes);
+            diskBytes += bytes;
+            evictDisk();
+        }
+    }
+
+    private void evictDisk()
+    {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext())
+        {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(diskFolder, entry.getKey() + FILE_SUFFIX).delete();
+            diskBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private void loadDiskIndex()
+    {
+        if (!diskFolder.isDirectory() && !diskFolder.mkdirs())
+        {
+            logger.warning("Could not create inference cache folder " + diskFolder + ".");
+            return;
+        }
+
+        File[] files = diskFolder.listFiles();
+        if (files == null) return;
+
+        // Oldest files first, so the access-ordered index starts out in least recently written order
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        synchronized (disk)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.endsWith(FILE_SUFFIX + ".tmp"))
+                {
+                    file.delete();
+                }
+                else if (name.endsWith(FILE_SUFFIX))
+                {
+                    disk.put(name.substring(0, name.length() - FILE_SUFFIX.length()), file.length());
+                    diskBytes += file.length();
+                }
+            }
+            evictDisk();
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (memory)
+        {
+            memory.clear();
+            memoryBytes = 0;
+        }
+
+        if (diskFolder != null)
+        {
+            synchronized (disk)
+            {
+                for (String key : disk.keySet())
+                {
+                    new File(diskFolder, key + FILE_SUFFIX).delete();
+                }
+                disk.clear();
+                diskBytes = 0;
+            }
+        }
+
+        memoryHits.set(0);
+        diskHits.set(0);
+        misses.set(0);
+    }
+
+    public long getMemoryHits()
+    {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits()
+    {
+        return diskHits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public boolean hasDiskTier()
+    {
+        return diskFolder != null;
+    }
+
+    public int memoryEntries()
+    {
+        synchronized (memory)
+        {
+            return memory.size();
+        }
+    }
+
+    public long memoryBytes()
+    {
+        synchronized (memory)
+        {
+            return memoryBytes;
+        }
+    }
+
+    public int diskEntries()
+    {
+        synchronized (disk)
+        {
+            return disk.size();
+        }
+    }
+
+    public long diskBytes()
+    {
+        synchronized (disk)
+        {
+            return diskBytes;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class InferenceService
+{
+    /*
+    - Plugin-owned pool of inference workers fed from a bounded priority queue, replacing the shared Bukkit async pool.
+    - Jobs with a lower priority value run first; equal priorities run in submission order.
+    - Admission fails when the queue is full, or when the job's estimated memory would push queued and running jobs over the heap budget.
+    - A caller can reserve() a place (queue slot and memory) before doing the main-thread work a job needs, so a refused request
+      costs nothing; the reservation is then either submitted with its job or released.
+    */
+
+    public enum Admission
+    {
+        ACCEPTED,
+        QUEUE_FULL,
+        OVER_BUDGET
+    }
+
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private int reservedSlots; // guarded by this
+    private final int queueCapacity;
+    private final long heapBudgetBytes;
+    private final PipelineMetrics metrics;
+    private final Logger logger;
+    private volatile boolean running = true;
+
+    public InferenceService(int workerCount, int queueCapacity, long heapBudgetBytes, PipelineMetrics metrics, Logger logger)
+    {
+        this.queueCapacity = queueCapacity;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.metrics = metrics;
+        this.logger = logger;
+
+        for (int i = 0; i < workerCount; i++)
+        {
+            Thread worker = new Thread(this::workLoop, "GenerativeTerrain-Inference-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public synchronized Admission submit(Job job)
+    {
+        Reservation reservation = reserve(job.estimatedBytes);
+        if (reservation.admission == Admission.ACCEPTED) submit(reservation, job);
+        return reservation.admission;
+    }
+
+    public synchronized Reservation reserve(long estimatedBytes)
+    {
+        if (queue.size() + reservedSlots >= queueCapacity)
+        {
+            return new Reservation(Admission.QUEUE_FULL, 0);
+        }
+
+        if (reservedBytes.get() + estimatedBytes > heapBudgetBytes)
+        {
+            return new Reservation(Admission.OVER_BUDGET, 0);
+        }
+
+        reservedSlots++;
+        reservedBytes.addAndGet(estimatedBytes);
+        return new Reservation(Admission.ACCEPTED, estimatedBytes);
+    }
+
+    public synchronized void submit(Reservation reservation, Job job)
+    {
+        // The job takes over the reservation's slot; its memory estimate replaces the reserved amount
+        if (reservation.admission != Admission.ACCEPTED || reservation.spent)
+        {
+            throw new IllegalStateException("Reservation is not usable: " + reservation.admission);
+        }
+
+        reservation.spent = true;
+        reservedSlots--;
+        reservedBytes.addAndGet(job.estimatedBytes - reservation.bytes);
+        job.sequence = sequence.incrementAndGet();
+        job.queueWait = metrics != null ? metrics.start(PipelineMetrics.Stage.QUEUE_WAIT) : null;
+        queue.add(job);
+    }
+
+    public synchronized void release(Reservation reservation)
+    {
+        // Gives back a reservation that won't be submitted
+        if (reservation.admission != Admission.ACCEPTED || reservation.spent) return;
+
+        reservation.spent = true;
+        reservedSlots--;
+        reservedBytes.addAndGet(-reservation.bytes);
+    }
+
+    public int queuePosition(Job job)
+    {
+        // 1-based position among waiting jobs, or 0 once the job has been picked up by a worker
+        if (!queue.contains(job)) return 0;
+
+        int position = 1;
+        for (Job other : queue)
+        {
+            if (other != job && other.compareTo(job) < 0) position++;
+        }
+
+        return position;
+    }
+
+    public boolean remove(Job job)
+    {
+        // Drops a job that hasn't started yet and gives back its memory reservation
+        if (queue.remove(job))
+        {
+            reservedBytes.addAndGet(-job.estimatedBytes);
+            return true;
+        }
+
+        return false;
+    }
+
+    public int queuedJobs()
+    {
+        return queue.size();
+    }
+
+    public long reservedBytes()
+    {
+        return reservedBytes.get();
+    }
+
+    public long heapBudgetBytes()
+    {
+        return heapBudgetBytes;
+    }
+
+    private void workLoop()
+    {
+        while (running)
+        {
+            Job job;
+            try
+            {
+                job = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            if (job.queueWait != null) job.queueWait.end(0);
+
+            try
+            {
+                job.task.run();
+            }
+            catch (Throwable t)
+            {
+                logger.log(Level.SEVERE, "Uncaught error in inference job", t);
+            }
+            finally
+            {
+                reservedBytes.addAndGet(-job.estimatedBytes);
+            }
+        }
+    }
+
+    public synchronized void shutdown()
+    {
+        running = false;
+        queue.clear();
+        reservedSlots = 0;
+        reservedBytes.set(0);
+        for (Thread worker : workers)
+        {
+            worker.interrupt();
+        }
+    }
+
+    public static final class Reservation
+    {
+        private final Admission admission;
+        private final long bytes;
+        private boolean spent; // guarded by the service
+
+        private Reservation(Admission admission, long bytes)
+        {
+            this.admission = admission;
+            this.bytes = bytes;
+        }
+
+        public Admission getAdmission()
+        {
+            return admission;
+        }
+    }
+
+    public static final class Job implements Comparable<Job>
+    {
+        private final int priority;
+        private final long estimatedBytes;
+        private final Runnable task;
+        private long sequence;
+        private PipelineMetrics.Span queueWait;
+
+        public Job(int priority, long estimatedBytes, Runnable task)
+        {
+            this.priority = priority;
+            this.estimatedBytes = estimatedBytes;
+            this.task = task;
+        }
+
+        public long getEstimatedBytes()
+        {
+            return estimatedBytes;
+        }
+
+        @Override
+        public int compareTo(Job other)
+        {
+            if (priority != other.priority) return Integer.compare(priority, other.priority);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
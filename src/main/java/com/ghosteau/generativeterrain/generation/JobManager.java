@@ -0,0 +1,406 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public final class JobManager
+{
+    /*
+    - Every interactive generation or undo job, by id: its owner, its chunks, its state and whether it is still wanted.
+    - Players may run several jobs at once, up to a quota.
+    - Jobs claim their chunks in one FIFO per world and chunk when submitted, and only start once they head all of their
+      queues, so overlapping jobs run one after another and a later job snapshots what the earlier one wrote. Claims are
+      taken in submission order in a single step, so two jobs can never wait on each other.
+    - A chunk that an identical job (same model and layout) already has in flight is merged into that job instead of being
+      claimed again: inference runs once, and the requester follows that job and is told when it is done.
+    - Each job carries a CancelToken that every pipeline stage checks. A running job also gets a deadline; when it passes, the
+      job is canceled exactly as if its owner had done it, including terminating a session.run in progress.
+    */
+
+    public static final String CANCELED = "canceled";
+    private static final String FINISHED = "finished";
+
+    public enum State
+    {
+        LOADING("loading chunks"),
+        WAITING("waiting for an overlapping job"),
+        RUNNING("generating"),
+        UNDOING("undoing");
+
+        private final String label;
+
+        State(String label)
+        {
+            this.label = label;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+    }
+
+    private final int maxJobsPerPlayer;
+    private final long timeoutMillis;
+    private final ScheduledExecutorService deadlines;
+    private final Map<Integer, Job> jobs = new LinkedHashMap<>();
+    private final Map<Claim, ArrayDeque<Job>> claims = new HashMap<>();
+    private final Map<String, Job> inFlight = new HashMap<>();
+    private int nextId = 1;
+
+    public JobManager(int maxJobsPerPlayer, long timeoutMillis)
+    {
+        // timeoutMillis <= 0 lets jobs run for as long as they take
+        this.maxJobsPerPlayer = Math.max(1, maxJobsPerPlayer);
+        this.timeoutMillis = timeoutMillis;
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "GenerativeTerrain-Deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Submission submit(UUID owner, String signature, UUID world, List<long[]> chunks, String description)
+    {
+        return submit(owner, signature, Collections.singletonMap(world, chunks), description);
+    }
+
+    public synchronized Submission submit(UUID owner, String signature, Map<UUID, List<long[]>> chunks, String description)
+    {
+        // chunks are x and z pairs per world UID; signature identifies the inference a chunk gets (model and layout) and
+        // null never merges (undo, commits)
+        List<long[]> remaining = new ArrayList<>();
+        List<Claim> claimed = new ArrayList<>();
+        Map<Job, Integer> joined = new LinkedHashMap<>();
+        int requested = 0;
+        for (Map.Entry<UUID, List<long[]>> world : chunks.entrySet())
+        {
+            for (long[] chunk : world.getValue())
+            {
+                requested++;
+                Claim claim = new Claim(world.getKey(), key(chunk));
+                Job running = signature != null ? inFlight.get(signature + "@" + claim) : null;
+                if (running != null && running.isActive())
+                {
+                    joined.merge(running, 1, Integer::sum);
+                }
+                else
+                {
+                    remaining.add(chunk);
+                    claimed.add(claim);
+                }
+            }
+        }
+
+        // A fully merged request needs no room of its own; one turned away by the quota follows nobody's jobs either
+        boolean merged = remaining.isEmpty() && requested > 0;
+        if (!merged && jobsOf(owner).size() >= maxJobsPerPlayer)
+        {
+            return null;
+        }
+        for (Job running : joined.keySet())
+        {
+            running.addFollower(owner);
+        }
+        if (merged)
+        {
+            return new Submission(null, joined);
+        }
+
+        Job job = new Job(nextId++, owner, signature, remaining, claimed, description);
+        jobs.put(job.id, job);
+        for (Claim claim : claimed)
+        {
+            claims.computeIfAbsent(claim, k -> new ArrayDeque<>()).add(job);
+            if (signature != null) inFlight.put(signature + "@" + claim, job);
+        }
+
+        // Nothing ahead of it: the job may start as soon as its chunks are loaded
+        if (headsAllClaims(job)) job.ready.complete(null);
+        return new Submission(job, joined);
+    }
+
+    public synchronized int getMaxJobsPerPlayer()
+    {
+        return maxJobsPerPlayer;
+    }
+
+    public synchronized Job get(int id)
+    {
+        return jobs.get(id);
+    }
+
+    public synchronized List<Job> all()
+    {
+        return new ArrayList<>(jobs.values());
+    }
+
+    public synchronized List<Job> jobsOf(UUID owner)
+    {
+        List<Job> owned = new ArrayList<>();
+        for (Job job : jobs.values())
+        {
+            if (job.owner.equals(owner)) owned.add(job);
+        }
+        return owned;
+    }
+
+    public CompletableFuture<Void> awaitChunks(Job job)
+    {
+        // Completes once every earlier job on these chunks has finished, or exceptionally if this job is canceled first
+        if (!job.ready.isDone()) job.state = State.WAITING;
+        return job.ready;
+    }
+
+    public void start(Job job)
+    {
+        // The job's chunks are loaded and it heads all of their queues; its deadline runs from here
+        job.state = State.RUNNING;
+        if (timeoutMillis > 0)
+        {
+            job.deadline = deadlines.schedule(() -> cancel(job, "timed out after " + (timeoutMillis / 1000) + " s"),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void cancel(Job job)
+    {
+        cancel(job, CANCELED);
+    }
+
+    public void cancel(Job job, String reason)
+    {
+        if (!job.token.cancel(reason)) return;
+
+        Runnable action = job.cancelAction;
+        if (action != null) action.run();
+
+        // A job waiting for its chunks is woken so it can clean up; running jobs notice the flag themselves
+        job.ready.completeExceptionally(new CancellationException("Job " + job.id + " " + reason));
+    }
+
+    public void finish(Job job)
+    {
+        // Every job ends here exactly once, finished or canceled; the jobs queued behind it may then start
+        List<Job> started = new ArrayList<>();
+        synchronized (this)
+        {
+            if (jobs.remove(job.id) == null) return;
+            job.token.cancel(FINISHED);
+            ScheduledFuture<?> deadline = job.deadline;
+            if (deadline != null) deadline.cancel(false);
+
+            Set<Job> behind = new LinkedHashSet<>();
+            for (Claim claim : job.claims)
+            {
+                ArrayDeque<Job> queue = claims.get(claim);
+                if (queue != null)
+                {
+                    queue.remove(job);
+                    if (queue.isEmpty()) claims.remove(claim);
+                    else behind.add(queue.peek());
+                }
+                if (job.signature != null) inFlight.remove(job.signature + "@" + claim, job);
+            }
+
+            for (Job next : behind)
+            {
+                if (!next.ready.isDone() && headsAllClaims(next)) started.add(next);
+            }
+        }
+
+        for (Job next : started)
+        {
+            next.ready.complete(null);
+        }
+    }
+
+    public void shutdown()
+    {
+        deadlines.shutdownNow();
+    }
+
+    private boolean headsAllClaims(Job job)
+    {
+        for (Claim claim : job.claims)
+        {
+            ArrayDeque<Job> queue = claims.get(claim);
+            if (queue != null && queue.peek() != job) return false;
+        }
+        return true;
+    }
+
+    private static long key(long[] chunk)
+    {
+        return (chunk[0] << 32) | (chunk[1] & 0xFFFFFFFFL);
+    }
+
+    private static final class Claim
+    {
+        // One chunk of one world; the same x and z in two worlds are different claims
+        private final UUID world;
+        private final long chunk;
+
+        private Claim(UUID world, long chunk)
+        {
+            this.world = world;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Claim)) return false;
+            Claim claim = (Claim) other;
+            return chunk == claim.chunk && world.equals(claim.world);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * world.hashCode() + Long.hashCode(chunk);
+        }
+
+        @Override
+        public String toString()
+        {
+            return world + ":" + chunk;
+        }
+    }
+
+    public static final class Job
+    {
+        private final int id;
+        private final UUID owner;
+        private final String signature;
+        private final List<long[]> chunks;
+        private final List<Claim> claims;
+        private final String description;
+        private final CancelToken token = new CancelToken();
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final List<UUID> followers = new CopyOnWriteArrayList<>();
+        private final long started = System.currentTimeMillis();
+        private volatile State state = State.LOADING;
+        private volatile Runnable cancelAction;
+        private volatile ScheduledFuture<?> deadline;
+
+        private Job(int id, UUID owner, String signature, List<long[]> chunks, List<Claim> claims, String description)
+        {
+            this.id = id;
+            this.owner = owner;
+            this.signature = signature;
+            this.chunks = Collections.unmodifiableList(chunks);
+            this.claims = claims;
+            this.description = description;
+        }
+
+        private void addFollower(UUID player)
+        {
+            if (!player.equals(owner) && !followers.contains(player)) followers.add(player);
+        }
+
+        public int getId()
+        {
+            return id;
+        }
+
+        public UUID getOwner()
+        {
+            return owner;
+        }
+
+        public List<long[]> getChunks()
+        {
+            // Chunk x and z pairs; only the chunks this job claimed, not the ones merged into other jobs
+            return chunks;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        public List<UUID> getFollowers()
+        {
+            return followers;
+        }
+
+        public long getStarted()
+        {
+            return started;
+        }
+
+        public boolean isActive()
+        {
+            return !token.isCancelled();
+        }
+
+        public CancelToken getToken()
+        {
+            // Shared with the pipeline stages, which stop as soon as it is canceled
+            return token;
+        }
+
+        public String getCancelReason()
+        {
+            // Why the job stopped (CANCELED, a timeout message or "finished"); null while it is still active
+            return token.getReason();
+        }
+
+        public State getState()
+        {
+            return state;
+        }
+
+        public void setState(State state)
+        {
+            this.state = state;
+        }
+
+        public void setCancelAction(Runnable cancelAction)
+        {
+            // Run once if the job is canceled, e.g. to take it out of the inference queue
+            this.cancelAction = cancelAction;
+        }
+    }
+
+    public static final class Submission
+    {
+        private final Job job;
+        private final Map<Job, Integer> joined;
+
+        private Submission(Job job, Map<Job, Integer> joined)
+        {
+            this.job = job;
+            this.joined = joined;
+        }
+
+        public Job getJob()
+        {
+            // Null when every chunk was merged into jobs already in flight
+            return job;
+        }
+
+        public Map<Job, Integer> getJoined()
+        {
+            // In-flight jobs this request was merged into, with the number of chunks each one covers
+            return joined;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.generator.WorldInfo;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+public final class ModelChunkGenerator extends ChunkGenerator
+{
+    /*
+    - World generator that fills new chunks from model predictions instead of vanilla noise.
+    - Model input comes from NoiseTerrain (seeded noise heights and vanilla biomes), so it can be built before Minecraft asks for the chunk.
+    - A main-thread task projects every player in the world along their velocity and queues the ungenerated chunks around that point,
+      so inference runs ahead of the generation frontier and generateNoise normally just copies a finished volume.
+    - Chunks known to be generated are remembered, so the prefetcher doesn't ask the world about the same chunks every pass.
+    - If a volume isn't ready within a few milliseconds, or no model is loaded, the chunk is filled with the noise terrain itself;
+      world generation never waits for inference.
+    - Vanilla decorations (ores, trees, plants) and mobs still run on top of the generated terrain.
+    */
+
+    private static final int CHUNK_SIZE = 16;
+    private static final int SUPPORTED_HEIGHT = 384;
+    private static final int MAX_KNOWN_GENERATED = 1 << 16;
+
+    private final Plugin plugin;
+    private final BlockPalette palette;
+    private final Function<NoiseTerrain, TerrainPrecomputer> precomputerFactory;
+    private final long maxWaitMillis;
+    private final int prefetchRadius;
+    private final double lookaheadSeconds;
+    private final Logger logger;
+    private final Set<Long> knownGenerated = ConcurrentHashMap.newKeySet();
+
+    private volatile TerrainPrecomputer precomputer;
+    private volatile NoiseTerrain terrain;
+    private BukkitTask prefetchTask;
+
+    public ModelChunkGenerator(Plugin plugin, BlockPalette palette, Function<NoiseTerrain, TerrainPrecomputer> precomputerFactory,
+                               long maxWaitMillis, int prefetchRadius, double lookaheadSeconds)
+    {
+        this.plugin = plugin;
+        this.palette = palette;
+        this.precomputerFactory = precomputerFactory;
+        this.maxWaitMillis = maxWaitMillis;
+        this.prefetchRadius = Math.max(0, prefetchRadius);
+        this.lookaheadSeconds = Math.max(0.0, lookaheadSeconds);
+        this.logger = plugin.getLogger();
+    }
+
+    public void start()
+    {
+        prefetchTask = Bukkit.getScheduler().runTaskTimer(plugin, this::prefetchAhead, 20L, 10L);
+    }
+
+    public void stop()
+    {
+        if (prefetchTask != null)
+        {
+            prefetchTask.cancel();
+            prefetchTask = null;
+        }
+
+        TerrainPrecomputer current = precomputer;
+        if (current != null) current.shutdown();
+    }
+
+    private synchronized void init(WorldInfo worldInfo)
+    {
+        if (terrain != null) return;
+
+        terrain = new NoiseTerrain(worldInfo);
+        if (worldInfo.getMaxHeight() - worldInfo.getMinHeight() == SUPPORTED_HEIGHT)
+        {
+            precomputer = precomputerFactory.apply(terrain);
+        }
+        else
+        {
+            logger.warning("World '" + worldInfo.getName() + "' is not " + SUPPORTED_HEIGHT + " blocks tall; generating it from noise terrain only.");
+        }
+    }
+
+    @Override
+    public void generateNoise(WorldInfo worldInfo, Random random, int chunkX, int chunkZ, ChunkData chunkData)
+    {
+        if (terrain == null) init(worldInfo);
+        remember(chunkX, chunkZ);
+
+        // Usually already computed by the prefetcher; otherwise noise terrain after at most the short wait
+        BlockVolume volume = precomputer != null ? precomputer.take(chunkX, chunkZ, maxWaitMillis) : null;
+        NoiseNeighbourhood noise = volume == null ? terrain.sample(chunkX, chunkZ) : null;
+
+        int minY = worldInfo.getMinHeight();
+        int maxY = worldInfo.getMaxHeight();
+        for (int x = 0; x < CHUNK_SIZE; x++)
+        {
+            for (int z = 0; z < CHUNK_SIZE; z++)
+            {
+                for (int y = minY; y < maxY; y++)
+                {
+                    Material material;
+                    if (volume != null)
+                    {
+                        int classId = volume.get(x, y - minY, z);
+                        material = classId != BlockVolume.UNSET ? palette.decode(classId) : Material.AIR;
+                    }
+                    else
+                    {
+                        material = noise.getType(x, y, z);
+                    }
+
+                    if (material != Material.AIR)
+                    {
+                        chunkData.setBlock(x, y, z, material);
+                    }
+                }
+            }
+        }
+    }
+
+    private void prefetchAhead()
+    {
+        TerrainPrecomputer current = precomputer;
+        if (current == null) return;
+
+        for (Player player : Bukkit.getOnlinePlayers())
+        {
+            World world = player.getWorld();
+            if (world.getGenerator() != this) continue;
+
+            // Velocity is in blocks per tick; look where the player will be a few seconds from now
+            Location location = player.getLocation();
+            Vector velocity = player.getVelocity();
+            double ticksAhead = lookaheadSeconds * 20.0;
+            int centreX = (int) Math.floor((location.getX() + velocity.getX() * ticksAhead) / CHUNK_SIZE);
+            int centreZ = (int) Math.floor((location.getZ() + velocity.getZ() * ticksAhead) / CHUNK_SIZE);
+
+            // Nearest chunks first so the queue order follows the distance to the projected position
+            for (int ring = 0; ring <= prefetchRadius; ring++)
+            {
+                for (int dx = -ring; dx <= ring; dx++)
+                {
+                    for (int dz = -ring; dz <= ring; dz++)
+                    {
+                        if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) continue;
+
+                        int chunkX = centreX + dx;
+                        int chunkZ = centreZ + dz;
+                        if (knownGenerated.contains(TerrainPrecomputer.key(chunkX, chunkZ)) || current.isRequested(chunkX, chunkZ)) continue;
+
+                        // Only chunks the cache doesn't know yet reach the world's region lookup
+                        if (world.isChunkGenerated(chunkX, chunkZ))
+                        {
+                            remember(chunkX, chunkZ);
+                        }
+                        else
+                        {
+                            current.request(chunkX, chunkZ);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Retry drain jobs that the inference queue turned away earlier
+        current.pump();
+    }
+
+    private void remember(int chunkX, int chunkZ)
+    {
+        // Generated chunks stay generated; the set is simply dropped when it grows too large and refills as players move
+        if (knownGenerated.size() >= MAX_KNOWN_GENERATED) knownGenerated.clear();
+        knownGenerated.add(TerrainPrecomputer.key(chunkX, chunkZ));
+    }
+
+    @Override
+    public boolean shouldGenerateNoise()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateSurface()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateCaves()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean shouldGenerateDecorations()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean shouldGenerateMobs()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean shouldGenerateStructures()
+    {
+        return false;
+    }
+}
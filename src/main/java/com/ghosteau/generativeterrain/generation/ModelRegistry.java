@@ -0,0 +1,189 @@
+package com.ghosteau.generativeterrain.generation;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtLoggingLevel;
+import ai.onnxruntime.OrtSession;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class ModelRegistry
+{
+    /*
+    - Owns the ONNX environment and every terrain model the plugin knows about, keyed by a short name (e.g. "transformer", "cnn").
+    - By default all sessions share ORT's global intra/inter-op thread pools instead of each spinning up their own (see SessionSettings).
+    - Models load and warm up on a background thread; reload() builds the replacement first and swaps it in, so generation never stalls.
+    */
+
+    private final File dataFolder;
+    private final Map<String, String> modelFiles;
+    private final TensorPool warmUpPool;
+    private final Logger logger;
+    private final OrtEnvironment env;
+    private final Map<String, TerrainModel> models = new ConcurrentHashMap<>();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread thread = new Thread(r, "GenerativeTerrain-ModelLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile String defaultModel;
+    private volatile SessionSettings sessionSettings;
+
+    public ModelRegistry(File dataFolder, Map<String, String> modelFiles, String defaultModel, SessionSettings sessionSettings, TensorPool warmUpPool, Logger logger) throws OrtException
+    {
+        this.dataFolder = dataFolder;
+        this.modelFiles = new LinkedHashMap<>(modelFiles);
+        this.defaultModel = defaultModel;
+        this.sessionSettings = sessionSettings;
+        this.warmUpPool = warmUpPool;
+        this.logger = logger;
+
+        if (sessionSettings.isSharedThreadPool())
+        {
+            // Global thread pools only take effect when the environment is first created, which is why the registry creates it
+            try (OrtEnvironment.ThreadingOptions threading = new OrtEnvironment.ThreadingOptions())
+            {
+                threading.setGlobalIntraOpNumThreads(sessionSettings.getIntraOpThreads());
+                threading.setGlobalInterOpNumThreads(sessionSettings.getInterOpThreads());
+                this.env = OrtEnvironment.getEnvironment(OrtLoggingLevel.ORT_LOGGING_LEVEL_WARNING, "GenerativeTerrain", threading);
+            }
+        }
+        else
+        {
+            this.env = OrtEnvironment.getEnvironment();
+        }
+    }
+
+    public CompletableFuture<Void> loadAll()
+    {
+        CompletableFuture<?>[] loads = modelFiles.keySet().stream().map(this::reload).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(loads);
+    }
+
+    public CompletableFuture<TerrainModel> reload(String name)
+    {
+        return CompletableFuture.supplyAsync(() ->
+        {
+            String fileName = modelFiles.get(name);
+            if (fileName == null)
+            {
+                throw new IllegalArgumentException("Unknown model: " + name);
+            }
+
+            File modelFile = getModelFile(name);
+            if (!modelFile.exists())
+            {
+                throw new IllegalStateException("Model file not found! Please place " + fileName + " in the plugin's data folder.");
+            }
+
+            try
+            {
+                long start = System.nanoTime();
+                SessionSettings settings = sessionSettings;
+                File loadedFile = settings.resolveModelFile(modelFile);
+                TerrainModel model;
+                try (OrtSession.SessionOptions sessionOptions = settings.createSessionOptions(modelFile, loadedFile, false))
+                {
+                    String identity = name + "-" + Long.toHexString(modelFile.lastModified()) + Long.toHexString(modelFile.length());
+                    model = new TerrainModel(name, identity, env, env.createSession(loadedFile.getAbsolutePath(), sessionOptions));
+                }
+                model.warmUp(warmUpPool);
+
+                // Swap in the new model; the old one closes once in-flight jobs are done with it
+                TerrainModel previous = models.put(name, model);
+                if (previous != null)
+                {
+                    previous.retire();
+                }
+
+                logger.info("ONNX model '" + name + "' (" + loadedFile.getName() + ", " + settings.describe() + ") loaded and warmed up in " +
+                        (System.nanoTime() - start) / 1_000_000 + " ms.");
+                return model;
+            }
+            catch (OrtException e)
+            {
+                throw new IllegalStateException("Error loading ONNX model " + fileName + ": " + e.getMessage(), e);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while warming up model " + name, e);
+            }
+        }, loader).whenComplete((model, error) ->
+        {
+            if (error != null)
+            {
+                logger.log(Level.SEVERE, "Failed to load terrain model '" + name + "'", error);
+            }
+        });
+    }
+
+    public File getModelFile(String name)
+    {
+        String fileName = modelFiles.get(name);
+        return fileName == null ? null : new File(dataFolder, fileName);
+    }
+
+    public OrtEnvironment getEnvironment()
+    {
+        return env;
+    }
+
+    public SessionSettings getSessionSettings()
+    {
+        return sessionSettings;
+    }
+
+    public void setSessionSettings(SessionSettings sessionSettings)
+    {
+        // Applies to sessions created from now on, i.e. the next reload
+        this.sessionSettings = sessionSettings;
+    }
+
+    public TerrainModel get(String name)
+    {
+        return models.get(name == null ? defaultModel : name);
+    }
+
+    public boolean isKnown(String name)
+    {
+        return modelFiles.containsKey(name);
+    }
+
+    public Set<String> names()
+    {
+        return Collections.unmodifiableSet(modelFiles.keySet());
+    }
+
+    public String getDefaultModel()
+    {
+        return defaultModel;
+    }
+
+    public void setDefaultModel(String name)
+    {
+        this.defaultModel = name;
+    }
+
+    public void close()
+    {
+        loader.shutdownNow();
+        for (TerrainModel model : models.values())
+        {
+            model.retire();
+        }
+        models.clear();
+        env.close();
+    }
+}
@@ -0,0 +1,190 @@
+package com.ghosteau.generativeterrain.generation;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+public final class ModelTuner
+{
+    /*
+    - Benchmarks one model under a list of candidate session settings using synthetic, realistically ranged inputs.
+    - Every candidate gets a fresh session with exactly the thread pool setup it would be saved with, a short warm-up, then timed
+      end-to-end inferences (run + decode). The shared pool's size is fixed for the life of the JVM, so thread counts are only
+      varied for per-session pools; the shared pool is measured as it is.
+    - Synthetic inputs take their block and biome id ranges from the model's palette.
+    - Results are ranked by chunks per second; p50/p99 are per inference call of the given batch size.
+    */
+
+    private static final int WARM_UP_RUNS = 2;
+    private static final int COLUMN_HEIGHT = 384;
+
+    private final OrtEnvironment env;
+    private final String modelName;
+    private final File modelFile;
+    private final int classCount;
+    private final int biomeCount;
+
+    public ModelTuner(OrtEnvironment env, String modelName, File modelFile, int classCount, int biomeCount)
+    {
+        this.env = env;
+        this.modelName = modelName;
+        this.modelFile = modelFile;
+        this.classCount = classCount;
+        this.biomeCount = biomeCount;
+    }
+
+    public static List<SessionSettings> candidates(SessionSettings base, int cores)
+    {
+        TreeSet<Integer> intraOptions = new TreeSet<>(Arrays.asList(1, 2, 4, 8, Math.max(1, cores / 2), cores));
+        intraOptions.removeIf(threads -> threads > cores);
+
+        OrtSession.SessionOptions.OptLevel[] levels = {OrtSession.SessionOptions.OptLevel.EXTENDED_OPT, OrtSession.SessionOptions.OptLevel.ALL_OPT};
+        List<SessionSettings> candidates = new ArrayList<>();
+
+        // The shared pool (only there if the server started with it) keeps its size; only session-level options vary
+        if (base.isSharedThreadPool())
+        {
+            for (OrtSession.SessionOptions.OptLevel level : levels)
+            {
+                candidates.add(base.withThreads(base.getIntraOpThreads(), base.getInterOpThreads(), OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, level));
+            }
+        }
+
+        SessionSettings perSession = base.withSharedThreadPool(false);
+        for (int intra : intraOptions)
+        {
+            for (OrtSession.SessionOptions.OptLevel level : levels)
+            {
+                candidates.add(perSession.withThreads(intra, 1, OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, level));
+                if (cores >= 4)
+                {
+                    candidates.add(perSession.withThreads(intra, 2, OrtSession.SessionOptions.ExecutionMode.PARALLEL, level));
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    public List<Result> run(List<SessionSettings> candidates, int batch, int iterations, Consumer<String> progress) throws OrtException
+    {
+        List<Result> results = new ArrayList<>();
+
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            SessionSettings settings = candidates.get(i);
+            TerrainModel model;
+            try (OrtSession.SessionOptions options = settings.createSessionOptions(modelFile, modelFile, true))
+            {
+                model = new TerrainModel(modelName, env, env.createSession(modelFile.getAbsolutePath(), options));
+            }
+
+            try
+            {
+                int entries = Math.min(batch, model.getMaxBatch());
+                SlabLayout layout = SlabLayout.centred(model.getModelHeight(), COLUMN_HEIGHT);
+                FloatBuffer input = syntheticInput(entries, model.getModelHeight());
+
+                for (int run = 0; run < WARM_UP_RUNS; run++)
+                {
+                    model.infer(input, entries, layout);
+                }
+
+                long[] nanos = new long[iterations];
+                for (int run = 0; run < iterations; run++)
+                {
+                    long start = System.nanoTime();
+                    model.infer(input, entries, layout);
+                    nanos[run] = System.nanoTime() - start;
+                }
+
+                Result result = new Result(settings, nanos, entries);
+                results.add(result);
+                progress.accept("[" + (i + 1) + "/" + candidates.size() + "] " + result);
+            }
+            finally
+            {
+                model.retire();
+            }
+        }
+
+        results.sort((a, b) -> Double.compare(b.chunksPerSecond, a.chunksPerSecond));
+        return results;
+    }
+
+    private FloatBuffer syntheticInput(int entries, int modelHeight)
+    {
+        // Channel value ranges match what FeatureEncoder produces: biome ids, a surface flag, light in [0,1] and block ids
+        int channelSize = FeatureEncoder.tensorSize(1, modelHeight) / FeatureEncoder.CHANNELS;
+        FloatBuffer input = ByteBuffer.allocateDirect(FeatureEncoder.tensorSize(entries, modelHeight) * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int entry = 0; entry < entries; entry++)
+        {
+            for (int c = 0; c < FeatureEncoder.CHANNELS; c++)
+            {
+                int base = (entry * FeatureEncoder.CHANNELS + c) * channelSize;
+                for (int i = 0; i < channelSize; i++)
+                {
+                    float value;
+                    if (c <= 1) value = random.nextInt(Math.max(1, biomeCount));
+                    else if (c == 2) value = random.nextInt(2);
+                    else if (c == 3) value = random.nextInt(16) / 15.0f;
+                    else value = random.nextInt(Math.max(1, classCount));
+                    input.put(base + i, value);
+                }
+            }
+        }
+
+        return input;
+    }
+
+    public static final class Result
+    {
+        private final SessionSettings settings;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double chunksPerSecond;
+
+        private Result(SessionSettings settings, long[] nanos, int entries)
+        {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long n : sorted) total += n;
+
+            this.settings = settings;
+            this.p50Millis = sorted[(sorted.length - 1) / 2] / 1_000_000.0;
+            this.p99Millis = sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1_000_000.0;
+            this.chunksPerSecond = entries * sorted.length / (total / 1_000_000_000.0);
+        }
+
+        public SessionSettings getSettings()
+        {
+            return settings;
+        }
+
+        public double getChunksPerSecond()
+        {
+            return chunksPerSecond;
+        }
+
+        @Override
+        public String toString()
+        {
+            return settings.describe() + String.format(": p50 %.1f ms, p99 %.1f ms, %.1f chunks/s", p50Millis, p99Millis, chunksPerSecond);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+public final class NoiseNeighbourhood implements BlockSource
+{
+    /*
+    - BlockSource over NoiseTerrain for one chunk and a one-block border, built without the chunk existing.
+    - Surface heights for the 18x18 columns are computed up front; biomes are looked up lazily per 4x4x4 cell, the resolution Minecraft stores them at.
+    - Safe to share between encoder slices: the lazy biome cache only ever stores the same value for a cell.
+    */
+
+    private static final int CHUNK_SIZE = 16;
+    private static final int BORDERED = CHUNK_SIZE + 2;
+    private static final int BIOME_CELLS = 6;
+
+    private final NoiseTerrain terrain;
+    private final int baseX;
+    private final int baseZ;
+    private final int[] surface = new int[BORDERED * BORDERED];
+    private final Biome[] biomes;
+    private final int biomeCellsY;
+
+    NoiseNeighbourhood(NoiseTerrain terrain, int chunkX, int chunkZ)
+    {
+        this.terrain = terrain;
+        this.baseX = chunkX * CHUNK_SIZE;
+        this.baseZ = chunkZ * CHUNK_SIZE;
+        this.biomeCellsY = (terrain.getMaxHeight() - terrain.getMinHeight()) >> 2;
+        this.biomes = new Biome[BIOME_CELLS * biomeCellsY * BIOME_CELLS];
+
+        for (int x = -1; x <= CHUNK_SIZE; x++)
+        {
+            for (int z = -1; z <= CHUNK_SIZE; z++)
+            {
+                surface[(x + 1) * BORDERED + z + 1] = terrain.surfaceHeight(baseX + x, baseZ + z);
+            }
+        }
+    }
+
+    public int getSurface(int x, int z)
+    {
+        return surface[(x + 1) * BORDERED + z + 1];
+    }
+
+    @Override
+    public Material getType(int x, int y, int z)
+    {
+        return terrain.typeAt(y, getSurface(x, z));
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        // Open sky above the surface, dark below it; close enough to what freshly generated terrain reports
+        return y > getSurface(x, z) ? 15 : 0;
+    }
+
+    @Override
+    public Biome getBiome(int x, int y, int z)
+    {
+        // Cells start one block before the chunk so the border columns map to cell 0
+        int cell = (((x + 4) >> 2) * biomeCellsY + ((y - terrain.getMinHeight()) >> 2)) * BIOME_CELLS + ((z + 4) >> 2);
+        Biome biome = biomes[cell];
+        if (biome == null)
+        {
+            biome = terrain.biomeAt(baseX + x, y, baseZ + z);
+            biomes[cell] = biome;
+        }
+        return biome;
+    }
+}
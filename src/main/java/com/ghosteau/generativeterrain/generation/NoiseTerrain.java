@@ -0,0 +1,66 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.generator.BiomeProvider;
+import org.bukkit.generator.WorldInfo;
+import org.bukkit.util.noise.SimplexOctaveGenerator;
+
+public final class NoiseTerrain
+{
+    /*
+    - Cheap seeded stand-in for vanilla terrain, used as model input for chunks that haven't been generated yet.
+    - Surface heights come from Bukkit's simplex octave noise seeded with the world seed; biomes come from the world's vanilla biome provider.
+    - Everything is a pure function of the seed and coordinates, so chunks can be sampled on worker threads well before Minecraft asks for them.
+    */
+
+    private static final int SEA_LEVEL = 62;
+    private static final int HEIGHT_AMPLITUDE = 40;
+
+    private final WorldInfo worldInfo;
+    private final BiomeProvider biomes;
+    private final SimplexOctaveGenerator noise;
+
+    public NoiseTerrain(WorldInfo worldInfo)
+    {
+        this.worldInfo = worldInfo;
+        this.biomes = worldInfo.vanillaBiomeProvider();
+        this.noise = new SimplexOctaveGenerator(worldInfo.getSeed(), 6);
+        this.noise.setScale(1.0 / 384.0);
+    }
+
+    public NoiseNeighbourhood sample(int chunkX, int chunkZ)
+    {
+        return new NoiseNeighbourhood(this, chunkX, chunkZ);
+    }
+
+    public int surfaceHeight(int worldX, int worldZ)
+    {
+        return SEA_LEVEL + (int) Math.round(noise.noise(worldX, worldZ, 2.0, 0.5, true) * HEIGHT_AMPLITUDE);
+    }
+
+    public Material typeAt(int worldY, int surface)
+    {
+        if (worldY == worldInfo.getMinHeight()) return Material.BEDROCK;
+        if (worldY <= surface - 4) return Material.STONE;
+        if (worldY < surface) return Material.DIRT;
+        if (worldY == surface) return surface >= SEA_LEVEL ? Material.GRASS_BLOCK : Material.SAND;
+        if (worldY <= SEA_LEVEL) return Material.WATER;
+        return Material.AIR;
+    }
+
+    public Biome biomeAt(int worldX, int worldY, int worldZ)
+    {
+        return biomes.getBiome(worldInfo, worldX, worldY, worldZ);
+    }
+
+    public int getMinHeight()
+    {
+        return worldInfo.getMinHeight();
+    }
+
+    public int getMaxHeight()
+    {
+        return worldInfo.getMaxHeight();
+    }
+}
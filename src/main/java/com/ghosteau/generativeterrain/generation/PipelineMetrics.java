@@ -0,0 +1,130 @@
+package com.ghosteau.generativeterrain.generation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class PipelineMetrics
+{
+    /*
+    - Latency of every generation stage, kept in one lock-free histogram per stage plus a chunk counter.
+    - A stage is timed with a Span: start() when it begins, end(chunks) when it is done, on any thread.
+    - Each span is also a JFR event (com.ghosteau.generativeterrain.Stage), so a flight recording shows the stages on the
+      threads that ran them, next to GC and safepoint pauses. JFR only pays for the event when a recording has it enabled.
+    */
+
+    public enum Stage
+    {
+        QUEUE_WAIT("queue wait"),
+        SNAPSHOT("snapshot"),
+        ENCODE("feature encode"),
+        INFERENCE("inference"),
+        DECODE("decode"),
+        DIFF("diff"),
+        APPLY("apply");
+
+        private final String label;
+
+        Stage(String label)
+        {
+            this.label = label;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> chunks = new EnumMap<>(Stage.class);
+    private volatile long since = System.currentTimeMillis();
+
+    public PipelineMetrics()
+    {
+        // Filled once and never modified, so the maps are safe to read from any thread
+        for (Stage stage : Stage.values())
+        {
+            histograms.put(stage, new LatencyHistogram());
+            chunks.put(stage, new LongAdder());
+        }
+    }
+
+    public Span start(Stage stage)
+    {
+        return new Span(this, stage);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage)
+    {
+        return histograms.get(stage);
+    }
+
+    public long getChunks(Stage stage)
+    {
+        return chunks.get(stage).sum();
+    }
+
+    public long getSince()
+    {
+        return since;
+    }
+
+    public void reset()
+    {
+        for (Stage stage : Stage.values())
+        {
+            histograms.get(stage).reset();
+            chunks.get(stage).reset();
+        }
+        since = System.currentTimeMillis();
+    }
+
+    public static final class Span
+    {
+        private final PipelineMetrics metrics;
+        private final Stage stage;
+        private final long startNanos = System.nanoTime();
+        private final StageEvent event = new StageEvent();
+
+        private Span(PipelineMetrics metrics, Stage stage)
+        {
+            this.metrics = metrics;
+            this.stage = stage;
+            event.begin();
+        }
+
+        public void end(int chunkCount)
+        {
+            metrics.histograms.get(stage).record((System.nanoTime() - startNanos) / 1000);
+            metrics.chunks.get(stage).add(chunkCount);
+
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.stage = stage.getLabel();
+                event.chunks = chunkCount;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("com.ghosteau.generativeterrain.Stage")
+    @Label("Terrain Pipeline Stage")
+    @Category("GenerativeTerrain")
+    @Description("One stage of a terrain generation job")
+    static final class StageEvent extends Event
+    {
+        @Label("Stage")
+        String stage;
+
+        @Label("Chunks")
+        int chunks;
+    }
+}
@@ -0,0 +1,134 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public final class PregenCheckpoint
+{
+    /*
+    - Progress of one bulk pre-generation job, rewritten each time the job saves its world.
+    - Everything before curveIndex on the job's Hilbert walk has been applied to the world and saved; resuming restarts the walk there.
+    - Saved to a temporary file and moved into place, so a crash mid-write leaves the previous checkpoint intact.
+    */
+
+    private static final int MAGIC = 0x47545047; // "GTPG"
+    private static final int VERSION = 1;
+
+    private final String worldName;
+    private final int minX;
+    private final int minZ;
+    private final int maxX;
+    private final int maxZ;
+    private final String modelName;
+    private final boolean fullColumn;
+    private long curveIndex;
+    private long chunksDone;
+    private long elapsedMillis;
+
+    public PregenCheckpoint(String worldName, int minX, int minZ, int maxX, int maxZ, String modelName, boolean fullColumn)
+    {
+        this.worldName = worldName;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxZ = maxZ;
+        this.modelName = modelName;
+        this.fullColumn = fullColumn;
+    }
+
+    public static PregenCheckpoint load(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath())))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Not a pre-generation checkpoint: " + file);
+            }
+
+            String worldName = in.readUTF();
+            int minX = in.readInt();
+            int minZ = in.readInt();
+            int maxX = in.readInt();
+            int maxZ = in.readInt();
+            String modelName = in.readBoolean() ? in.readUTF() : null;
+            PregenCheckpoint checkpoint = new PregenCheckpoint(worldName, minX, minZ, maxX, maxZ, modelName, in.readBoolean());
+            checkpoint.curveIndex = in.readLong();
+            checkpoint.chunksDone = in.readLong();
+            checkpoint.elapsedMillis = in.readLong();
+            return checkpoint;
+        }
+    }
+
+    public void save(File file) throws IOException
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp.toPath())))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(worldName);
+            out.writeInt(minX);
+            out.writeInt(minZ);
+            out.writeInt(maxX);
+            out.writeInt(maxZ);
+            out.writeBoolean(modelName != null);
+            if (modelName != null) out.writeUTF(modelName);
+            out.writeBoolean(fullColumn);
+            out.writeLong(curveIndex);
+            out.writeLong(chunksDone);
+            out.writeLong(elapsedMillis);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public HilbertWalk resumeWalk()
+    {
+        return new HilbertWalk(minX, minZ, maxX, maxZ, curveIndex);
+    }
+
+    public void advance(long curveIndex, int chunks, long millis)
+    {
+        this.curveIndex = curveIndex;
+        this.chunksDone += chunks;
+        this.elapsedMillis += millis;
+    }
+
+    public String getWorldName()
+    {
+        return worldName;
+    }
+
+    public String getModelName()
+    {
+        return modelName;
+    }
+
+    public boolean isFullColumn()
+    {
+        return fullColumn;
+    }
+
+    public long getChunksDone()
+    {
+        return chunksDone;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    public long chunkCount()
+    {
+        return (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+    }
+
+    public String describe()
+    {
+        return worldName + " " + minX + ", " + minZ + " to " + maxX + ", " + maxZ;
+    }
+}
@@ -0,0 +1,172 @@
+package com.ghosteau.generativeterrain.generation;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+
+public final class SessionSettings
+{
+    /*
+    - ONNX Runtime session tuning read from the "onnx" section of config.yml.
+    - With a shared thread pool the thread counts size ORT's global pools (fixed for the life of the JVM);
+      otherwise every session gets its own pools of that size.
+    - When saving optimised models, the graph ORT produces is written next to the source model and loaded directly next time.
+    */
+
+    private final int intraOpThreads;
+    private final int interOpThreads;
+    private final OrtSession.SessionOptions.ExecutionMode executionMode;
+    private final OrtSession.SessionOptions.OptLevel optimizationLevel;
+    private final boolean cpuArena;
+    private final boolean memoryPattern;
+    private final boolean sharedThreadPool;
+    private final boolean saveOptimizedModel;
+
+    public SessionSettings(int intraOpThreads, int interOpThreads, OrtSession.SessionOptions.ExecutionMode executionMode,
+                           OrtSession.SessionOptions.OptLevel optimizationLevel, boolean cpuArena, boolean memoryPattern,
+                           boolean sharedThreadPool, boolean saveOptimizedModel)
+    {
+        this.intraOpThreads = Math.max(1, intraOpThreads);
+        this.interOpThreads = Math.max(1, interOpThreads);
+        this.executionMode = executionMode;
+        this.optimizationLevel = optimizationLevel;
+        this.cpuArena = cpuArena;
+        this.memoryPattern = memoryPattern;
+        this.sharedThreadPool = sharedThreadPool;
+        this.saveOptimizedModel = saveOptimizedModel;
+    }
+
+    public static SessionSettings fromConfig(ConfigurationSection section)
+    {
+        if (section == null)
+        {
+            return new SessionSettings(2, 2, OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL,
+                    OrtSession.SessionOptions.OptLevel.ALL_OPT, true, true, true, false);
+        }
+
+        return new SessionSettings(
+                section.getInt("intra-op-threads", 2),
+                section.getInt("inter-op-threads", 2),
+                parseEnum(OrtSession.SessionOptions.ExecutionMode.class, section.getString("execution-mode"), OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL),
+                parseEnum(OrtSession.SessionOptions.OptLevel.class, section.getString("optimization-level"), OrtSession.SessionOptions.OptLevel.ALL_OPT),
+                section.getBoolean("cpu-arena", true),
+                section.getBoolean("memory-pattern", true),
+                section.getBoolean("shared-thread-pool", true),
+                section.getBoolean("save-optimized-model", false));
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, E fallback)
+    {
+        if (value == null) return fallback;
+
+        try
+        {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            return fallback;
+        }
+    }
+
+    public void writeTo(ConfigurationSection section)
+    {
+        section.set("intra-op-threads", intraOpThreads);
+        section.set("inter-op-threads", interOpThreads);
+        section.set("execution-mode", executionMode.name());
+        section.set("optimization-level", optimizationLevel.name());
+        section.set("cpu-arena", cpuArena);
+        section.set("memory-pattern", memoryPattern);
+        section.set("shared-thread-pool", sharedThreadPool);
+        section.set("save-optimized-model", saveOptimizedModel);
+    }
+
+    public SessionSettings withThreads(int intraOp, int interOp, OrtSession.SessionOptions.ExecutionMode mode, OrtSession.SessionOptions.OptLevel level)
+    {
+        return new SessionSettings(intraOp, interOp, mode, level, cpuArena, memoryPattern, sharedThreadPool, saveOptimizedModel);
+    }
+
+    public SessionSettings withSharedThreadPool(boolean shared)
+    {
+        return new SessionSettings(intraOpThreads, interOpThreads, executionMode, optimizationLevel, cpuArena, memoryPattern, shared, saveOptimizedModel);
+    }
+
+    public File resolveModelFile(File modelFile)
+    {
+        // Prefer a previously saved optimised graph as long as it is newer than the model it came from
+        File optimized = optimizedFile(modelFile);
+        if (saveOptimizedModel && optimized.exists() && optimized.lastModified() >= modelFile.lastModified())
+        {
+            return optimized;
+        }
+
+        return modelFile;
+    }
+
+    public OrtSession.SessionOptions createSessionOptions(File modelFile, File loadedFile, boolean benchmark) throws OrtException
+    {
+        // Benchmark sessions use the same thread pools a real session with these settings would, so what the tuner measures is
+        // what it saves; they just never write an optimised model
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+
+        if (sharedThreadPool)
+        {
+            options.disablePerSessionThreads();
+        }
+        else
+        {
+            options.setIntraOpNumThreads(intraOpThreads);
+            options.setInterOpNumThreads(interOpThreads);
+        }
+
+        options.setExecutionMode(executionMode);
+        options.setCPUArenaAllocator(cpuArena);
+        options.setMemoryPatternOptimization(memoryPattern);
+
+        if (!loadedFile.equals(modelFile))
+        {
+            // Already optimised offline; running the optimisers again would only slow the load down
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+        }
+        else
+        {
+            options.setOptimizationLevel(optimizationLevel);
+            if (saveOptimizedModel && !benchmark)
+            {
+                options.setOptimizedModelFilePath(optimizedFile(modelFile).getAbsolutePath());
+            }
+        }
+
+        return options;
+    }
+
+    private static File optimizedFile(File modelFile)
+    {
+        String name = modelFile.getName();
+        String base = name.endsWith(".onnx") ? name.substring(0, name.length() - 5) : name;
+        return new File(modelFile.getParentFile(), base + ".optimized.onnx");
+    }
+
+    public int getIntraOpThreads()
+    {
+        return intraOpThreads;
+    }
+
+    public int getInterOpThreads()
+    {
+        return interOpThreads;
+    }
+
+    public boolean isSharedThreadPool()
+    {
+        return sharedThreadPool;
+    }
+
+    public String describe()
+    {
+        return (sharedThreadPool ? "shared pool " : "") + "intra=" + intraOpThreads + ", inter=" + interOpThreads + ", " + executionMode + ", " +
+                optimizationLevel + (cpuArena ? ", arena" : ", no arena");
+    }
+}
@@ -0,0 +1,65 @@
+package com.ghosteau.generativeterrain.generation;
+
+public final class SlabLayout
+{
+    /*
+    - Describes how a world column is cut into model-height slabs, each of which becomes one entry of the batch dimension.
+    - Slab starts are column rows (0 = MIN_Y); a slab may extend past the column, those layers are zero-filled and dropped.
+    - Where slabs overlap, their logits are blended with tent weights so each voxel trusts the slab it sits most centrally in.
+    */
+
+    private final int modelHeight;
+    private final int[] slabStarts;
+
+    private SlabLayout(int modelHeight, int[] slabStarts)
+    {
+        this.modelHeight = modelHeight;
+        this.slabStarts = slabStarts;
+    }
+
+    public static SlabLayout centred(int modelHeight, int columnHeight)
+    {
+        // A single slab around the middle of the column, the original generation behaviour
+        return new SlabLayout(modelHeight, new int[]{(columnHeight - modelHeight) / 2});
+    }
+
+    public static SlabLayout fullColumn(int modelHeight, int columnHeight, int overlap)
+    {
+        if (modelHeight >= columnHeight)
+        {
+            return centred(modelHeight, columnHeight);
+        }
+
+        int stride = Math.max(1, modelHeight - Math.max(0, overlap));
+        int count = (columnHeight - modelHeight + stride - 1) / stride + 1;
+        int[] starts = new int[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            // The last slab is pulled down so it ends exactly at the top of the column
+            starts[i] = Math.min(i * stride, columnHeight - modelHeight);
+        }
+
+        return new SlabLayout(modelHeight, starts);
+    }
+
+    public int getModelHeight()
+    {
+        return modelHeight;
+    }
+
+    public int slabCount()
+    {
+        return slabStarts.length;
+    }
+
+    public int slabStart(int slab)
+    {
+        return slabStarts[slab];
+    }
+
+    public float weight(int modelY)
+    {
+        return Math.min(modelY + 1, modelHeight - modelY);
+    }
+}
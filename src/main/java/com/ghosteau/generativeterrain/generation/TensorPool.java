@@ -0,0 +1,77 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public final class TensorPool
+{
+    /*
+    - Fixed set of reusable direct FloatBuffers that model inputs are encoded into and handed to ONNX Runtime.
+    - Direct, native-order buffers are wrapped by OnnxTensor as-is, so the input is never copied on its way to the model.
+    - The pool holds one buffer per inference worker; acquire() blocks while all of them are in use, or until the caller's
+      job is canceled, so a canceled job never sits in line for a buffer it won't use.
+    */
+
+    private static final long CANCEL_POLL_MILLIS = 10;
+
+    private final BlockingQueue<FloatBuffer> free;
+
+    public TensorPool(int buffers, int floatsPerBuffer)
+    {
+        free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++)
+        {
+            free.add(allocate(floatsPerBuffer));
+        }
+    }
+
+    public FloatBuffer acquire(int floats) throws InterruptedException
+    {
+        return acquire(floats, null);
+    }
+
+    public FloatBuffer acquire(int floats, CancelToken token) throws InterruptedException
+    {
+        FloatBuffer buffer;
+        if (token == null)
+        {
+            buffer = free.take();
+        }
+        else
+        {
+            do
+            {
+                token.throwIfCancelled();
+                buffer = free.poll(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            while (buffer == null);
+        }
+
+        // Larger requests replace the pooled buffer instead of failing; the new one is returned to the pool afterwards
+        if (buffer.capacity() < floats)
+        {
+            buffer = allocate(floats);
+        }
+
+        buffer.clear();
+        buffer.limit(floats);
+        return buffer;
+    }
+
+    public void release(FloatBuffer buffer)
+    {
+        if (buffer != null)
+        {
+            free.offer(buffer);
+        }
+    }
+
+    private static FloatBuffer allocate(int floats)
+    {
+        return ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+}
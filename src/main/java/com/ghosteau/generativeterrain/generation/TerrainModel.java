@@ -0,0 +1,241 @@
+package com.ghosteau.generativeterrain.generation;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class TerrainModel
+{
+    /*
+    - One loaded ONNX terrain model together with the input/output shape details read from its metadata.
+    - Jobs retain() the model for as long as they use it; a model replaced by a reload is only closed once its last user releases it.
+    - Models exported with a fixed batch dimension (the CNN) are run in several calls whose outputs are stitched back together.
+    - With a CancelToken, a canceled job stops inside session.run (through RunOptions terminate) and between calls and chunks.
+    */
+
+    private static final int CHUNK_WIDTH = 16;
+    private static final int CHUNK_DEPTH = 16;
+    private static final int WORLD_CHUNK_HEIGHT = 384;
+    private static final int DEFAULT_MODEL_HEIGHT = 32;
+
+    private final String name;
+    private final String identity;
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final String inputName;
+    private final int modelHeight;
+    private final int maxBatch;
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile boolean retired;
+
+    public TerrainModel(String name, OrtEnvironment env, OrtSession session) throws OrtException
+    {
+        this(name, name, env, session);
+    }
+
+    public TerrainModel(String name, String identity, OrtEnvironment env, OrtSession session) throws OrtException
+    {
+        this.name = name;
+        this.identity = identity;
+        this.env = env;
+        this.session = session;
+
+        // Input is [batch, channels, x, y, z]; dynamic dimensions are reported as -1
+        Map.Entry<String, NodeInfo> input = session.getInputInfo().entrySet().iterator().next();
+        long[] shape = ((TensorInfo) input.getValue().getInfo()).getShape();
+        this.inputName = input.getKey();
+        this.maxBatch = shape[0] > 0 ? (int) shape[0] : Integer.MAX_VALUE;
+        this.modelHeight = shape.length > 3 && shape[3] > 0 ? (int) shape[3] : DEFAULT_MODEL_HEIGHT;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getIdentity()
+    {
+        // Changes whenever the model file does, so cached predictions of an older version are never reused
+        return identity;
+    }
+
+    public int getModelHeight()
+    {
+        return modelHeight;
+    }
+
+    public int getMaxBatch()
+    {
+        return maxBatch;
+    }
+
+    public boolean retain()
+    {
+        users.incrementAndGet();
+        if (retired)
+        {
+            release();
+            return false;
+        }
+
+        return true;
+    }
+
+    public void release()
+    {
+        if (users.decrementAndGet() == 0 && retired)
+        {
+            closeSession();
+        }
+    }
+
+    void retire()
+    {
+        retired = true;
+        if (users.get() == 0)
+        {
+            closeSession();
+        }
+    }
+
+    private synchronized void closeSession()
+    {
+        try
+        {
+            session.close();
+        }
+        catch (OrtException | IllegalStateException ignored)
+        {
+            // Already closed by a racing release
+        }
+    }
+
+    public BlockVolume[] infer(FloatBuffer inputBuffer, int chunkCount, SlabLayout layout) throws OrtException
+    {
+        return infer(inputBuffer, chunkCount, layout, null);
+    }
+
+    public BlockVolume[] infer(FloatBuffer inputBuffer, int chunkCount, SlabLayout layout, PipelineMetrics metrics) throws OrtException
+    {
+        return infer(inputBuffer, chunkCount, layout, metrics, null);
+    }
+
+    public BlockVolume[] infer(FloatBuffer inputBuffer, int chunkCount, SlabLayout layout, PipelineMetrics metrics, CancelToken token) throws OrtException
+    {
+        // Throws CancellationException once the token is canceled, whether the run was terminated or had already finished
+        // Inference (session.run plus copying the logits out) and decoding are timed separately when metrics are given
+        PipelineMetrics.Span inference = metrics != null ? metrics.start(PipelineMetrics.Stage.INFERENCE) : null;
+        int entries = chunkCount * layout.slabCount();
+        FloatBuffer logits;
+        int numClasses;
+
+        if (entries <= maxBatch)
+        {
+            // The whole batch in a single session.run call
+            try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, inputBuffer, FeatureEncoder.tensorShape(entries, modelHeight));
+                 OrtSession.Result result = run(inputTensor, token))
+            {
+                OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+                numClasses = (int) outputTensor.getInfo().getShape()[1];
+                logits = outputTensor.getFloatBuffer();
+            }
+        }
+        else
+        {
+            // Fixed-batch model: run it in chunks of maxBatch entries and concatenate the logits
+            int entryFloats = FeatureEncoder.tensorSize(1, modelHeight);
+            logits = null;
+            numClasses = 0;
+
+            for (int first = 0; first < entries; first += maxBatch)
+            {
+                if (token != null) token.throwIfCancelled();
+
+                int count = Math.min(maxBatch, entries - first);
+                FloatBuffer slice = inputBuffer.duplicate();
+                slice.position(first * entryFloats).limit((first + count) * entryFloats);
+
+                try (OnnxTensor inputTensor = OnnxTensor.createTensor(env, slice.slice(), FeatureEncoder.tensorShape(count, modelHeight));
+                     OrtSession.Result result = run(inputTensor, token))
+                {
+                    OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+                    if (logits == null)
+                    {
+                        numClasses = (int) outputTensor.getInfo().getShape()[1];
+                        logits = FloatBuffer.allocate(entries * numClasses * CHUNK_WIDTH * modelHeight * CHUNK_DEPTH);
+                    }
+                    logits.put(outputTensor.getFloatBuffer());
+                }
+            }
+            logits.flip();
+        }
+        if (inference != null) inference.end(chunkCount);
+
+        // Decode straight from the output buffer into compact class-id volumes, one per chunk
+        PipelineMetrics.Span decode = metrics != null ? metrics.start(PipelineMetrics.Stage.DECODE) : null;
+        BlockVolume[] volumes = new BlockVolume[chunkCount];
+        for (int i = 0; i < chunkCount; i++)
+        {
+            if (token != null) token.throwIfCancelled();
+
+            // Convert model height space to world height space, blending where slabs overlap
+            volumes[i] = new BlockVolume(CHUNK_WIDTH, WORLD_CHUNK_HEIGHT, CHUNK_DEPTH);
+            volumes[i].decode(logits, i * layout.slabCount(), numClasses, layout);
+        }
+        if (decode != null) decode.end(chunkCount);
+
+        return volumes;
+    }
+
+    private OrtSession.Result run(OnnxTensor inputTensor, CancelToken token) throws OrtException
+    {
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        inputs.put(inputName, inputTensor);
+        if (token == null) return session.run(inputs);
+
+        try (OrtSession.RunOptions options = new OrtSession.RunOptions())
+        {
+            token.register(options);
+            try
+            {
+                return session.run(inputs, options);
+            }
+            catch (OrtException e)
+            {
+                // A terminated run fails with a generic error; report it as the cancellation it is
+                token.throwIfCancelled();
+                throw e;
+            }
+            finally
+            {
+                token.unregister(options);
+            }
+        }
+    }
+
+    void warmUp(TensorPool pool) throws OrtException, InterruptedException
+    {
+        // One throwaway inference so the first player request doesn't pay for lazy ORT initialisation and JIT warm-up
+        FloatBuffer input = pool.acquire(FeatureEncoder.tensorSize(1, modelHeight));
+        try
+        {
+            for (int i = 0; i < input.limit(); i++)
+            {
+                input.put(i, 0.0f);
+            }
+            infer(input, 1, SlabLayout.centred(modelHeight, WORLD_CHUNK_HEIGHT));
+        }
+        finally
+        {
+            pool.release(input);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.ghosteau.generativeterrain.generation;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class TerrainPrecomputer
+{
+    /*
+    - Runs model inference for not-yet-generated chunks of one world ahead of time, so the chunk generator only copies a finished volume.
+    - Requested chunks wait in a deque, nearest first; a chunk Minecraft generates before its volume is ready gets noise terrain.
+    - Each job on the shared InferenceService runs one full batch and gives its worker back, queued behind interactive requests,
+      so prefetching can never hold every worker while players wait.
+    - Finished volumes are kept in insertion order up to a fixed count; requests that are never generated fall out of the back.
+    */
+
+    private static final int CHUNK_WIDTH = 16;
+    private static final int CHUNK_DEPTH = 16;
+    private static final int PREFETCH_PRIORITY = Integer.MAX_VALUE / 4; // behind interactive requests, ahead of pre-generation
+
+    private final NoiseTerrain terrain;
+    private final ModelRegistry models;
+    private final String modelName;
+    private final BlockPalette palette;
+    private final FeatureEncoder encoder;
+    private final TensorPool tensorPool;
+    private final InferenceService inferenceService;
+    private final int batchSize;
+    private final int slabOverlap;
+    private final int maxReady;
+    private final int maxJobs;
+    private final PipelineMetrics metrics;
+    private final Logger logger;
+
+    // Guarded by itself
+    private final LinkedHashMap<Long, CompletableFuture<BlockVolume>> volumes = new LinkedHashMap<>();
+    private final LinkedBlockingDeque<Long> pending = new LinkedBlockingDeque<>();
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    public TerrainPrecomputer(NoiseTerrain terrain, ModelRegistry models, String modelName, BlockPalette palette, FeatureEncoder encoder,
+                              TensorPool tensorPool, InferenceService inferenceService, int batchSize, int slabOverlap, int maxReady, int maxJobs,
+                              PipelineMetrics metrics, Logger logger)
+    {
+        this.terrain = terrain;
+        this.models = models;
+        this.modelName = modelName;
+        this.palette = palette;
+        this.encoder = encoder;
+        this.tensorPool = tensorPool;
+        this.inferenceService = inferenceService;
+        this.batchSize = batchSize;
+        this.slabOverlap = slabOverlap;
+        this.maxReady = maxReady;
+        this.maxJobs = Math.max(1, maxJobs);
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    public static long key(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public NoiseTerrain getTerrain()
+    {
+        return terrain;
+    }
+
+    public void request(int chunkX, int chunkZ)
+    {
+        long key = key(chunkX, chunkZ);
+        synchronized (volumes)
+        {
+            if (volumes.containsKey(key)) return;
+            volumes.put(key, new CompletableFuture<>());
+            trim();
+        }
+
+        pending.addLast(key);
+        pump();
+    }
+
+    public boolean isRequested(int chunkX, int chunkZ)
+    {
+        synchronized (volumes)
+        {
+            return volumes.containsKey(key(chunkX, chunkZ));
+        }
+    }
+
+    public BlockVolume take(int chunkX, int chunkZ, long maxWaitMillis)
+    {
+        // Called from the chunk generator; returns null (noise terrain) unless the volume is ready within the short wait
+        long key = key(chunkX, chunkZ);
+        CompletableFuture<BlockVolume> future;
+        synchronized (volumes)
+        {
+            future = volumes.remove(key);
+        }
+        if (future == null) return null;
+        if (!future.isDone()) pending.remove(key);
+
+        try
+        {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            return null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            logger.log(Level.WARNING, "Precomputing chunk " + chunkX + ", " + chunkZ + " failed", e.getCause());
+            return null;
+        }
+    }
+
+    public int readyCount()
+    {
+        int count = 0;
+        synchronized (volumes)
+        {
+            for (CompletableFuture<BlockVolume> future : volumes.values())
+            {
+                if (future.isDone()) count++;
+            }
+        }
+        return count;
+    }
+
+    public int pendingCount()
+    {
+        return pending.size();
+    }
+
+    private void trim()
+    {
+        // Oldest requests go first; a generator still waiting on one of them falls back to noise terrain
+        Iterator<CompletableFuture<BlockVolume>> eldest = volumes.values().iterator();
+        while (volumes.size() > maxReady && eldest.hasNext())
+        {
+            eldest.next().complete(null);
+            eldest.remove();
+        }
+    }
+
+    public void pump()
+    {
+        // Starts drain jobs until every worker has one or there is nothing left to do; rejected jobs are retried on the next pump
+        while (!pending.isEmpty())
+        {
+            int running = runningJobs.get();
+            if (running >= maxJobs) return;
+            if (!runningJobs.compareAndSet(running, running + 1)) continue;
+
+            InferenceService.Job job = new InferenceService.Job(PREFETCH_PRIORITY, estimateBatchBytes(), this::drain);
+            if (inferenceService.submit(job) != InferenceService.Admission.ACCEPTED)
+            {
+                runningJobs.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private long estimateBatchBytes()
+    {
+        // Input tensor, output logits plus their copy, and the decoded volumes of one batch
+        TerrainModel model = models.get(modelName);
+        int modelHeight = model != null ? model.getModelHeight() : 32;
+        int entries = Math.max(1, batchSize);
+        long slabVoxels = (long) CHUNK_WIDTH * modelHeight * CHUNK_DEPTH;
+        return FeatureEncoder.tensorSize(entries, modelHeight) * (long) Float.BYTES
+                + 2L * entries * palette.classCount() * slabVoxels * Float.BYTES
+                + (long) entries * CHUNK_WIDTH * (terrain.getMaxHeight() - terrain.getMinHeight()) * CHUNK_DEPTH * Short.BYTES;
+    }
+
+    private void drain()
+    {
+        // One batch per job; the finally block queues a new job if more work is pending
+        TerrainModel model = models.get(modelName);
+        boolean retained = model != null && model.retain();
+        FloatBuffer inputBuffer = null;
+        List<Long> batch = new ArrayList<>();
+        List<CompletableFuture<BlockVolume>> futures = new ArrayList<>();
+
+        try
+        {
+            SlabLayout layout = retained
+                    ? SlabLayout.fullColumn(model.getModelHeight(), terrain.getMaxHeight() - terrain.getMinHeight(), slabOverlap)
+                    : null;
+            int slabs = layout != null ? layout.slabCount() : 1;
+            int chunksPerBatch = Math.max(1, batchSize / slabs);
+
+            // Chunks already taken or evicted are skipped, but they don't count towards the batch
+            while (batch.isEmpty())
+            {
+                if (pending.isEmpty()) return;
+                while (batch.size() < chunksPerBatch)
+                {
+                    Long key = pending.pollFirst();
+                    if (key == null) break;
+
+                    CompletableFuture<BlockVolume> future;
+                    synchronized (volumes)
+                    {
+                        future = volumes.get(key);
+                    }
+                    if (future == null || future.isDone()) continue;
+
+                    batch.add(key);
+                    futures.add(future);
+                }
+            }
+
+            if (!retained)
+            {
+                // No model yet (still loading, or missing): the generator falls back to noise terrain
+                for (CompletableFuture<BlockVolume> future : futures) future.complete(null);
+                return;
+            }
+
+            inputBuffer = tensorPool.acquire(FeatureEncoder.tensorSize(batch.size() * slabs, model.getModelHeight()));
+            PipelineMetrics.Span encode = metrics.start(PipelineMetrics.Stage.ENCODE);
+            for (int i = 0; i < batch.size(); i++)
+            {
+                long key = batch.get(i);
+                NoiseNeighbourhood source = terrain.sample((int) (key >> 32), (int) key);
+                VoxelSource voxels = palette.voxels(source);
+                float chunkBiome = palette.biomeFeature(source.getBiome(8, 64, 8));
+                for (int slab = 0; slab < slabs; slab++)
+                {
+                    encoder.encode(inputBuffer, i * slabs + slab, voxels, chunkBiome,
+                            model.getModelHeight(), terrain.getMinHeight() + layout.slabStart(slab));
+                }
+            }
+
+            encode.end(batch.size());
+
+            BlockVolume[] predicted = model.infer(inputBuffer, batch.size(), layout, metrics);
+            tensorPool.release(inputBuffer);
+            inputBuffer = null;
+
+            for (int i = 0; i < futures.size(); i++)
+            {
+                futures.get(i).complete(predicted[i]);
+            }
+        }
+        catch (Exception e)
+        {
+            for (CompletableFuture<BlockVolume> future : futures) future.completeExceptionally(e);
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            tensorPool.release(inputBuffer);
+            if (retained) model.release();
+            runningJobs.decrementAndGet();
+            pump();
+        }
+    }
+
+    public void shutdown()
+    {
+        pending.clear();
+        synchronized (volumes)
+        {
+            for (Map.Entry<Long, CompletableFuture<BlockVolume>> entry : volumes.entrySet())
+            {
+                entry.getValue().complete(null);
+            }
+            volumes.clear();
+        }
+    }
+}
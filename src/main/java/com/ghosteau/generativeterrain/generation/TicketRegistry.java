@@ -0,0 +1,72 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public final class TicketRegistry
+{
+    /*
+    - The plugin's chunk tickets, counted per chunk. Paper keeps a single plugin ticket per chunk, so jobs sharing a chunk (a
+      harvest and a generation, two overlapping generations, neighbours of adjacent targets) can't each add and remove their own.
+    - The Paper ticket is added by the first holder and removed only when the last one lets go.
+    - One instance per plugin, shared by every ChunkTickets; main thread only.
+    */
+
+    private final Plugin plugin;
+    private final Map<UUID, Map<Long, Integer>> counts = new HashMap<>();
+
+    public TicketRegistry(Plugin plugin)
+    {
+        this.plugin = plugin;
+    }
+
+    public void acquire(Chunk chunk)
+    {
+        Map<Long, Integer> world = counts.computeIfAbsent(chunk.getWorld().getUID(), uid -> new HashMap<>());
+        if (world.merge(key(chunk.getX(), chunk.getZ()), 1, Integer::sum) == 1)
+        {
+            chunk.addPluginChunkTicket(plugin);
+        }
+    }
+
+    public void release(World world, int chunkX, int chunkZ)
+    {
+        Map<Long, Integer> held = counts.get(world.getUID());
+        if (held == null) return;
+
+        long key = key(chunkX, chunkZ);
+        Integer count = held.get(key);
+        if (count == null) return;
+
+        if (count > 1)
+        {
+            held.put(key, count - 1);
+            return;
+        }
+
+        held.remove(key);
+        if (held.isEmpty()) counts.remove(world.getUID());
+        world.removePluginChunkTicket(chunkX, chunkZ, plugin);
+    }
+
+    public int held()
+    {
+        // Chunks that currently carry the plugin's ticket
+        int total = 0;
+        for (Map<Long, Integer> world : counts.values())
+        {
+            total += world.size();
+        }
+        return total;
+    }
+
+    private static long key(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,571 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.ChunkSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public final class UndoJournal
+{
+    /*
+    - Records the prior block states of every position a generation job changes, before the changes are applied.
+    - One append-only journal per world region (32x32 chunks) at undo/<world>/r.<x>.<z>.journal, written through a memory-mapped window.
+    - Each record covers one chunk of one job: a small uncompressed header, then a deflated payload holding a palette of
+      block data strings and delta-encoded positions with palette indices, which keeps a typical chunk to a few KB.
+    - Undone or expired records are flagged in place; journals holding nothing but flagged records are deleted on the next start.
+    - Only the most recently written journals stay open (with their mapped window); the rest are closed and reopened on demand.
+    */
+
+    private static final int MAGIC = 0x47545531; // "GTU1"
+    private static final int HEADER_BYTES = 4 + 4 + 1 + 8 + 8 + 8 + 4 + 4;
+    private static final int FLAG_OFFSET = 8;
+    private static final int WINDOW_BYTES = 1 << 20;
+    private static final int MAX_OPEN_JOURNALS = 8;
+    private static final String FILE_SUFFIX = ".journal";
+
+    private final File folder;
+    private final int maxJobsPerPlayer;
+    private final Logger logger;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread thread = new Thread(r, "GenerativeTerrain-Journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private final LinkedHashMap<File, JournalFile> open = new LinkedHashMap<File, JournalFile>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, JournalFile> eldest)
+        {
+            if (size() <= MAX_OPEN_JOURNALS) return false;
+            closeJournal(eldest.getValue());
+            return true;
+        }
+    };
+    private final Map<UUID, TreeMap<Long, List<RecordRef>>> jobs = new HashMap<>();
+    private final Set<Long> pendingJobs = new HashSet<>();
+    private final AtomicLong nextJobId;
+
+    public UndoJournal(File folder, int maxJobsPerPlayer, Logger logger)
+    {
+        this.folder = folder;
+        this.maxJobsPerPlayer = Math.max(1, maxJobsPerPlayer);
+        this.logger = logger;
+
+        long maxJobId = 0;
+        File[] worlds = folder.listFiles(File::isDirectory);
+        if (worlds != null)
+        {
+            for (File world : worlds)
+            {
+                File[] journals = world.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+                if (journals == null) continue;
+
+                for (File journal : journals)
+                {
+                    try
+                    {
+                        maxJobId = Math.max(maxJobId, index(journal));
+                    }
+                    catch (IOException e)
+                    {
+                        logger.log(Level.WARNING, "Could not read undo journal " + journal, e);
+                    }
+                }
+            }
+        }
+
+        this.nextJobId = new AtomicLong(Math.max(maxJobId + 1, System.currentTimeMillis()));
+    }
+
+    public synchronized long beginJob(UUID player)
+    {
+        // The job only joins the player's undoable jobs with its first record, so a job that changes nothing doesn't push
+        // an older one out of the retention limit
+        long jobId = nextJobId.getAndIncrement();
+        pendingJobs.add(jobId);
+        return jobId;
+    }
+
+    public void record(UUID player, long jobId, ChunkSnapshot before, ChangeList changes) throws IOException
+    {
+        if (changes.size() == 0) return;
+
+        // Palette-encode the previous states, then deflate them together with the delta-coded positions
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(4096);
+        Map<String, Integer> palette = new LinkedHashMap<>();
+        int[] states = new int[changes.size()];
+        for (int i = 0; i < changes.size(); i++)
+        {
+            String state = before.getBlockData(changes.x(i), changes.y(i), changes.z(i)).getAsString();
+            Integer id = palette.get(state);
+            if (id == null)
+            {
+                id = palette.size();
+                palette.put(state, id);
+            }
+            states[i] = id;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED))))
+        {
+            writeVarInt(out, palette.size());
+            for (String state : palette.keySet())
+            {
+                out.writeUTF(state);
+            }
+
+            writeVarInt(out, changes.size());
+            int previous = 0;
+            for (int i = 0; i < changes.size(); i++)
+            {
+                writeVarInt(out, changes.index(i) - previous);
+                writeVarInt(out, states[i]);
+                previous = changes.index(i);
+            }
+        }
+
+        byte[] payload = compressed.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(MAGIC).putInt(payload.length).put((byte) 0).putLong(jobId)
+                .putLong(player.getMostSignificantBits()).putLong(player.getLeastSignificantBits())
+                .putInt(before.getX()).putInt(before.getZ()).put(payload);
+        record.flip();
+
+        File file = journalFile(before.getWorldName(), before.getX(), before.getZ());
+        synchronized (this)
+        {
+            JournalFile journal = open.get(file);
+            if (journal == null)
+            {
+                journal = new JournalFile(file);
+                open.put(file, journal);
+            }
+
+            long offset = journal.append(record);
+
+            TreeMap<Long, List<RecordRef>> playerJobs = jobs.computeIfAbsent(player, k -> new TreeMap<>());
+            if (pendingJobs.remove(jobId))
+            {
+                playerJobs.put(jobId, new ArrayList<>());
+                trim(playerJobs);
+            }
+
+            // A job that was already trimmed or undone keeps its record flagged straight away
+            List<RecordRef> refs = playerJobs.get(jobId);
+            RecordRef ref = new RecordRef(file, offset, before.getX(), before.getZ());
+            if (refs != null)
+            {
+                refs.add(ref);
+            }
+            else
+            {
+                flag(List.of(ref));
+            }
+        }
+    }
+
+    public synchronized List<Long> newestJobs(UUID player, int count)
+    {
+        // The player's newest undoable jobs, newest first
+        List<Long> newest = new ArrayList<>();
+        NavigableMap<Long, List<RecordRef>> playerJobs = jobs.get(player);
+        if (playerJobs == null) return newest;
+
+        for (Map.Entry<Long, List<RecordRef>> job : playerJobs.descendingMap().entrySet())
+        {
+            if (newest.size() >= count) break;
+            if (!job.getValue().isEmpty()) newest.add(job.getKey());
+        }
+        return newest;
+    }
+
+    public synchronized Map<String, List<long[]>> chunksOf(UUID player, List<Long> jobIds)
+    {
+        // Every chunk the given jobs changed, once each, by world name; an undo claims these before it starts
+        Map<String, List<long[]>> chunks = new LinkedHashMap<>();
+        Map<String, Set<Long>> seen = new HashMap<>();
+        NavigableMap<Long, List<RecordRef>> playerJobs = jobs.get(player);
+        if (playerJobs == null) return chunks;
+
+        for (long jobId : jobIds)
+        {
+            List<RecordRef> refs = playerJobs.get(jobId);
+            if (refs == null) continue;
+
+            for (RecordRef ref : refs)
+            {
+                String world = ref.file.getParentFile().getName();
+                long key = ((long) ref.chunkX << 32) | (ref.chunkZ & 0xFFFFFFFFL);
+                if (seen.computeIfAbsent(world, k -> new HashSet<>()).add(key))
+                {
+                    chunks.computeIfAbsent(world, k -> new ArrayList<>()).add(new long[]{ref.chunkX, ref.chunkZ});
+                }
+            }
+        }
+        return chunks;
+    }
+
+    public CompletableFuture<Integer> undo(UUID player, List<Long> jobIds, Consumer<UndoRecord> sink)
+    {
+        // Reads the given jobs (in the order given) on the journal thread and streams each chunk record to the sink; jobs
+        // recorded after the ids were picked are left alone
+        return CompletableFuture.supplyAsync(() ->
+        {
+            List<List<RecordRef>> undone = new ArrayList<>();
+            synchronized (this)
+            {
+                NavigableMap<Long, List<RecordRef>> playerJobs = jobs.get(player);
+                if (playerJobs != null)
+                {
+                    for (long jobId : jobIds)
+                    {
+                        List<RecordRef> refs = playerJobs.remove(jobId);
+                        if (refs != null && !refs.isEmpty()) undone.add(refs);
+                    }
+                }
+            }
+
+            for (List<RecordRef> refs : undone)
+            {
+                for (RecordRef ref : refs)
+                {
+                    try
+                    {
+                        sink.accept(read(ref));
+                    }
+                    catch (IOException e)
+                    {
+                        logger.log(Level.WARNING, "Could not read undo record in " + ref.file, e);
+                    }
+                }
+
+                synchronized (this)
+                {
+                    flag(refs);
+                }
+            }
+
+            return undone.size();
+        }, io);
+    }
+
+    public synchronized int undoableJobs(UUID player)
+    {
+        TreeMap<Long, List<RecordRef>> playerJobs = jobs.get(player);
+        if (playerJobs == null) return 0;
+
+        int count = 0;
+        for (List<RecordRef> refs : playerJobs.values())
+        {
+            if (!refs.isEmpty()) count++;
+        }
+        return count;
+    }
+
+    private UndoRecord read(RecordRef ref) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(ref.file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, ref.offset);
+            header.flip();
+            if (header.getInt() != MAGIC) throw new IOException("Corrupt undo record at " + ref.offset);
+
+            int payloadLength = header.getInt();
+            header.get();
+            header.getLong();
+            header.getLong();
+            header.getLong();
+            int chunkX = header.getInt();
+            int chunkZ = header.getInt();
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, ref.offset + HEADER_BYTES, payloadLength);
+            byte[] payload = new byte[payloadLength];
+            mapped.get(payload);
+
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload))))
+            {
+                String[] palette = new String[readVarInt(in)];
+                for (int i = 0; i < palette.length; i++)
+                {
+                    palette[i] = in.readUTF();
+                }
+
+                int size = readVarInt(in);
+                int[] positions = new int[size];
+                int[] states = new int[size];
+                int position = 0;
+                for (int i = 0; i < size; i++)
+                {
+                    position += readVarInt(in);
+                    positions[i] = position;
+                    states[i] = readVarInt(in);
+                }
+
+                return new UndoRecord(ref.file.getParentFile().getName(), chunkX, chunkZ, palette, positions, states);
+            }
+        }
+    }
+
+    private long index(File file) throws IOException
+    {
+        // Registers every live record of a journal and deletes the journal if none are left
+        long maxJobId = 0;
+        boolean live = false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            long offset = 0;
+            while (offset + HEADER_BYTES <= channel.size())
+            {
+                header.clear();
+                channel.read(header, offset);
+                header.flip();
+                if (header.getInt() != MAGIC) break;
+
+                int payloadLength = header.getInt();
+                boolean flagged = header.get() != 0;
+                long jobId = header.getLong();
+                UUID player = new UUID(header.getLong(), header.getLong());
+                int chunkX = header.getInt();
+                int chunkZ = header.getInt();
+                maxJobId = Math.max(maxJobId, jobId);
+
+                if (!flagged)
+                {
+                    live = true;
+                    jobs.computeIfAbsent(player, k -> new TreeMap<>()).computeIfAbsent(jobId, k -> new ArrayList<>()).add(new RecordRef(file, offset, chunkX, chunkZ));
+                }
+                offset += HEADER_BYTES + payloadLength;
+            }
+        }
+
+        if (!live && !file.delete())
+        {
+            logger.fine("Could not delete spent undo journal " + file);
+        }
+
+        // Apply the retention limit to what was found on disk as well
+        for (TreeMap<Long, List<RecordRef>> playerJobs : jobs.values())
+        {
+            trim(playerJobs);
+        }
+
+        return maxJobId;
+    }
+
+    private void trim(TreeMap<Long, List<RecordRef>> playerJobs)
+    {
+        // Only the newest jobs stay undoable; older records are flagged so their journals can be cleaned up
+        while (playerJobs.size() > maxJobsPerPlayer)
+        {
+            flag(playerJobs.pollFirstEntry().getValue());
+        }
+    }
+
+    private void flag(List<RecordRef> refs)
+    {
+        ByteBuffer flagged = ByteBuffer.allocate(1);
+        for (RecordRef ref : refs)
+        {
+            try (FileChannel channel = FileChannel.open(ref.file.toPath(), StandardOpenOption.WRITE))
+            {
+                flagged.clear();
+                flagged.put(0, (byte) 1);
+                channel.write(flagged, ref.offset + FLAG_OFFSET);
+            }
+            catch (IOException e)
+            {
+                logger.log(Level.WARNING, "Could not flag undo record in " + ref.file, e);
+            }
+        }
+    }
+
+    private File journalFile(String worldName, int chunkX, int chunkZ)
+    {
+        return new File(new File(folder, worldName), "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + FILE_SUFFIX);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public synchronized void close()
+    {
+        io.shutdownNow();
+        for (JournalFile journal : open.values())
+        {
+            closeJournal(journal);
+        }
+        open.clear();
+    }
+
+    private void closeJournal(JournalFile journal)
+    {
+        try
+        {
+            journal.close();
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not close undo journal " + journal.file, e);
+        }
+    }
+
+    private static final class RecordRef
+    {
+        private final File file;
+        private final long offset;
+        private final int chunkX;
+        private final int chunkZ;
+
+        private RecordRef(File file, long offset, int chunkX, int chunkZ)
+        {
+            this.file = file;
+            this.offset = offset;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+    }
+
+    private static final class JournalFile
+    {
+        // Appends go through a mapped window past the end of the journal; the unused tail is truncated on close, once the
+        // window is unmapped (Windows refuses to truncate a file that is still mapped)
+
+        private final File file;
+        private final FileChannel channel;
+        private long end;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        private JournalFile(File file) throws IOException
+        {
+            this.file = file;
+            File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs())
+            {
+                throw new IOException("Could not create " + parent);
+            }
+
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            // Find the end of the last complete record; a previous unclean shutdown may have left a zero-filled tail
+            ByteBuffer header = ByteBuffer.allocate(8);
+            long offset = 0;
+            while (offset + HEADER_BYTES <= channel.size())
+            {
+                header.clear();
+                channel.read(header, offset);
+                header.flip();
+                if (header.getInt() != MAGIC) break;
+                offset += HEADER_BYTES + header.getInt();
+            }
+            this.end = offset;
+        }
+
+        private long append(ByteBuffer record) throws IOException
+        {
+            int length = record.remaining();
+            if (window == null || end + length > windowStart + window.capacity())
+            {
+                // The old window goes first, so the file never has more than one live mapping
+                if (window != null) unmap(window);
+                windowStart = end;
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW_BYTES, length));
+            }
+
+            window.position((int) (end - windowStart));
+            window.put(record);
+
+            long offset = end;
+            end += length;
+            return offset;
+        }
+
+        private void close() throws IOException
+        {
+            boolean unmapped = true;
+            if (window != null)
+            {
+                window.force();
+                unmapped = unmap(window);
+                window = null;
+            }
+
+            // Without an unmap the zero-filled tail stays; readers stop at it and the next open appends over it
+            if (unmapped) channel.truncate(end);
+            channel.close();
+        }
+
+        private static boolean unmap(MappedByteBuffer buffer)
+        {
+            // The JDK has no public unmap; Unsafe.invokeCleaner releases the mapping now instead of whenever it is collected
+            try
+            {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+                return true;
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ghosteau.generativeterrain.generation;
+
+public final class UndoRecord
+{
+    /*
+    - Prior block states of one chunk, as read back from the undo journal.
+    - States are palette-encoded: each position refers to one of the distinct block data strings recorded for that chunk.
+    - Positions are BlockVolume indices (x-major, then y, then z) over the full world column.
+    */
+
+    private static final int CHUNK_DEPTH = 16;
+    private static final int COLUMN_HEIGHT = 384;
+    private static final int MIN_Y = -64;
+
+    private final String worldName;
+    private final int chunkX;
+    private final int chunkZ;
+    private final String[] palette;
+    private final int[] positions;
+    private final int[] states;
+
+    UndoRecord(String worldName, int chunkX, int chunkZ, String[] palette, int[] positions, int[] states)
+    {
+        this.worldName = worldName;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.palette = palette;
+        this.positions = positions;
+        this.states = states;
+    }
+
+    public String getWorldName()
+    {
+        return worldName;
+    }
+
+    public int getChunkX()
+    {
+        return chunkX;
+    }
+
+    public int getChunkZ()
+    {
+        return chunkZ;
+    }
+
+    public String[] getPalette()
+    {
+        return palette;
+    }
+
+    public int size()
+    {
+        return positions.length;
+    }
+
+    public int state(int i)
+    {
+        return states[i];
+    }
+
+    public int x(int i)
+    {
+        return positions[i] / (COLUMN_HEIGHT * CHUNK_DEPTH);
+    }
+
+    public int y(int i)
+    {
+        // World Y, not the column row
+        return (positions[i] / CHUNK_DEPTH) % COLUMN_HEIGHT + MIN_Y;
+    }
+
+    public int z(int i)
+    {
+        return positions[i] % CHUNK_DEPTH;
+    }
+}
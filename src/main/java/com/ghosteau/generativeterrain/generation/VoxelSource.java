@@ -0,0 +1,16 @@
+package com.ghosteau.generativeterrain.generation;
+
+public interface VoxelSource
+{
+    // One chunk as the model sees it: block and biome ids from the training mappings instead of Bukkit types, so encoding
+    // and diffing can run without a server. Local x and z may step one block outside the chunk (-1 or 16).
+    // BlockPalette.voxels adapts any BlockSource; offline tools implement it over exported chunk data.
+
+    int getBlockId(int x, int y, int z);
+
+    boolean isAir(int x, int y, int z);
+
+    int getLightLevel(int x, int y, int z);
+
+    int getBiomeId(int x, int y, int z);
+}
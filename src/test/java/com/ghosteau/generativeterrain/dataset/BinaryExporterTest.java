@@ -0,0 +1,164 @@
+package com.ghosteau.generativeterrain.dataset;
+
+import com.ghosteau.generativeterrain.generation.BlockSource;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryExporterTest
+{
+    private static final int HEADER_BYTES = 64;
+    private static final int TABLE_ENTRY_BYTES = 24;
+    private static final int SECTIONS = 24;
+    private static final int SECTION_ROWS = 4096;
+
+    // Sources without biome data report null, which the sample labels "null"
+    private static final String NO_BIOME = "null";
+
+    @Test
+    void headerPaletteAndSectionTableMatchTheLayout() throws IOException
+    {
+        ChunkSample sample = ChunkSample.assemble(new LayeredSource(), "world", 3, -2, NO_BIOME);
+        ByteBuffer file = export(sample);
+
+        assertEquals(0x31435447, file.getInt(0));
+        assertEquals(1, file.getShort(4));
+        assertEquals(1, file.get(6));                   // index width: both palettes fit in a byte
+        assertEquals(SECTIONS, file.get(7));
+        assertEquals(3, file.getInt(8));
+        assertEquals(-2, file.getInt(12));
+        assertEquals(-64, file.getShort(16));
+        assertEquals(384, file.getShort(18));
+        assertEquals(sample.getBlockPalette().size(), file.getShort(20));
+        assertEquals(1, file.getShort(22));
+        assertEquals(0, file.getShort(24));             // chunk biome index
+
+        byte[] palette = paletteText(sample).getBytes(StandardCharsets.UTF_8);
+        int tableOffset = HEADER_BYTES + palette.length;
+        int dataOffset = file.getInt(36);
+        int sectionBytes = file.getInt(40);
+        assertEquals(palette.length, file.getInt(28));
+        assertEquals(tableOffset, file.getInt(32));
+        assertEquals(0, dataOffset % 64);
+        assertTrue(dataOffset >= tableOffset + SECTIONS * TABLE_ENTRY_BYTES);
+        assertTrue(dataOffset < tableOffset + SECTIONS * TABLE_ENTRY_BYTES + 64);
+        assertEquals(SECTION_ROWS * (8 + 2), sectionBytes);
+
+        byte[] written = new byte[palette.length];
+        file.position(HEADER_BYTES);
+        file.get(written);
+        assertEquals(Arrays.toString(palette), Arrays.toString(written));
+
+        // Only the sections holding the void floor, the ground surface and the build limit differ from row to row
+        List<Integer> stored = Arrays.asList(0, 3, 4, 23);
+        int next = dataOffset;
+        for (int section = 0; section < SECTIONS; section++)
+        {
+            int offset = file.getInt(tableOffset + section * TABLE_ENTRY_BYTES);
+            if (stored.contains(section))
+            {
+                assertEquals(next, offset, "section " + section);
+                next += sectionBytes;
+            }
+            else
+            {
+                assertEquals(-1, offset, "section " + section);
+            }
+        }
+        assertEquals(next, file.limit());
+    }
+
+    @Test
+    void elidedSectionsCarryTheirConstantValues() throws IOException
+    {
+        ChunkSample sample = ChunkSample.assemble(new LayeredSource(), "world", 0, 0, NO_BIOME);
+        ByteBuffer file = export(sample);
+        int tableOffset = file.getInt(32);
+        short stone = (short) sample.getBlockPalette().indexOf("STONE");
+        short air = (short) sample.getBlockPalette().indexOf("AIR");
+
+        // Entry: offset, then block, biome, left, right, below, above, front and behind as shorts, then surface and light
+        int underground = tableOffset + TABLE_ENTRY_BYTES;
+        assertEquals(stone, file.getShort(underground + 4));
+        assertEquals(stone, file.getShort(underground + 14));
+        assertEquals(0, file.get(underground + 20));
+        assertEquals(15, file.get(underground + 21));
+
+        // Only the top of the stone is surface, not the air above it
+        int sky = tableOffset + 10 * TABLE_ENTRY_BYTES;
+        assertEquals(air, file.getShort(sky + 4));
+        assertEquals(0, file.get(sky + 20));
+    }
+
+    @Test
+    void sectionDataIsColumnMajorInSampleOrder() throws IOException
+    {
+        ChunkSample sample = ChunkSample.assemble(new LayeredSource(), "world", 0, 0, NO_BIOME);
+        ByteBuffer file = export(sample);
+        int bottom = file.getInt(file.getInt(32));
+        int voidAir = sample.getBlockPalette().indexOf("VOID_AIR");
+        int stone = sample.getBlockPalette().indexOf("STONE");
+
+        // Each column is one section's rows (x, y, z); the first row is x 0, y -64, z 0 and the 17th is x 0, y -63, z 0
+        assertEquals(stone, file.get(bottom));
+        assertEquals(voidAir, file.get(bottom + 4 * SECTION_ROWS));
+        assertEquals(stone, file.get(bottom + 4 * SECTION_ROWS + 16));
+
+        // After the eight indexed columns come surface and light as bytes
+        assertEquals(15, file.get(bottom + 8 * SECTION_ROWS + SECTION_ROWS));
+    }
+
+    private static ByteBuffer export(ChunkSample sample) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(out))
+        {
+            BinaryExporter.write(sample, channel);
+        }
+        return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String paletteText(ChunkSample sample)
+    {
+        StringBuilder lines = new StringBuilder(sample.getWorldName()).append('\n');
+        for (String name : sample.getBlockPalette()) lines.append(name).append('\n');
+        for (String name : sample.getBiomePalette()) lines.append(name).append('\n');
+        return lines.toString();
+    }
+
+    private static final class LayeredSource implements BlockSource
+    {
+        // Stone below y 0 and air above it, full light and no biome data
+
+        @Override
+        public Material getType(int x, int y, int z)
+        {
+            return y < 0 ? Material.STONE : Material.AIR;
+        }
+
+        @Override
+        public int getLightLevel(int x, int y, int z)
+        {
+            return 15;
+        }
+
+        @Override
+        public Biome getBiome(int x, int y, int z)
+        {
+            return null;
+        }
+    }
+}
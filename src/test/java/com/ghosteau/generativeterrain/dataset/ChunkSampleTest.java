@@ -0,0 +1,77 @@
+package com.ghosteau.generativeterrain.dataset;
+
+import com.ghosteau.generativeterrain.generation.BlockSource;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkSampleTest
+{
+    @Test
+    void surfaceIsTheHighestBlockOfEachColumn()
+    {
+        // A cave under the ground has air above its floor, but only the top of the ground is surface
+        ChunkSample sample = ChunkSample.assemble(new CaveSource(), "world", 0, 0, "null");
+
+        for (int row = 0; row < ChunkSample.ROWS; row++)
+        {
+            int x = ChunkSample.x(row);
+            int z = ChunkSample.z(row);
+            int expected = !(x == 0 && z == 0) && ChunkSample.y(row) == CaveSource.GROUND ? 1 : 0;
+            assertEquals(expected, sample.getSurface()[row], "x " + x + ", y " + ChunkSample.y(row) + ", z " + z);
+        }
+    }
+
+    @Test
+    void heightmapDecidesTheSurface()
+    {
+        // The server's heightmap wins over whatever the block types suggest, and a column below MIN_Y has no surface
+        int[] surfaceY = new int[ChunkSample.CHUNK_WIDTH * ChunkSample.CHUNK_DEPTH];
+        Arrays.fill(surfaceY, CaveSource.GROUND);
+        surfaceY[2 * ChunkSample.CHUNK_DEPTH + 3] = 40;
+        surfaceY[5 * ChunkSample.CHUNK_DEPTH + 5] = ChunkSample.MIN_Y - 1;
+        ChunkSample sample = ChunkSample.assemble(new CaveSource(), surfaceY, "world", 0, 0, "null");
+
+        int surfaces = 0;
+        for (int row = 0; row < ChunkSample.ROWS; row++)
+        {
+            if (sample.getSurface()[row] == 0) continue;
+            surfaces++;
+            int x = ChunkSample.x(row);
+            int z = ChunkSample.z(row);
+            assertEquals(surfaceY[x * ChunkSample.CHUNK_DEPTH + z], ChunkSample.y(row), "x " + x + ", z " + z);
+        }
+        assertEquals(ChunkSample.CHUNK_WIDTH * ChunkSample.CHUNK_DEPTH - 1, surfaces);
+    }
+
+    private static final class CaveSource implements BlockSource
+    {
+        // Stone up to GROUND with a cave at y -30 to -20; the column at x 0, z 0 is air all the way down
+
+        private static final int GROUND = 62;
+
+        @Override
+        public Material getType(int x, int y, int z)
+        {
+            if (x == 0 && z == 0) return Material.AIR;
+            if (y >= -30 && y <= -20) return Material.AIR;
+            return y <= GROUND ? Material.STONE : Material.AIR;
+        }
+
+        @Override
+        public int getLightLevel(int x, int y, int z)
+        {
+            return y > GROUND ? 15 : 0;
+        }
+
+        @Override
+        public Biome getBiome(int x, int y, int z)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Biome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockPaletteTest
+{
+    @TempDir
+    Path folder;
+
+    @Test
+    void blockNamesRoundTripThroughClassIds() throws IOException
+    {
+        // Class 3 isn't a material and class 4 is missing; both decode as air
+        BlockPalette palette = load("{\"0\": \"AIR\", \"1\": \"STONE\", \"2\": \"GRASS_BLOCK\", \"3\": \"NOT_A_BLOCK\", \"5\": \"WATER\"}", "{}");
+
+        assertEquals(6, palette.classCount());
+        for (int classId : new int[]{0, 1, 2, 5})
+        {
+            assertEquals(classId, (int) palette.blockFeature(palette.decode(classId)), "class " + classId);
+        }
+        assertEquals(Material.STONE, palette.decode(1));
+        assertEquals(Material.AIR, palette.decode(3));
+        assertEquals(Material.AIR, palette.decode(4));
+        assertEquals(Material.AIR, palette.decode(6));
+        assertEquals(Material.AIR, palette.decode(-1));
+
+        // Materials the mapping doesn't name encode as 0
+        assertEquals(0.0f, palette.blockFeature(Material.DEEPSLATE));
+        assertTrue(warnings.stream().anyMatch(message -> message.contains("NOT_A_BLOCK")));
+    }
+
+    @Test
+    void biomeNamesResolveToNamespacedKeys() throws IOException
+    {
+        // Exported enum names become minecraft keys; datapack biomes keep their namespace; invalid keys are reported and skipped
+        BlockPalette palette = load("{\"0\": \"AIR\"}", "{\"PLAINS\": 1, \"DESERT\": 4, \"mypack:glacier\": 9, \"bad key!\": 3}");
+
+        assertEquals(1.0f, palette.biomeFeature(NamespacedKey.minecraft("plains")));
+        assertEquals(4.0f, palette.biomeFeature(NamespacedKey.fromString("minecraft:desert")));
+        assertEquals(9.0f, palette.biomeFeature(NamespacedKey.fromString("mypack:glacier")));
+        assertEquals(0.0f, palette.biomeFeature(NamespacedKey.minecraft("glacier")));
+        assertEquals(0.0f, palette.biomeFeature(NamespacedKey.minecraft("ocean")));
+        assertEquals(0.0f, palette.biomeFeature((Biome) null));
+        assertEquals(10, palette.biomeCount());
+        assertTrue(warnings.stream().anyMatch(message -> message.contains("bad key!")));
+    }
+
+    @Test
+    void paletteWithoutMappingFiles()
+    {
+        BlockPalette palette = BlockPalette.of(new Material[]{Material.AIR, Material.STONE, null, Material.SAND});
+
+        assertEquals(4, palette.classCount());
+        assertEquals(1, palette.biomeCount());
+        assertEquals(3.0f, palette.blockFeature(Material.SAND));
+        assertEquals(Material.AIR, palette.decode(2));
+        assertEquals(0.0f, palette.biomeFeature(NamespacedKey.minecraft("plains")));
+    }
+
+    @Test
+    void voxelsViewUsesClassIds()
+    {
+        BlockPalette palette = BlockPalette.of(new Material[]{Material.AIR, Material.STONE, Material.DIRT});
+        VoxelSource voxels = palette.voxels(new BlockSource()
+        {
+            @Override
+            public Material getType(int x, int y, int z)
+            {
+                return y < 0 ? Material.STONE : y == 0 ? Material.DIRT : Material.AIR;
+            }
+
+            @Override
+            public int getLightLevel(int x, int y, int z)
+            {
+                return y > 0 ? 15 : 0;
+            }
+
+            @Override
+            public Biome getBiome(int x, int y, int z)
+            {
+                return null;
+            }
+        });
+
+        assertEquals(1, voxels.getBlockId(-1, -5, 16));
+        assertEquals(2, voxels.getBlockId(3, 0, 3));
+        assertEquals(0, voxels.getBlockId(3, 1, 3));
+        assertTrue(voxels.isAir(3, 1, 3));
+        assertEquals(15, voxels.getLightLevel(3, 1, 3));
+        assertEquals(0, voxels.getBiomeId(3, 1, 3));
+    }
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private BlockPalette load(String blocks, String biomes) throws IOException
+    {
+        File blockFile = folder.resolve("block_id_mapping.json").toFile();
+        File biomeFile = folder.resolve("biome_id_mapping.json").toFile();
+        Files.write(blockFile.toPath(), blocks.getBytes(StandardCharsets.UTF_8));
+        Files.write(biomeFile.toPath(), biomes.getBytes(StandardCharsets.UTF_8));
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler()
+        {
+            @Override
+            public void publish(LogRecord record)
+            {
+                warnings.add(record.getMessage());
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        });
+        return BlockPalette.load(blockFile, biomeFile, logger);
+    }
+}
@@ -0,0 +1,124 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BlockVolumeTest
+{
+    private static final int WIDTH = 2;
+    private static final int DEPTH = 3;
+    private static final int MODEL_HEIGHT = 4;
+    private static final int CLASSES = 5;
+
+    @Test
+    void argmaxPicksTheBestClassOfEveryVoxel()
+    {
+        // Two batch entries; the second one's winners are expected, the first one's are the opposite
+        FloatBuffer logits = FloatBuffer.allocate(2 * CLASSES * WIDTH * MODEL_HEIGHT * DEPTH);
+        Random random = new Random(3);
+        for (int batch = 0; batch < 2; batch++)
+        {
+            for (int x = 0; x < WIDTH; x++)
+            {
+                for (int y = 0; y < MODEL_HEIGHT; y++)
+                {
+                    for (int z = 0; z < DEPTH; z++)
+                    {
+                        int winner = batch == 1 ? expected(x, y, z) : CLASSES - 1 - expected(x, y, z);
+                        for (int c = 0; c < CLASSES; c++)
+                        {
+                            float score = c == winner ? 5.0f : random.nextFloat() * 4.0f - 2.0f;
+                            logits.put(logit(batch, c, x, y, z), score);
+                        }
+                    }
+                }
+            }
+        }
+
+        BlockVolume volume = new BlockVolume(WIDTH, 10, DEPTH);
+        volume.decodeArgmax(logits, 1, CLASSES, MODEL_HEIGHT, 3);
+
+        for (int x = 0; x < WIDTH; x++)
+        {
+            for (int y = 0; y < 10; y++)
+            {
+                for (int z = 0; z < DEPTH; z++)
+                {
+                    int modelY = y - 3;
+                    int want = modelY >= 0 && modelY < MODEL_HEIGHT ? expected(x, modelY, z) : BlockVolume.UNSET;
+                    assertEquals(want, volume.get(x, y, z), "x " + x + ", y " + y + ", z " + z);
+                }
+            }
+        }
+    }
+
+    @Test
+    void layersOutsideTheColumnAreDropped()
+    {
+        FloatBuffer logits = FloatBuffer.allocate(CLASSES * WIDTH * MODEL_HEIGHT * DEPTH);
+        for (int y = 0; y < MODEL_HEIGHT; y++)
+        {
+            logits.put(logit(0, y + 1, 0, y, 0), 1.0f);
+        }
+
+        // Model layers 0 and 1 would land below the column, layer 3 above it
+        BlockVolume volume = new BlockVolume(WIDTH, 3, DEPTH);
+        volume.decodeArgmax(logits, 0, CLASSES, MODEL_HEIGHT, -2);
+        assertEquals(3, volume.get(0, 0, 0));
+        assertEquals(4, volume.get(0, 1, 0));
+        assertEquals(BlockVolume.UNSET, volume.get(0, 2, 0));
+    }
+
+    @Test
+    void tiesGoToTheLowestClass()
+    {
+        FloatBuffer logits = FloatBuffer.allocate(CLASSES * WIDTH * MODEL_HEIGHT * DEPTH);
+        logits.put(logit(0, 2, 1, 1, 1), 0.5f);
+        logits.put(logit(0, 4, 1, 1, 1), 0.5f);
+
+        BlockVolume volume = new BlockVolume(WIDTH, MODEL_HEIGHT, DEPTH);
+        volume.decodeArgmax(logits, 0, CLASSES, MODEL_HEIGHT, 0);
+        assertEquals(2, volume.get(1, 1, 1));
+        assertEquals(0, volume.get(0, 0, 0));
+    }
+
+    @Test
+    void copiesAndBuffersRoundTrip()
+    {
+        BlockVolume volume = new BlockVolume(16, 384, 16);
+        volume.set(15, 383, 15, 181);
+        volume.set(0, 0, 0, 7);
+        assertEquals(volume.index(15, 383, 15), volume.size() - 1);
+
+        BlockVolume copy = volume.copy();
+        volume.set(0, 0, 0, 8);
+        assertEquals(7, copy.get(0, 0, 0));
+        assertEquals(181, copy.get(15, 383, 15));
+        assertEquals(BlockVolume.UNSET, copy.get(3, 100, 3));
+
+        ShortBuffer buffer = ShortBuffer.allocate(copy.size());
+        copy.write(buffer);
+        buffer.flip();
+        BlockVolume read = BlockVolume.read(buffer, 16, 384, 16);
+        for (int i = 0; i < read.size(); i++)
+        {
+            assertEquals(copy.get(i), read.get(i));
+        }
+    }
+
+    private static int expected(int x, int y, int z)
+    {
+        return (x + 2 * y + 3 * z) % CLASSES;
+    }
+
+    private static int logit(int batch, int classId, int x, int y, int z)
+    {
+        // [batch][class][x][y][z]
+        return (((batch * CLASSES + classId) * WIDTH + x) * MODEL_HEIGHT + y) * DEPTH + z;
+    }
+}
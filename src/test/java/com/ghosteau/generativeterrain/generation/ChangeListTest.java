@@ -0,0 +1,133 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeListTest
+{
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 384;
+    private static final int DEPTH = 16;
+    private static final int MIN_Y = -64;
+
+    @Test
+    void diffKeepsOnlyChangedCellsAndDecodesThem()
+    {
+        // Stone up to y 0 in the world; the prediction changes a handful of cells and leaves the rest unset or equal
+        VoxelSource world = new LayeredSource();
+        BlockVolume predicted = new BlockVolume(WIDTH, HEIGHT, DEPTH);
+        predicted.set(0, 0, 0, 1);                 // y -64: stone -> stone, unchanged
+        predicted.set(3, 10, 7, 5);                // y -54: stone -> 5
+        predicted.set(15, 64, 15, 0);              // y 0: air -> air, unchanged
+        predicted.set(15, 65, 15, 2);              // y 1: air -> 2
+        predicted.set(8, 383, 2, 32767);           // y 319: air -> largest class id
+        predicted.set(0, 63, 0, 0);                // y -1: stone -> air
+
+        ChangeList changes = ChangeList.diff(predicted, world);
+        assertEquals(4, changes.size());
+
+        int[][] expected = {
+                {0, -1, 0, 0},
+                {3, -54, 7, 5},
+                {8, 319, 2, 32767},
+                {15, 1, 15, 2}
+        };
+        for (int i = 0; i < changes.size(); i++)
+        {
+            assertEquals(expected[i][0], changes.x(i));
+            assertEquals(expected[i][1], changes.y(i));
+            assertEquals(expected[i][2], changes.z(i));
+            assertEquals(expected[i][3], changes.classId(i));
+            assertEquals(predicted.index(changes.x(i), changes.y(i) - MIN_Y, changes.z(i)), changes.index(i));
+            if (i > 0) assertTrue(changes.index(i) > changes.index(i - 1), "entries must stay in walk order");
+        }
+    }
+
+    @Test
+    void sectionOrderGroupsBySectionAndKeepsWalkOrder()
+    {
+        Random random = new Random(7);
+        BlockVolume predicted = new BlockVolume(WIDTH, HEIGHT, DEPTH);
+        for (int n = 0; n < 3000; n++)
+        {
+            predicted.set(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(DEPTH), 2 + random.nextInt(100));
+        }
+
+        ChangeList changes = ChangeList.diff(predicted, new LayeredSource());
+        int[] order = changes.sectionOrder();
+        assertEquals(changes.size(), order.length);
+
+        // A permutation of the entries...
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++)
+        {
+            assertEquals(i, sorted[i]);
+        }
+
+        // ...with sections ascending and walk order inside each section
+        for (int i = 1; i < order.length; i++)
+        {
+            int previousSection = (changes.y(order[i - 1]) - MIN_Y) >> 4;
+            int section = (changes.y(order[i]) - MIN_Y) >> 4;
+            assertTrue(section >= previousSection, "sections out of order");
+            if (section == previousSection) assertTrue(order[i] > order[i - 1], "walk order broken inside a section");
+        }
+
+        // Every section keeps all of its entries
+        int[] perSection = new int[HEIGHT >> 4];
+        for (int i = 0; i < changes.size(); i++)
+        {
+            perSection[(changes.y(i) - MIN_Y) >> 4]++;
+        }
+        int[] fromOrder = new int[HEIGHT >> 4];
+        for (int index : order)
+        {
+            fromOrder[(changes.y(index) - MIN_Y) >> 4]++;
+        }
+        assertArrayEquals(perSection, fromOrder);
+    }
+
+    @Test
+    void emptyDiffHasEmptyOrder()
+    {
+        ChangeList changes = ChangeList.diff(new BlockVolume(WIDTH, HEIGHT, DEPTH), new LayeredSource());
+        assertEquals(0, changes.size());
+        assertEquals(0, changes.sectionOrder().length);
+    }
+
+    private static final class LayeredSource implements VoxelSource
+    {
+        // Class 1 (stone) below world y 0, class 0 (air) from there up
+
+        @Override
+        public int getBlockId(int x, int y, int z)
+        {
+            return y < 0 ? 1 : 0;
+        }
+
+        @Override
+        public boolean isAir(int x, int y, int z)
+        {
+            return y >= 0;
+        }
+
+        @Override
+        public int getLightLevel(int x, int y, int z)
+        {
+            return 0;
+        }
+
+        @Override
+        public int getBiomeId(int x, int y, int z)
+        {
+            return 0;
+        }
+    }
+}
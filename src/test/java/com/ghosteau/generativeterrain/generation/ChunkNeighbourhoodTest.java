@@ -0,0 +1,137 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChunkNeighbourhoodTest
+{
+    // Each chunk is filled with one block chosen by its position, so a read shows which snapshot served it
+    private static final Material[] FILLS = {
+            Material.STONE, Material.DIRT, Material.SAND, Material.GRAVEL, Material.BEDROCK, Material.DEEPSLATE,
+            Material.COAL_ORE, Material.IRON_ORE, Material.GRASS_BLOCK
+    };
+
+    private final FakeWorld world = new FakeWorld();
+
+    @Test
+    void edgeReadsComeFromTheNeighbourSnapshots()
+    {
+        ChunkNeighbourhood neighbourhood = ChunkNeighbourhood.captureAll(List.of(world.chunk(3, -2))).get(0);
+
+        assertEquals(fill(3, -2), neighbourhood.getType(0, 10, 0));
+        assertEquals(fill(3, -2), neighbourhood.getType(15, 10, 15));
+        assertEquals(fill(2, -2), neighbourhood.getType(-1, 10, 7));
+        assertEquals(fill(4, -2), neighbourhood.getType(16, 10, 7));
+        assertEquals(fill(3, -3), neighbourhood.getType(7, 10, -1));
+        assertEquals(fill(3, -1), neighbourhood.getType(7, 10, 16));
+        assertEquals(3, neighbourhood.getChunkX());
+        assertEquals(-2, neighbourhood.getChunkZ());
+    }
+
+    @Test
+    void adjacentTargetsShareSnapshots()
+    {
+        // A 3 x 1 row: the middle chunk's neighbours are the other two targets, captured once as full snapshots
+        List<Chunk> row = new ArrayList<>();
+        for (int x = 0; x < 3; x++)
+        {
+            row.add(world.chunk(x, 0));
+        }
+        List<ChunkNeighbourhood> neighbourhoods = ChunkNeighbourhood.captureAll(row);
+
+        assertEquals(fill(0, 0), neighbourhoods.get(1).getType(-1, 0, 0));
+        assertEquals(fill(2, 0), neighbourhoods.get(1).getType(16, 0, 0));
+        assertEquals(fill(1, 0), neighbourhoods.get(2).getType(-1, 0, 0));
+
+        // 3 targets plus the 8 chunks around them, each snapshotted once
+        assertEquals(11, world.snapshots);
+    }
+
+    @Test
+    void unloadedNeighboursAreNotLoadedByTheCapture()
+    {
+        // The west neighbour is read first, so nothing but the centre is snapshotted before the capture gives up
+        Chunk chunk = world.chunk(5, 5);
+        world.unloaded.add(world.chunk(4, 5));
+
+        assertThrows(IllegalStateException.class, () -> ChunkNeighbourhood.capture(chunk));
+        assertEquals(1, world.snapshots);
+    }
+
+    private static Material fill(int chunkX, int chunkZ)
+    {
+        return FILLS[Math.floorMod(chunkX * 3 + chunkZ, FILLS.length)];
+    }
+
+    private static <T> T proxy(Class<T> type, Map<String, Function<Object[], Object>> methods)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) ->
+        {
+            Function<Object[], Object> body = methods.get(method.getName());
+            if (body != null) return body.apply(args);
+            if (method.getName().equals("hashCode")) return System.identityHashCode(self);
+            if (method.getName().equals("equals")) return self == args[0];
+            if (method.getName().equals("toString")) return type.getSimpleName();
+            throw new UnsupportedOperationException(method.getName());
+        }));
+    }
+
+    private static final class FakeWorld
+    {
+        // Every chunk is loaded unless it is in unloaded; snapshots counts getChunkSnapshot calls
+
+        private final Map<Long, Chunk> chunks = new HashMap<>();
+        private final Set<Chunk> unloaded = new HashSet<>();
+        private final World world;
+        private int snapshots;
+
+        private FakeWorld()
+        {
+            Map<String, Function<Object[], Object>> methods = new HashMap<>();
+            methods.put("getChunkAt", args -> chunk((Integer) args[0], (Integer) args[1]));
+            methods.put("isChunkLoaded", args -> !unloaded.contains(chunk((Integer) args[0], (Integer) args[1])));
+            methods.put("getName", args -> "world");
+            world = proxy(World.class, methods);
+        }
+
+        private Chunk chunk(int chunkX, int chunkZ)
+        {
+            return chunks.computeIfAbsent(((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL), key ->
+            {
+                Material fill = fill(chunkX, chunkZ);
+                Map<String, Function<Object[], Object>> snapshot = new HashMap<>();
+                snapshot.put("getBlockType", args -> fill);
+                snapshot.put("getX", args -> chunkX);
+                snapshot.put("getZ", args -> chunkZ);
+                snapshot.put("getWorldName", args -> "world");
+                ChunkSnapshot captured = proxy(ChunkSnapshot.class, snapshot);
+
+                Map<String, Function<Object[], Object>> methods = new HashMap<>();
+                methods.put("getWorld", args -> world);
+                methods.put("getX", args -> chunkX);
+                methods.put("getZ", args -> chunkZ);
+                methods.put("getChunkSnapshot", args ->
+                {
+                    snapshots++;
+                    return captured;
+                });
+                return proxy(Chunk.class, methods);
+            });
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureEncoderTest
+{
+    private static final int WIDTH = 16;
+    private static final int DEPTH = 16;
+    private static final int MIN_Y = -64;
+    private static final int HEIGHT = 384;
+
+    // Class ids: each neighbouring chunk is a different block, so an edge read shows which chunk served it
+    private static final Material[] CLASSES = {
+            Material.AIR, Material.STONE, Material.DIRT, Material.SAND, Material.GRAVEL, Material.BEDROCK
+    };
+    private static final int AIR = 0;
+    private static final int STONE = 1;
+    private static final int WEST = 2;
+    private static final int EAST = 3;
+    private static final int NORTH = 4;
+    private static final int SOUTH = 5;
+
+    private final BlockPalette palette = BlockPalette.of(CLASSES);
+    private final FeatureEncoder encoder = new FeatureEncoder(Runtime.getRuntime().availableProcessors());
+
+    @AfterEach
+    void shutdown()
+    {
+        encoder.shutdown();
+    }
+
+    @Test
+    void edgeVoxelsReadTheNeighbourChunks()
+    {
+        int modelHeight = 32;
+        int baseY = -16;
+        FloatBuffer input = tensor(1, modelHeight);
+        encoder.encode(input, 0, palette.voxels(new BorderedSource()), 7.0f, modelHeight, baseY);
+
+        int y = -8;
+        for (int i = 0; i < WIDTH; i++)
+        {
+            assertEquals(WEST, feature(input, modelHeight, 4, 0, y - baseY, i), "left of x 0");
+            assertEquals(EAST, feature(input, modelHeight, 5, WIDTH - 1, y - baseY, i), "right of x 15");
+            assertEquals(NORTH, feature(input, modelHeight, 9, i, y - baseY, 0), "behind z 0");
+            assertEquals(SOUTH, feature(input, modelHeight, 8, i, y - baseY, DEPTH - 1), "front of z 15");
+        }
+
+        // Inside the chunk every neighbour is the chunk itself
+        for (int channel = 4; channel <= 9; channel++)
+        {
+            assertEquals(STONE, feature(input, modelHeight, channel, 5, y - baseY, 9), "channel " + channel);
+        }
+    }
+
+    @Test
+    void encodesEveryChannel()
+    {
+        int modelHeight = 32;
+        int baseY = -16;
+        FloatBuffer input = tensor(2, modelHeight);
+        encoder.encode(input, 1, palette.voxels(new BorderedSource()), 7.0f, modelHeight, baseY);
+
+        // Top of the stone (y -1): air above it, so it is surface
+        int top = -1 - baseY;
+        assertEquals(7.0f, feature(input, 1, modelHeight, 0, 3, top, 3));
+        assertEquals(0.0f, feature(input, 1, modelHeight, 1, 3, top, 3));
+        assertEquals(1.0f, feature(input, 1, modelHeight, 2, 3, top, 3));
+        assertEquals(0.0f, feature(input, 1, modelHeight, 2, 3, top - 1, 3));
+        assertEquals(10 / 15.0f, feature(input, 1, modelHeight, 3, 3, top, 3), 1e-6);
+        assertEquals(STONE, feature(input, 1, modelHeight, 6, 3, top, 3));
+        assertEquals(AIR, feature(input, 1, modelHeight, 7, 3, top, 3));
+
+        // Batch entry 0 is left alone
+        for (int i = 0; i < FeatureEncoder.tensorSize(1, modelHeight); i++)
+        {
+            assertEquals(-1.0f, input.get(i));
+        }
+    }
+
+    @Test
+    void layersOutsideTheWorldAreCleared()
+    {
+        int modelHeight = 32;
+        FloatBuffer input = tensor(1, modelHeight);
+        encoder.encode(input, 0, palette.voxels(new BorderedSource()), 7.0f, modelHeight, 300);
+
+        // Layers 0-19 are y 300-319, the rest lie above the build limit; the top layer has no block above it
+        int top = 319 - 300;
+        assertEquals(0.0f, feature(input, modelHeight, 7, 4, top, 4));
+        assertEquals(7.0f, feature(input, modelHeight, 0, 4, top, 4));
+        for (int channel = 0; channel < FeatureEncoder.CHANNELS; channel++)
+        {
+            assertEquals(0.0f, feature(input, modelHeight, channel, 4, top + 1, 4));
+            assertEquals(0.0f, feature(input, modelHeight, channel, 4, modelHeight - 1, 4));
+        }
+    }
+
+    @Test
+    void fullColumnGatherStaysUnderFiveMilliseconds()
+    {
+        // The whole -64..319 column at once, which is what a full-column job encodes per chunk
+        FloatBuffer input = tensor(1, HEIGHT);
+        VoxelSource chunk = palette.voxels(new BorderedSource());
+        for (int i = 0; i < 50; i++)
+        {
+            encoder.encode(input, 0, chunk, 7.0f, HEIGHT, MIN_Y);
+        }
+
+        long[] nanos = new long[51];
+        for (int i = 0; i < nanos.length; i++)
+        {
+            long start = System.nanoTime();
+            encoder.encode(input, 0, chunk, 7.0f, HEIGHT, MIN_Y);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double medianMillis = nanos[nanos.length / 2] / 1e6;
+        assertTrue(medianMillis < 5.0, "median gather time was " + medianMillis + " ms per chunk");
+    }
+
+    private static FloatBuffer tensor(int batch, int modelHeight)
+    {
+        // Filled with -1 so untouched entries stand out
+        FloatBuffer input = ByteBuffer.allocateDirect(FeatureEncoder.tensorSize(batch, modelHeight) * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < input.capacity(); i++)
+        {
+            input.put(i, -1.0f);
+        }
+        return input;
+    }
+
+    private static float feature(FloatBuffer input, int modelHeight, int channel, int x, int modelY, int z)
+    {
+        return feature(input, 0, modelHeight, channel, x, modelY, z);
+    }
+
+    private static float feature(FloatBuffer input, int batchIndex, int modelHeight, int channel, int x, int modelY, int z)
+    {
+        // [batch][channel][x][y][z]
+        int channelStride = WIDTH * modelHeight * DEPTH;
+        return input.get((batchIndex * FeatureEncoder.CHANNELS + channel) * channelStride + (x * modelHeight + modelY) * DEPTH + z);
+    }
+
+    private static final class BorderedSource implements BlockSource
+    {
+        // Stone below y 0 and air above; the one-block border outside the chunk is a different block on each side
+
+        @Override
+        public Material getType(int x, int y, int z)
+        {
+            if (y >= 0) return Material.AIR;
+            if (x < 0) return CLASSES[WEST];
+            if (x >= WIDTH) return CLASSES[EAST];
+            if (z < 0) return CLASSES[NORTH];
+            if (z >= DEPTH) return CLASSES[SOUTH];
+            return Material.STONE;
+        }
+
+        @Override
+        public int getLightLevel(int x, int y, int z)
+        {
+            return 10;
+        }
+
+        @Override
+        public Biome getBiome(int x, int y, int z)
+        {
+            return null;
+        }
+    }
+}
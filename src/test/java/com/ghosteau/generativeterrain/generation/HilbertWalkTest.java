@@ -0,0 +1,104 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HilbertWalkTest
+{
+    @Test
+    void visitsEveryChunkOfARectangleOnce()
+    {
+        int[][] rectangles = {
+                {0, 0, 0, 0},
+                {-3, -5, 4, 2},
+                {10, 10, 10, 40},
+                {-7, 0, 25, 0},
+                {0, 0, 15, 15},
+                {-100, 50, -64, 83}
+        };
+
+        for (int[] r : rectangles)
+        {
+            Set<Long> visited = walk(new HilbertWalk(r[0], r[1], r[2], r[3], 0), r);
+            long expected = (long) (r[2] - r[0] + 1) * (r[3] - r[1] + 1);
+            assertEquals(expected, visited.size());
+            assertEquals(expected, new HilbertWalk(r[0], r[1], r[2], r[3], 0).chunkCount());
+        }
+    }
+
+    @Test
+    void consecutiveChunksAreNeighboursInASquare()
+    {
+        // On a full power-of-two square the curve never jumps
+        HilbertWalk walk = new HilbertWalk(0, 0, 31, 31, 0);
+        assertTrue(walk.next());
+        int lastX = walk.getChunkX();
+        int lastZ = walk.getChunkZ();
+        while (walk.next())
+        {
+            assertEquals(1, Math.abs(walk.getChunkX() - lastX) + Math.abs(walk.getChunkZ() - lastZ));
+            lastX = walk.getChunkX();
+            lastZ = walk.getChunkZ();
+        }
+    }
+
+    @Test
+    void resumingFromAnIndexContinuesTheWalk()
+    {
+        int[] r = {-20, 3, 17, 9};
+        HilbertWalk first = new HilbertWalk(r[0], r[1], r[2], r[3], 0);
+        Set<Long> visited = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(first.next());
+            visited.add(key(first.getChunkX(), first.getChunkZ()));
+        }
+
+        HilbertWalk resumed = new HilbertWalk(r[0], r[1], r[2], r[3], first.getIndex());
+        while (resumed.next())
+        {
+            assertTrue(visited.add(key(resumed.getChunkX(), resumed.getChunkZ())), "chunk visited twice after resuming");
+        }
+        assertEquals((long) (r[2] - r[0] + 1) * (r[3] - r[1] + 1), visited.size());
+    }
+
+    @Test
+    void thinRectangleSkipsEmptyCurveBlocks()
+    {
+        // A 1 x 65536 strip sits in a 65536^2 square; walking it cell by cell would take about 4e9 steps
+        HilbertWalk walk = new HilbertWalk(0, 0, 0, 65535, 0);
+        long visited = 0;
+        long start = System.nanoTime();
+        while (walk.next())
+        {
+            visited++;
+        }
+        assertEquals(65536, visited);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L, "thin walk took too long");
+    }
+
+    private static Set<Long> walk(HilbertWalk walk, int[] r)
+    {
+        Set<Long> visited = new HashSet<>();
+        while (walk.next())
+        {
+            int x = walk.getChunkX();
+            int z = walk.getChunkZ();
+            assertTrue(x >= r[0] && x <= r[2] && z >= r[1] && z <= r[3], "chunk " + x + ", " + z + " is outside the rectangle");
+            assertTrue(visited.add(key(x, z)), "chunk " + x + ", " + z + " visited twice");
+        }
+        assertFalse(walk.next());
+        return visited;
+    }
+
+    private static long key(int x, int z)
+    {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+}
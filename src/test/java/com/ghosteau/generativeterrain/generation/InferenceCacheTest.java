@@ -0,0 +1,165 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InferenceCacheTest
+{
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 8;
+    private static final int DEPTH = 4;
+    private static final long VOLUME_BYTES = (long) WIDTH * HEIGHT * DEPTH * Short.BYTES;
+    private static final long FILE_BYTES = 3 * Integer.BYTES + VOLUME_BYTES;
+
+    private static final Logger LOGGER = Logger.getLogger(InferenceCacheTest.class.getName());
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void storedVolumesAreCopies()
+    {
+        InferenceCache cache = new InferenceCache(1 << 20, null, 0, LOGGER);
+        BlockVolume volume = volume(1);
+        cache.put("a", volume);
+
+        // Changing the caller's volume after put() must not reach the cache
+        volume.set(0, 0, 0, 99);
+        BlockVolume hit = cache.get("a", WIDTH, HEIGHT, DEPTH);
+        assertSameBlocks(volume(1), hit);
+
+        // Nor may changing a volume get() handed out
+        hit.set(1, 1, 1, 99);
+        assertSameBlocks(volume(1), cache.get("a", WIDTH, HEIGHT, DEPTH));
+        assertEquals(2, cache.getMemoryHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void memoryTierEvictsLeastRecentlyUsed()
+    {
+        InferenceCache cache = new InferenceCache(2 * VOLUME_BYTES, null, 0, LOGGER);
+        cache.put("a", volume(1));
+        cache.put("b", volume(2));
+        cache.get("a", WIDTH, HEIGHT, DEPTH);
+        cache.put("c", volume(3));
+
+        // "b" was used least recently, so it made room for "c"
+        assertNull(cache.get("b", WIDTH, HEIGHT, DEPTH));
+        assertNotNull(cache.get("a", WIDTH, HEIGHT, DEPTH));
+        assertNotNull(cache.get("c", WIDTH, HEIGHT, DEPTH));
+        assertEquals(2, cache.memoryEntries());
+        assertEquals(2 * VOLUME_BYTES, cache.memoryBytes());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void diskTierRoundTripsAcrossRestarts()
+    {
+        // A memory budget smaller than one volume sends every hit to disk
+        File diskFolder = folder.resolve("cache").toFile();
+        InferenceCache cache = new InferenceCache(0, diskFolder, 1 << 20, LOGGER);
+        cache.put("model-00000000000000ab", volume(5));
+        assertEquals(1, cache.diskEntries());
+        assertEquals(FILE_BYTES, cache.diskBytes());
+
+        BlockVolume hit = cache.get("model-00000000000000ab", WIDTH, HEIGHT, DEPTH);
+        assertSameBlocks(volume(5), hit);
+        assertEquals(1, cache.getDiskHits());
+
+        // A new cache over the same folder indexes the files already there
+        InferenceCache restarted = new InferenceCache(1 << 20, diskFolder, 1 << 20, LOGGER);
+        assertEquals(1, restarted.diskEntries());
+        assertSameBlocks(volume(5), restarted.get("model-00000000000000ab", WIDTH, HEIGHT, DEPTH));
+        assertEquals(1, restarted.getDiskHits());
+
+        // The disk hit was promoted to memory; a volume of another shape is a miss rather than a misread
+        assertSameBlocks(volume(5), restarted.get("model-00000000000000ab", WIDTH, HEIGHT, DEPTH));
+        assertEquals(1, restarted.getMemoryHits());
+        assertNull(new InferenceCache(0, diskFolder, 1 << 20, LOGGER).get("model-00000000000000ab", WIDTH, HEIGHT * 2, DEPTH));
+    }
+
+    @Test
+    void diskTierEvictsFilesOverBudget() throws IOException
+    {
+        File diskFolder = folder.resolve("cache").toFile();
+        assertTrue(diskFolder.mkdirs());
+        File leftover = new File(diskFolder, "half-written.vol.tmp");
+        Files.write(leftover.toPath(), new byte[]{1, 2, 3});
+
+        InferenceCache cache = new InferenceCache(0, diskFolder, 2 * FILE_BYTES, LOGGER);
+        assertFalse(leftover.exists(), "temporary files are cleared on start");
+
+        cache.put("a", volume(1));
+        cache.put("b", volume(2));
+        cache.put("c", volume(3));
+        assertEquals(2, cache.diskEntries());
+        assertFalse(new File(diskFolder, "a.vol").exists());
+        assertTrue(new File(diskFolder, "c.vol").exists());
+        assertNull(cache.get("a", WIDTH, HEIGHT, DEPTH));
+
+        cache.clear();
+        assertEquals(0, cache.diskEntries());
+        assertEquals(0, cache.diskBytes());
+        assertFalse(new File(diskFolder, "c.vol").exists());
+    }
+
+    @Test
+    void hashFollowsInputAndLayout()
+    {
+        FloatBuffer input = FloatBuffer.allocate(64);
+        for (int i = 0; i < input.capacity(); i++)
+        {
+            input.put(i, i * 0.5f);
+        }
+        SlabLayout centred = SlabLayout.centred(32, 384);
+        long hash = InferenceCache.hash(input, 0, 64, centred);
+
+        assertEquals(hash, InferenceCache.hash(input.duplicate(), 0, 64, SlabLayout.centred(32, 384)));
+        assertNotEquals(hash, InferenceCache.hash(input, 0, 64, SlabLayout.fullColumn(32, 384, 8)));
+        assertNotEquals(hash, InferenceCache.hash(input, 0, 63, centred));
+
+        input.put(17, -1.0f);
+        assertNotEquals(hash, InferenceCache.hash(input, 0, 64, centred));
+    }
+
+    private static BlockVolume volume(int seed)
+    {
+        BlockVolume volume = new BlockVolume(WIDTH, HEIGHT, DEPTH);
+        for (int x = 0; x < WIDTH; x++)
+        {
+            for (int y = 0; y < HEIGHT; y++)
+            {
+                for (int z = 0; z < DEPTH; z++)
+                {
+                    volume.set(x, y, z, (seed * 31 + volume.index(x, y, z)) % 200);
+                }
+            }
+        }
+        return volume;
+    }
+
+    private static void assertSameBlocks(BlockVolume expected, BlockVolume actual)
+    {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.get(i), actual.get(i), "voxel " + i);
+        }
+    }
+}
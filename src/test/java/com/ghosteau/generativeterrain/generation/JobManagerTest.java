@@ -0,0 +1,149 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobManagerTest
+{
+    private static final UUID WORLD = UUID.randomUUID();
+    private static final UUID NETHER = UUID.randomUUID();
+    private static final UUID ALICE = UUID.randomUUID();
+    private static final UUID BOB = UUID.randomUUID();
+
+    private final JobManager manager = new JobManager(2, 0);
+
+    @AfterEach
+    void shutdown()
+    {
+        manager.shutdown();
+    }
+
+    @Test
+    void overlappingJobsRunInSubmissionOrder()
+    {
+        JobManager.Job first = manager.submit(ALICE, null, WORLD, chunks(0, 0, 1, 0), "first").getJob();
+        JobManager.Job second = manager.submit(BOB, null, WORLD, chunks(1, 0, 2, 0), "second").getJob();
+        JobManager.Job third = manager.submit(BOB, null, WORLD, chunks(5, 5), "third").getJob();
+
+        assertTrue(manager.awaitChunks(first).isDone());
+        assertFalse(manager.awaitChunks(second).isDone());
+        assertEquals(JobManager.State.WAITING, second.getState());
+        assertTrue(manager.awaitChunks(third).isDone(), "a job on other chunks must not wait");
+
+        manager.finish(first);
+        assertTrue(manager.awaitChunks(second).isDone());
+        assertFalse(manager.awaitChunks(second).isCompletedExceptionally());
+    }
+
+    @Test
+    void jobStartsOnlyWhenItHeadsEveryQueue()
+    {
+        JobManager.Job left = manager.submit(ALICE, null, WORLD, chunks(0, 0), "left").getJob();
+        JobManager.Job right = manager.submit(ALICE, null, WORLD, chunks(2, 0), "right").getJob();
+        JobManager.Job both = manager.submit(BOB, null, WORLD, chunks(0, 0, 2, 0), "both").getJob();
+
+        manager.finish(left);
+        assertFalse(manager.awaitChunks(both).isDone());
+        manager.finish(right);
+        assertTrue(manager.awaitChunks(both).isDone());
+    }
+
+    @Test
+    void sameCoordinatesInAnotherWorldDoNotWait()
+    {
+        manager.submit(ALICE, null, WORLD, chunks(0, 0), "overworld");
+        JobManager.Job nether = manager.submit(BOB, null, NETHER, chunks(0, 0), "nether").getJob();
+        assertTrue(manager.awaitChunks(nether).isDone());
+    }
+
+    @Test
+    void identicalInferenceIsMergedIntoTheJobInFlight()
+    {
+        JobManager.Job first = manager.submit(ALICE, "model:slab", WORLD, chunks(0, 0, 1, 0), "first").getJob();
+
+        JobManager.Submission merged = manager.submit(BOB, "model:slab", WORLD, chunks(0, 0), "merged");
+        assertNull(merged.getJob());
+        assertEquals(1, merged.getJoined().get(first));
+        assertTrue(first.getFollowers().contains(BOB));
+
+        // A chunk the first job doesn't cover is claimed by a new job; the covered one still follows the first job
+        JobManager.Submission partial = manager.submit(BOB, "model:slab", WORLD, chunks(1, 0, 3, 0), "partial");
+        assertNotNull(partial.getJob());
+        assertEquals(1, partial.getJob().getChunks().size());
+        assertEquals(3, partial.getJob().getChunks().get(0)[0]);
+        assertEquals(1, partial.getJoined().get(first));
+
+        // A different signature (another model) or a null one (undo, commits) is never merged
+        assertNotNull(manager.submit(ALICE, "other:slab", WORLD, chunks(0, 0), "other").getJob());
+        manager.finish(first);
+        assertNotNull(manager.submit(ALICE, "model:slab", WORLD, chunks(0, 0), "after").getJob(),
+                "a finished job must not take new followers");
+    }
+
+    @Test
+    void canceledWaitingJobIsWokenAndReleasesItsClaims()
+    {
+        JobManager.Job first = manager.submit(ALICE, null, WORLD, chunks(0, 0), "first").getJob();
+        JobManager.Job second = manager.submit(BOB, null, WORLD, chunks(0, 0), "second").getJob();
+        JobManager.Job third = manager.submit(BOB, null, WORLD, chunks(0, 0), "third").getJob();
+
+        manager.cancel(second);
+        assertTrue(manager.awaitChunks(second).isCompletedExceptionally());
+        assertEquals(JobManager.CANCELED, second.getCancelReason());
+        manager.finish(second);
+
+        manager.finish(first);
+        assertTrue(manager.awaitChunks(third).isDone());
+        assertFalse(manager.awaitChunks(third).isCompletedExceptionally());
+    }
+
+    @Test
+    void quotaLimitsJobsPerPlayer()
+    {
+        JobManager.Job first = manager.submit(ALICE, null, WORLD, chunks(0, 0), "first").getJob();
+        assertNotNull(manager.submit(ALICE, null, WORLD, chunks(1, 0), "second"));
+        assertNull(manager.submit(ALICE, null, WORLD, chunks(2, 0), "third"));
+        assertNotNull(manager.submit(BOB, null, WORLD, chunks(2, 0), "bob's"));
+
+        manager.finish(first);
+        assertNotNull(manager.submit(ALICE, null, WORLD, chunks(2, 0), "third again"));
+        assertEquals(2, manager.jobsOf(ALICE).size());
+    }
+
+    @Test
+    void requestOverQuotaFollowsNothing()
+    {
+        JobManager.Job shared = manager.submit(ALICE, "model:slab", WORLD, chunks(0, 0), "shared").getJob();
+        manager.submit(BOB, null, WORLD, chunks(5, 0), "bob's first");
+        manager.submit(BOB, null, WORLD, chunks(6, 0), "bob's second");
+
+        // Partly covered by Alice's job, but Bob has no room for the rest
+        assertNull(manager.submit(BOB, "model:slab", WORLD, chunks(0, 0, 1, 0), "rejected"));
+        assertFalse(shared.getFollowers().contains(BOB));
+
+        // Fully covered requests need no room of their own
+        assertNull(manager.submit(BOB, "model:slab", WORLD, chunks(0, 0), "merged").getJob());
+        assertTrue(shared.getFollowers().contains(BOB));
+    }
+
+    private static List<long[]> chunks(long... coordinates)
+    {
+        // x and z pairs
+        List<long[]> chunks = new ArrayList<>();
+        for (int i = 0; i < coordinates.length; i += 2)
+        {
+            chunks.add(new long[]{coordinates[i], coordinates[i + 1]});
+        }
+        return chunks;
+    }
+}
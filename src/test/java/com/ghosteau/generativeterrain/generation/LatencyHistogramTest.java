@@ -0,0 +1,82 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest
+{
+    @Test
+    void emptyHistogramReportsZero()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMeanMicros());
+        assertEquals(0, histogram.percentileMicros(50));
+        assertEquals(0, histogram.percentileMicros(99));
+    }
+
+    @Test
+    void smallValuesHaveExactBuckets()
+    {
+        // Below 8 us every value is its own bucket, so percentiles are exact
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 0; micros < 8; micros++)
+        {
+            histogram.record(micros);
+        }
+
+        assertEquals(8, histogram.getCount());
+        assertEquals(3.5, histogram.getMeanMicros(), 1e-9);
+        assertEquals(7, histogram.getMaxMicros());
+        assertEquals(0, histogram.percentileMicros(1));
+        assertEquals(3, histogram.percentileMicros(50));
+        assertEquals(7, histogram.percentileMicros(100));
+    }
+
+    @Test
+    void percentilesStayWithinBucketError()
+    {
+        // Log-linear buckets with 8 per power of two: any percentile is within 12.5% of the true value
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100_000; micros++)
+        {
+            histogram.record(micros);
+        }
+
+        for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9})
+        {
+            long expected = (long) Math.ceil(100_000 * percentile / 100.0);
+            long actual = histogram.percentileMicros(percentile);
+            assertTrue(Math.abs(actual - expected) <= expected * 0.125,
+                    "p" + percentile + " was " + actual + ", expected about " + expected);
+        }
+    }
+
+    @Test
+    void percentileNeverExceedsMax()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getMaxMicros());
+        assertTrue(histogram.percentileMicros(100) <= 1000);
+        assertTrue(histogram.percentileMicros(100) >= 875);
+    }
+
+    @Test
+    void negativeValuesCountAsZeroAndResetClears()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMaxMicros());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.percentileMicros(50));
+    }
+}
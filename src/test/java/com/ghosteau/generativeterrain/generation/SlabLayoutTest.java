@@ -0,0 +1,107 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlabLayoutTest
+{
+    @Test
+    void fullColumnTilesCoverEveryRow()
+    {
+        for (int overlap : new int[]{0, 4, 8, 16})
+        {
+            SlabLayout layout = SlabLayout.fullColumn(32, 384, overlap);
+            boolean[] covered = new boolean[384];
+            for (int slab = 0; slab < layout.slabCount(); slab++)
+            {
+                int start = layout.slabStart(slab);
+                assertTrue(start >= 0 && start + 32 <= 384, "slab " + slab + " leaves the column");
+                if (slab > 0) assertTrue(layout.slabStart(slab - 1) + 32 - start >= overlap, "slabs " + (slab - 1) + " and " + slab + " overlap too little");
+                for (int y = start; y < start + 32; y++) covered[y] = true;
+            }
+
+            for (int y = 0; y < 384; y++)
+            {
+                assertTrue(covered[y], "row " + y + " with overlap " + overlap);
+            }
+            assertEquals(384 - 32, layout.slabStart(layout.slabCount() - 1));
+        }
+
+        assertEquals(12, SlabLayout.fullColumn(32, 384, 0).slabCount());
+        assertEquals(16, SlabLayout.fullColumn(32, 384, 8).slabCount());
+    }
+
+    @Test
+    void centredSlabAndTallModels()
+    {
+        SlabLayout centred = SlabLayout.centred(32, 384);
+        assertEquals(1, centred.slabCount());
+        assertEquals(176, centred.slabStart(0));
+
+        // A model as tall as the column needs a single slab
+        assertEquals(1, SlabLayout.fullColumn(384, 384, 8).slabCount());
+    }
+
+    @Test
+    void tentWeightsPeakInTheMiddle()
+    {
+        SlabLayout layout = SlabLayout.fullColumn(32, 384, 8);
+        assertEquals(1.0f, layout.weight(0));
+        assertEquals(1.0f, layout.weight(31));
+        assertEquals(16.0f, layout.weight(15));
+        assertEquals(16.0f, layout.weight(16));
+    }
+
+    @Test
+    void overlappingSlabsBlendAcrossTheSeam()
+    {
+        // Column of 56 rows, slabs at 0 and 24 overlapping on rows 24-31; the lower slab predicts class 1, the upper class 2
+        SlabLayout layout = SlabLayout.fullColumn(32, 56, 8);
+        assertEquals(2, layout.slabCount());
+        assertEquals(24, layout.slabStart(1));
+
+        int classes = 3;
+        FloatBuffer logits = FloatBuffer.allocate(2 * classes * 32);
+        for (int modelY = 0; modelY < 32; modelY++)
+        {
+            logits.put((0 * classes + 1) * 32 + modelY, 1.0f);
+            logits.put((1 * classes + 2) * 32 + modelY, 1.0f);
+        }
+
+        BlockVolume volume = new BlockVolume(1, 56, 1);
+        volume.decode(logits, 0, classes, layout);
+
+        // Each row of the seam goes to the slab it sits more centrally in: row 27 is 5 deep in the lower slab's tent and 4 in the upper
+        for (int y = 0; y < 56; y++)
+        {
+            assertEquals(y <= 27 ? 1 : 2, volume.get(0, y, 0), "row " + y);
+        }
+    }
+
+    @Test
+    void blendingReadsTheColumnsOwnBatchEntries()
+    {
+        // Two columns in one batch: the second starts at batch entry slabCount and must not see the first one's logits
+        SlabLayout layout = SlabLayout.fullColumn(32, 56, 8);
+        int classes = 3;
+        FloatBuffer logits = FloatBuffer.allocate(4 * classes * 32);
+        for (int modelY = 0; modelY < 32; modelY++)
+        {
+            logits.put((0 * classes + 1) * 32 + modelY, 1.0f);
+            logits.put((1 * classes + 1) * 32 + modelY, 1.0f);
+            logits.put((2 * classes + 2) * 32 + modelY, 1.0f);
+            logits.put((3 * classes + 2) * 32 + modelY, 1.0f);
+        }
+
+        BlockVolume second = new BlockVolume(1, 56, 1);
+        second.decode(logits, layout.slabCount(), classes, layout);
+        for (int y = 0; y < 56; y++)
+        {
+            assertEquals(2, second.get(0, y, 0), "row " + y);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ghosteau.generativeterrain.generation;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UndoJournalTest
+{
+    private static final Logger LOGGER = Logger.getLogger(UndoJournalTest.class.getName());
+    private static final UUID PLAYER = new UUID(1, 2);
+    private static final UUID OTHER = new UUID(3, 4);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void recordsReplayThePriorStates() throws IOException
+    {
+        UndoJournal journal = new UndoJournal(folder.toFile(), 5, LOGGER);
+        long jobId = journal.beginJob(PLAYER);
+        journal.record(PLAYER, jobId, snapshot(2, -3), changes(0, 0, 0, 3, 70, 5, 15, 383, 15));
+        journal.record(PLAYER, jobId, snapshot(40, 7), changes(8, 64, 8));
+
+        assertEquals(1, journal.undoableJobs(PLAYER));
+        assertEquals(List.of(jobId), journal.newestJobs(PLAYER, 3));
+        Map<String, List<long[]>> chunks = journal.chunksOf(PLAYER, List.of(jobId));
+        assertEquals(2, chunks.get("world").size());
+        assertArrayEquals(new long[]{2, -3}, chunks.get("world").get(0));
+
+        List<UndoRecord> records = new ArrayList<>();
+        assertEquals(1, journal.undo(PLAYER, List.of(jobId), records::add).join());
+        assertEquals(2, records.size());
+
+        UndoRecord first = records.get(0);
+        assertEquals("world", first.getWorldName());
+        assertEquals(2, first.getChunkX());
+        assertEquals(-3, first.getChunkZ());
+        int[][] expected = {{0, -64, 0}, {3, 6, 5}, {15, 319, 15}};
+        assertEquals(expected.length, first.size());
+        for (int i = 0; i < first.size(); i++)
+        {
+            assertEquals(expected[i][0], first.x(i));
+            assertEquals(expected[i][1], first.y(i));
+            assertEquals(expected[i][2], first.z(i));
+            assertEquals(state(expected[i][1]), first.getPalette()[first.state(i)]);
+        }
+        assertEquals(2, first.getPalette().length, "repeated states share a palette entry");
+        assertEquals(40, records.get(1).getChunkX());
+
+        // An undone job can't be undone twice
+        assertEquals(0, journal.undoableJobs(PLAYER));
+        assertEquals(0, journal.undo(PLAYER, List.of(jobId), records::add).join());
+        journal.close();
+    }
+
+    @Test
+    void onlyTheNewestJobsWithRecordsAreKept() throws IOException
+    {
+        // Each job writes to its own region journal
+        UndoJournal journal = new UndoJournal(folder.toFile(), 2, LOGGER);
+        long oldest = recordedJob(journal, PLAYER, 0);
+        long middle = recordedJob(journal, PLAYER, 32);
+
+        // A job that changed nothing doesn't count toward the limit
+        journal.beginJob(PLAYER);
+        assertEquals(List.of(middle, oldest), journal.newestJobs(PLAYER, 5));
+
+        long newest = recordedJob(journal, PLAYER, 64);
+        long other = recordedJob(journal, OTHER, 96);
+        assertEquals(List.of(newest, middle), journal.newestJobs(PLAYER, 5));
+        assertEquals(List.of(other), journal.newestJobs(OTHER, 5));
+
+        // Records the trimmed job writes afterwards are dropped with it
+        journal.record(PLAYER, oldest, snapshot(9, 9), changes(1, 1, 1));
+        assertEquals(List.of(newest, middle), journal.newestJobs(PLAYER, 5));
+        journal.close();
+
+        // The limit survives a restart, and the journal holding only flagged records is deleted
+        File oldestJournal = folder.resolve("world").resolve("r.0.0.journal").toFile();
+        assertTrue(oldestJournal.exists());
+        UndoJournal restarted = new UndoJournal(folder.toFile(), 2, LOGGER);
+        assertEquals(List.of(newest, middle), restarted.newestJobs(PLAYER, 5));
+        assertFalse(oldestJournal.exists());
+        assertTrue(restarted.beginJob(PLAYER) > other, "job ids keep growing across restarts");
+        restarted.close();
+    }
+
+    @Test
+    void closingTruncatesTheMappedWindow() throws IOException
+    {
+        UndoJournal journal = new UndoJournal(folder.toFile(), 5, LOGGER);
+        long first = recordedJob(journal, PLAYER, 0);
+
+        // Appends go through a mapped window well past the last record
+        File file = folder.resolve("world").resolve("r.0.0.journal").toFile();
+        assertTrue(file.length() >= 1 << 20);
+        journal.close();
+
+        long recorded = file.length();
+        assertTrue(recorded > 0 && recorded < 4096, "closed journal is " + recorded + " bytes");
+
+        // Reopening appends straight after the last record instead of after a zero-filled tail
+        UndoJournal reopened = new UndoJournal(folder.toFile(), 5, LOGGER);
+        long second = recordedJob(reopened, PLAYER, 0);
+        reopened.close();
+        assertTrue(file.length() > recorded && file.length() < 2 * recorded + 4096);
+
+        UndoJournal restarted = new UndoJournal(folder.toFile(), 5, LOGGER);
+        assertEquals(List.of(second, first), restarted.newestJobs(PLAYER, 5));
+        List<UndoRecord> records = new ArrayList<>();
+        assertEquals(2, restarted.undo(PLAYER, List.of(second, first), records::add).join());
+        assertEquals(2, records.size());
+        restarted.close();
+    }
+
+    private static long recordedJob(UndoJournal journal, UUID player, int chunkX) throws IOException
+    {
+        long jobId = journal.beginJob(player);
+        journal.record(player, jobId, snapshot(chunkX, 0), changes(chunkX & 15, 10, 4));
+        return jobId;
+    }
+
+    private static ChangeList changes(int... xyz)
+    {
+        // Every listed cell (column rows, not world y) changes from air to class 1
+        BlockVolume predicted = new BlockVolume(16, 384, 16);
+        for (int i = 0; i < xyz.length; i += 3)
+        {
+            predicted.set(xyz[i], xyz[i + 1], xyz[i + 2], 1);
+        }
+        return ChangeList.diff(predicted, new VoxelSource()
+        {
+            @Override
+            public int getBlockId(int x, int y, int z)
+            {
+                return 0;
+            }
+
+            @Override
+            public boolean isAir(int x, int y, int z)
+            {
+                return true;
+            }
+
+            @Override
+            public int getLightLevel(int x, int y, int z)
+            {
+                return 15;
+            }
+
+            @Override
+            public int getBiomeId(int x, int y, int z)
+            {
+                return 0;
+            }
+        });
+    }
+
+    private static String state(int y)
+    {
+        return y < 0 ? "minecraft:deepslate" : "minecraft:stone";
+    }
+
+    private static ChunkSnapshot snapshot(int chunkX, int chunkZ)
+    {
+        return (ChunkSnapshot) Proxy.newProxyInstance(ChunkSnapshot.class.getClassLoader(), new Class<?>[]{ChunkSnapshot.class}, (self, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getX":
+                    return chunkX;
+                case "getZ":
+                    return chunkZ;
+                case "getWorldName":
+                    return "world";
+                case "getBlockData":
+                    String state = state((Integer) args[1]);
+                    return Proxy.newProxyInstance(BlockData.class.getClassLoader(), new Class<?>[]{BlockData.class}, (data, dataMethod, dataArgs) ->
+                    {
+                        if (dataMethod.getName().equals("getAsString")) return state;
+                        throw new UnsupportedOperationException(dataMethod.getName());
+                    });
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}